@@ -0,0 +1,63 @@
+package com.ulrich.library2.config;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Refuse immédiatement une demande de connexion quand maxWaitingThreads threads sont déjà dans getConnection(),
+ * c'est-à-dire dans la file d'attente du pool. Les threads qui détiennent une connexion ne comptent pas : le pool
+ * les borne déjà. La fermeture est transmise au pool.
+ */
+public class BoundedWaitDataSource extends DelegatingDataSource implements Closeable {
+
+    private final Semaphore waitingThreads;
+
+    private final int maxWaitingThreads;
+
+    public BoundedWaitDataSource(DataSource targetDataSource, int maxWaitingThreads) {
+        super(targetDataSource);
+        this.waitingThreads = new Semaphore(maxWaitingThreads);
+        this.maxWaitingThreads = maxWaitingThreads;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        enterQueue();
+        try {
+            return super.getConnection();
+        } finally {
+            waitingThreads.release();
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        enterQueue();
+        try {
+            return super.getConnection(username, password);
+        } finally {
+            waitingThreads.release();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (getTargetDataSource() instanceof Closeable pool) {
+            pool.close();
+        }
+    }
+
+    private void enterQueue() throws SQLException {
+        if (!waitingThreads.tryAcquire()) {
+            throw new SQLTransientConnectionException("Connection request rejected: " + maxWaitingThreads
+                    + " threads are already waiting for a database connection");
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.ulrich.library2.config;
+
+import com.ulrich.library2.entity.category.Category;
+import org.hibernate.Interceptor;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Les livres référencent des catégories détachées, copiées du registre (CategoryRegistry), sans cascade. Avant
+ * d'écrire BOOK.CAT_CODE, Hibernate vérifie qu'une telle référence n'est pas une nouvelle ligne : faute de
+ * pouvoir en décider sur un identifiant assigné, il relit la catégorie en base. Une catégorie qui porte sa
+ * version vient de la base : l'intercepteur répond à sa place.
+ */
+@Configuration
+public class CategoryReferenceConfig {
+
+    @Bean
+    public HibernatePropertiesCustomizer categoryReferenceInterceptor() {
+        return properties -> properties.put(AvailableSettings.INTERCEPTOR, new CategoryReferenceInterceptor());
+    }
+
+    static final class CategoryReferenceInterceptor implements Interceptor {
+
+        @Override
+        public Boolean isTransient(Object entity) {
+            if (entity instanceof Category category && category.getVersion() != null) {
+                return Boolean.FALSE;
+            }
+            return null;
+        }
+    }
+}
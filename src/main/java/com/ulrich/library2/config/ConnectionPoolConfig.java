@@ -0,0 +1,96 @@
+package com.ulrich.library2.config;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanCreationException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.StringUtils;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Garde du pool Hikari. Avec les threads virtuels (spring.threads.virtual.enabled), Tomcat ne borne plus le
+ * nombre de requêtes simultanées : sans garde, des milliers de threads s'accumuleraient dans la file d'attente
+ * du pool et expireraient ensemble au bout de connection-timeout. Au-delà de library.datasource.max-waiting-threads
+ * threads en attente, la demande de connexion échoue tout de suite et la requête reçoit un 503.
+ *
+ * Si des réplicas sont déclarés (library.datasource.replicas.urls), la DataSource devient un
+ * ReplicaRoutingDataSource : les transactions readOnly partent sur les réplicas, chacun avec son pool et sa garde.
+ */
+@Configuration
+public class ConnectionPoolConfig {
+
+    @Bean
+    public static BeanPostProcessor connectionPoolPostProcessor(
+            @Value("${library.datasource.max-waiting-threads:200}") int maxWaitingThreads,
+            @Value("${library.datasource.replicas.urls:}") List<String> replicaUrls,
+            @Value("${library.datasource.replicas.username:}") String replicaUsername,
+            @Value("${library.datasource.replicas.password:}") String replicaPassword,
+            @Value("${library.datasource.replicas.max-lag-ms:1000}") long maxLagMs,
+            @Value("${library.datasource.replicas.lag-check-delay-ms:1000}") long lagCheckDelayMs) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+                if (!(bean instanceof DataSource dataSource) || !wrapsHikariPool(dataSource)) {
+                    return bean;
+                }
+                DataSource primary = new BoundedWaitDataSource(dataSource, maxWaitingThreads);
+                if (replicaUrls.isEmpty()) {
+                    return primary;
+                }
+                Map<String, DataSource> replicas = new LinkedHashMap<>();
+                for (String url : replicaUrls) {
+                    HikariDataSource pool = replicaPool(unwrapHikariPool(dataSource, beanName), url.trim(),
+                            replicas.size() + 1, replicaUsername, replicaPassword);
+                    replicas.put(url.trim(), new BoundedWaitDataSource(pool, maxWaitingThreads));
+                }
+                return new ReplicaRoutingDataSource(primary, replicas, maxLagMs, lagCheckDelayMs);
+            }
+        };
+    }
+
+    /**
+     * Le pool d'un réplica reprend les réglages du pool primaire (taille, timeouts, identifiants par défaut).
+     */
+    private static HikariDataSource replicaPool(HikariDataSource primaryPool, String url, int index, String username,
+                                                String password) {
+        HikariConfig config = new HikariConfig();
+        primaryPool.copyStateTo(config);
+        config.setJdbcUrl(url);
+        config.setPoolName("replica-" + index);
+        if (StringUtils.hasText(username)) {
+            config.setUsername(username);
+            config.setPassword(password);
+        }
+        // un réplica injoignable au démarrage n'empêche pas l'application de démarrer : il reste écarté
+        config.setInitializationFailTimeout(-1);
+        return new HikariDataSource(config);
+    }
+
+    /**
+     * Le pool peut déjà être enveloppé par un proxy (traces, mesures) : on le cherche derrière.
+     */
+    private static boolean wrapsHikariPool(DataSource dataSource) {
+        try {
+            return dataSource.isWrapperFor(HikariDataSource.class);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private static HikariDataSource unwrapHikariPool(DataSource dataSource, String beanName) {
+        try {
+            return dataSource.unwrap(HikariDataSource.class);
+        } catch (SQLException e) {
+            throw new BeanCreationException(beanName, "Cannot read the settings of the primary connection pool", e);
+        }
+    }
+}
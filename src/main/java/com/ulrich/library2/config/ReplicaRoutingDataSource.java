@@ -0,0 +1,172 @@
+package com.ulrich.library2.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Envoie les transactions readOnly aux réplicas et tout le reste au primaire.
+ *
+ * La connexion physique n'est prise qu'à la première requête SQL (LazyConnectionDataSourceProxy) : à ce moment
+ * la transaction a déjà marqué la connexion en lecture seule, ce qui décide du pool. Les réplicas sont choisis
+ * en tourniquet parmi ceux dont le retard de réplication, mesuré en tâche de fond, reste sous maxLagMs ; sans
+ * réplica disponible, les lectures vont au primaire.
+ */
+public class ReplicaRoutingDataSource extends LazyConnectionDataSourceProxy implements Closeable {
+
+    public static final Logger LOGGER = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    // 0 quand le réplica a rejoué tout ce qu'il a reçu : sans écriture sur le primaire, now() - dernier rejeu
+    // grandit sans qu'il y ait de retard. Une base qui n'est pas en recovery est à jour par définition.
+    private static final String REPLICATION_LAG = "SELECT CASE WHEN NOT pg_is_in_recovery() "
+            + "OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 "
+            + "ELSE (EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000)::bigint END";
+
+    private final DataSource primary;
+
+    private final List<Replica> replicas = new ArrayList<>();
+
+    private final long maxLagMs;
+
+    private final AtomicInteger nextReplica = new AtomicInteger();
+
+    private final ScheduledExecutorService lagChecker;
+
+    /**
+     * @param replicas pools des réplicas, par URL JDBC
+     */
+    public ReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicas, long maxLagMs,
+                                    long lagCheckDelayMs) {
+        super(primary);
+        this.primary = primary;
+        replicas.forEach((url, dataSource) -> this.replicas.add(new Replica(url, dataSource)));
+        this.maxLagMs = maxLagMs;
+        setReadOnlyDataSource(new ReadOnlyDataSource());
+        // les réplicas ne reçoivent des lectures qu'après un premier contrôle réussi
+        this.lagChecker = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("replica-lag-check").daemon().factory());
+        lagChecker.scheduleWithFixedDelay(this::checkReplicationLag, 0, lagCheckDelayMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Mesure le retard de chaque réplica et l'écarte ou le réintègre en conséquence.
+     */
+    public void checkReplicationLag() {
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.dataSource.getConnection();
+                 Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery(REPLICATION_LAG)) {
+                resultSet.next();
+                long lagMs = resultSet.getLong(1);
+                if (resultSet.wasNull()) {
+                    replica.setAvailable(false, "replication lag unknown");
+                } else if (lagMs > maxLagMs) {
+                    replica.setAvailable(false, "replication lag " + lagMs + " ms");
+                } else {
+                    replica.setAvailable(true, null);
+                }
+            } catch (SQLException | RuntimeException e) {
+                replica.setAvailable(false, e.getMessage());
+            }
+        }
+    }
+
+    public int getAvailableReplicas() {
+        return (int) replicas.stream().filter(replica -> replica.available).count();
+    }
+
+    @Override
+    public void close() throws IOException {
+        lagChecker.shutdownNow();
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof Closeable pool) {
+                pool.close();
+            }
+        }
+        if (primary instanceof Closeable pool) {
+            pool.close();
+        }
+    }
+
+    private Connection readOnlyConnection() throws SQLException {
+        int start = Math.floorMod(nextReplica.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get((start + i) % replicas.size());
+            if (!replica.available) {
+                continue;
+            }
+            try {
+                return replica.dataSource.getConnection();
+            } catch (SQLTransientConnectionException e) {
+                // pool du réplica saturé : la charge n'est pas reportée sur le primaire
+                throw e;
+            } catch (SQLException e) {
+                replica.setAvailable(false, e.getMessage());
+            }
+        }
+        return primary.getConnection();
+    }
+
+    private static final class Replica {
+
+        private final String url;
+
+        private final DataSource dataSource;
+
+        private volatile boolean available;
+
+        private boolean checked;
+
+        private Replica(String url, DataSource dataSource) {
+            this.url = url;
+            this.dataSource = dataSource;
+        }
+
+        /**
+         * Seuls les changements d'état sont journalisés, et le résultat du premier contrôle.
+         */
+        private synchronized void setAvailable(boolean available, String reason) {
+            if (checked && available == this.available) {
+                return;
+            }
+            if (available) {
+                LOGGER.info("Read replica {} is available", url);
+            } else {
+                LOGGER.warn("Read replica {} is unavailable, reads fall back to other replicas or the primary: {}",
+                        url, reason);
+            }
+            this.available = available;
+            this.checked = true;
+        }
+    }
+
+    private final class ReadOnlyDataSource extends AbstractDataSource {
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return readOnlyConnection();
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            throw new SQLException("Read replicas use the credentials of their own pool");
+        }
+    }
+}
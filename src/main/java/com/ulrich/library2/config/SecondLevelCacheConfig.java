@@ -0,0 +1,48 @@
+package com.ulrich.library2.config;
+
+import com.ulrich.library2.entity.book.Book;
+import com.ulrich.library2.entity.category.Category;
+import com.ulrich.library2.entity.customer.Customer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Déclare les entités mises en cache de second niveau. Passer par les propriétés hibernate.classcache
+ * plutôt que par @Cacheable permet de désactiver chaque région par configuration
+ * (library.cache.region.*.enabled).
+ */
+@Configuration
+public class SecondLevelCacheConfig {
+
+    public static final String BOOK_REGION = "library.book";
+
+    public static final String CUSTOMER_REGION = "library.customer";
+
+    public static final String CATEGORY_REGION = "library.category";
+
+    public static final String BOOK_QUERY_REGION = "library.query.book";
+
+    public static final String CUSTOMER_QUERY_REGION = "library.query.customer";
+
+    public static final String CATEGORY_QUERY_REGION = "library.query.category";
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheRegions(
+            @Value("${library.cache.region.book.enabled:true}") boolean bookEnabled,
+            @Value("${library.cache.region.customer.enabled:true}") boolean customerEnabled,
+            @Value("${library.cache.region.category.enabled:true}") boolean categoryEnabled) {
+        return properties -> {
+            if (bookEnabled) {
+                properties.put("hibernate.classcache." + Book.class.getName(), "read-write," + BOOK_REGION);
+            }
+            if (customerEnabled) {
+                properties.put("hibernate.classcache." + Customer.class.getName(), "read-write," + CUSTOMER_REGION);
+            }
+            if (categoryEnabled) {
+                properties.put("hibernate.classcache." + Category.class.getName(), "read-write," + CATEGORY_REGION);
+            }
+        };
+    }
+}
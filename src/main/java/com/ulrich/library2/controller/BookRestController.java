@@ -2,26 +2,34 @@
 package com.ulrich.library2.controller;
 
 import com.ulrich.library2.entity.book.Book;
-import com.ulrich.library2.entity.category.Category;
+import com.ulrich.library2.mapper.BookMapper;
 import com.ulrich.library2.service.BookServiceImpl;
+import com.ulrich.library2.service.BookView;
+import com.ulrich.library2.service.CatalogImportServiceImpl;
+import com.ulrich.library2.service.ImportFormat;
+import com.ulrich.library2.service.ImportReport;
 import io.swagger.v3.oas.annotations.*;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.util.CollectionUtils;
 import org.springframework.web.bind.annotation.*;
-import java.util.Collections;
+import org.springframework.web.context.request.WebRequest;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 import java.util.stream.Collectors;
-import org.modelmapper.ModelMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.util.UriComponentsBuilder;
 
-import java.time.LocalDate;
-@CrossOrigin(origins = "http://localhost:5173")
+@CrossOrigin(origins = "http://localhost:5173", exposedHeaders = HttpHeaders.ETAG)
 @RestController
 @RequestMapping("/rest/book/api")
 @Tag(name = "Book Rest Controller", description = "Contains all operations for managing books")
@@ -31,14 +39,25 @@ public class BookRestController {
 
     private BookServiceImpl bookService;
 
-    public BookRestController(BookServiceImpl bookService) {
+    private BookMapper bookMapper;
+
+    private CatalogImportServiceImpl catalogImportService;
+
+    private NdjsonStreamWriter ndjsonStreamWriter;
+
+    public BookRestController(BookServiceImpl bookService, BookMapper bookMapper,
+                              CatalogImportServiceImpl catalogImportService, NdjsonStreamWriter ndjsonStreamWriter) {
         this.bookService = bookService;
+        this.bookMapper = bookMapper;
+        this.catalogImportService = catalogImportService;
+        this.ndjsonStreamWriter = ndjsonStreamWriter;
     }
 
     @PostMapping("/addBook")
     @Operation(summary = "Add a new Book in the Library", description = "Creates a new book if it does not already exist by ISBN")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "409", description = "Conflict: the book already exist"),
+            @ApiResponse(responseCode = "400", description = "Bad Request: missing or unknown category"),
             @ApiResponse(responseCode = "201", description = "Created: the book is successfully inserted"),
             @ApiResponse(responseCode = "304", description = "Not Modified: the book is unsuccessfully inserted")
     })
@@ -48,7 +67,12 @@ public class BookRestController {
             return new ResponseEntity<BookDTO>(HttpStatus.CONFLICT);
         }
         Book bookRequest = mapBookDTOToBook(bookDTORequest);
-        Book book = bookService.saveBook(bookRequest);
+        Book book;
+        try {
+            book = bookService.saveBook(bookRequest);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<BookDTO>(HttpStatus.BAD_REQUEST);
+        }
         if (book != null && book.getId() != null) {
             BookDTO bookDTO = mapBookToBookDTO(book);
             return new ResponseEntity<BookDTO>(bookDTO, HttpStatus.CREATED);
@@ -60,6 +84,7 @@ public class BookRestController {
     @Operation(summary = "Update/Modify an existing Book in the Library")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "404", description = "Not Found: the book does not exist"),
+            @ApiResponse(responseCode = "400", description = "Bad Request: missing or unknown category"),
             @ApiResponse(responseCode = "200", description = "Ok: the book is successfully updated"),
             @ApiResponse(responseCode = "304", description = "Not Modified: the book is unsuccessfully updated")
     })
@@ -68,7 +93,12 @@ public class BookRestController {
             return new ResponseEntity<BookDTO>(HttpStatus.NOT_FOUND);
         }
         Book bookRequest = mapBookDTOToBook(bookDTORequest);
-        Book book = bookService.updateBook(bookRequest);
+        Book book;
+        try {
+            book = bookService.updateBook(bookRequest);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<BookDTO>(HttpStatus.BAD_REQUEST);
+        }
         if (book != null) {
             BookDTO bookDTO = mapBookToBookDTO(book);
             return new ResponseEntity<BookDTO>(bookDTO, HttpStatus.OK);
@@ -76,6 +106,36 @@ public class BookRestController {
         return new ResponseEntity<BookDTO>(HttpStatus.NOT_MODIFIED);
     }
 
+    @PatchMapping("/patchBook/{bookId}")
+    @Operation(summary = "Partially update a Book in the Library",
+            description = "Only the fields present in the body are changed. Send the ETag of the book in If-Match to reject the update if the book changed since it was read")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Ok: the book is successfully updated, its new ETag is returned"),
+            @ApiResponse(responseCode = "400", description = "Bad Request: unknown category"),
+            @ApiResponse(responseCode = "404", description = "Not Found: the book does not exist"),
+            @ApiResponse(responseCode = "409", description = "Conflict: the ISBN is already used, or concurrent updates kept failing"),
+            @ApiResponse(responseCode = "412", description = "Precondition Failed: the book no longer matches the ETag sent in If-Match")
+    })
+    public ResponseEntity<BookDTO> patchBook(@PathVariable Integer bookId, @RequestBody BookDTO bookDTORequest,
+                                             @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        // If-Match: * ne contrôle pas la version : un échec vient alors des tentatives épuisées, pas de la précondition
+        Long expectedVersion = EntityTags.expectedVersion(ifMatch, "book", bookId);
+        Book book;
+        try {
+            book = bookService.patchBook(bookId, expectedVersion, bookMapper.toChanges(bookDTORequest));
+        } catch (OptimisticLockingFailureException e) {
+            return new ResponseEntity<BookDTO>(expectedVersion == null ? HttpStatus.CONFLICT : HttpStatus.PRECONDITION_FAILED);
+        } catch (DataIntegrityViolationException e) {
+            return new ResponseEntity<BookDTO>(HttpStatus.CONFLICT);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<BookDTO>(HttpStatus.BAD_REQUEST);
+        }
+        if (book == null) {
+            return new ResponseEntity<BookDTO>(HttpStatus.NOT_FOUND);
+        }
+        return ResponseEntity.ok().eTag(EntityTags.of(book)).body(mapBookToBookDTO(book));
+    }
+
     @DeleteMapping("/deleteBook/{bookId}")
     @Operation(summary = "Delete a Book in the Library", description = "If the book does not exist, nothing is done")
     @ApiResponse(responseCode = "204", description = "No Content: Book successfully deleted")
@@ -92,12 +152,9 @@ public class BookRestController {
     })
     public ResponseEntity<List<BookDTO>> searchBookByTitle(@RequestParam("title") String title,
                                                            UriComponentsBuilder uriComponentBuilder) {
-        List<Book> books = bookService.findBooksByTitleOrPartTitle(title);
+        List<BookView> books = bookService.findBooksByTitleOrPartTitle(title);
         if (!CollectionUtils.isEmpty(books)) {
-            books.removeAll(Collections.singleton(null));
-            List<BookDTO> bookDTOs = books.stream().map(book -> {
-                return mapBookToBookDTO(book);
-            }).collect(Collectors.toList());
+            List<BookDTO> bookDTOs = books.stream().map(bookMapper::toBookDTO).collect(Collectors.toList());
             return new ResponseEntity<List<BookDTO>>(bookDTOs, HttpStatus.OK);
         }
         return new ResponseEntity<List<BookDTO>>(HttpStatus.NO_CONTENT);
@@ -107,32 +164,53 @@ public class BookRestController {
     @Operation(summary = "Search a Book in the Library by its ISBN")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Ok: successful research"),
-            @ApiResponse(responseCode = "204", description = "No Content: no result found")
+            @ApiResponse(responseCode = "204", description = "No Content: no result found"),
+            @ApiResponse(responseCode = "304", description = "Not Modified: the book still matches the ETag sent in If-None-Match")
     })
     public ResponseEntity<BookDTO> searchBookByIsbn(@RequestParam("isbn") String isbn,
-                                                    UriComponentsBuilder uriComponentBuilder) {
+                                                    UriComponentsBuilder uriComponentBuilder, WebRequest webRequest) {
         Book book = bookService.findBookByIsbn(isbn);
         if (book != null) {
+            if (webRequest.checkNotModified(EntityTags.of(book))) {
+                return null;
+            }
             BookDTO bookDTO = mapBookToBookDTO(book);
             return new ResponseEntity<BookDTO>(bookDTO, HttpStatus.OK);
         }
         return new ResponseEntity<BookDTO>(HttpStatus.NO_CONTENT);
     }
 
-    private BookDTO mapBookToBookDTO(Book book) {
-        ModelMapper mapper = new ModelMapper();
-        BookDTO bookDTO = mapper.map(book, BookDTO.class);
-        if (book.getCategory() != null) {
-            bookDTO.setCategory(new CategoryDTO(book.getCategory().getCode(), book.getCategory().getLabel()));
+    /**
+     * Import en masse : le corps de la requête est lu en flux, les livres existants (même ISBN) sont mis à jour.
+     */
+    @PostMapping(value = "/importBooks", consumes = {"text/csv", "application/x-ndjson", "application/jsonl"})
+    @Operation(summary = "Import Books in bulk from a CSV or NDJSON stream",
+            description = "Columns: title, isbn, releaseDate (yyyy-MM-dd), totalExamplaries, author, categoryCode. Invalid rows are reported and skipped")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Ok: the import report"),
+            @ApiResponse(responseCode = "415", description = "Unsupported Media Type: neither CSV nor NDJSON")
+    })
+    public ResponseEntity<ImportReport> importBooks(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                                    InputStream body) throws IOException {
+        ImportFormat format = ImportFormat.fromContentType(contentType);
+        if (format == null) {
+            return new ResponseEntity<ImportReport>(HttpStatus.UNSUPPORTED_MEDIA_TYPE);
         }
-        return bookDTO;
+        return new ResponseEntity<ImportReport>(catalogImportService.importBooks(body, format), HttpStatus.OK);
+    }
+
+    @GetMapping(value = "/exportBooks", produces = "application/x-ndjson")
+    @Operation(summary = "Export the whole catalog as NDJSON", description = "One BookDTO per line, ordered by id and streamed while reading the database")
+    @ApiResponse(responseCode = "200", description = "Ok: the export is streamed")
+    public ResponseEntity<StreamingResponseBody> exportBooks() {
+        return ndjsonStreamWriter.stream(bookService::forEachBook, this::mapBookToBookDTO);
+    }
+
+    private BookDTO mapBookToBookDTO(Book book) {
+        return bookMapper.toBookDTO(book);
     }
 
     private Book mapBookDTOToBook(BookDTO bookDTO) {
-        ModelMapper mapper = new ModelMapper();
-        Book book = mapper.map(bookDTO, Book.class);
-        book.setCategory(new Category(bookDTO.getCategory().getCode(), bookDTO.getCategory().getLabel()));
-        book.setRegisterDate(LocalDate.now());
-        return book;
+        return bookMapper.toBook(bookDTO);
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -3,23 +3,25 @@
 package com.ulrich.library2.controller;
 
 import com.ulrich.library2.entity.category.Category;
+import com.ulrich.library2.mapper.CategoryMapper;
 import com.ulrich.library2.service.CategoryServiceImpl;
 import io.swagger.v3.oas.annotations.*;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.util.CollectionUtils;
 import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
-import org.modelmapper.ModelMapper;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
-@CrossOrigin(origins = "http://localhost:5173")
+import org.springframework.web.context.request.WebRequest;
+@CrossOrigin(origins = "http://localhost:5173", exposedHeaders = HttpHeaders.ETAG)
 @RestController
 @RequestMapping("/rest/category/api")
 @Tag(name = "Book Category Rest Controller", description = "Contains operations for managing book categories")
@@ -27,20 +29,27 @@ public class CategoryRestController {
 
     private CategoryServiceImpl categoryService;
 
-    public CategoryRestController(CategoryServiceImpl categoryService) {
+    private CategoryMapper categoryMapper;
+
+    public CategoryRestController(CategoryServiceImpl categoryService, CategoryMapper categoryMapper) {
         this.categoryService = categoryService;
+        this.categoryMapper = categoryMapper;
     }
 
     @GetMapping("/allCategories")
     @Operation(summary = "List all book categories of the Library")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Ok: successfully listed"),
-            @ApiResponse(responseCode = "204", description = "No Content: no result found")
+            @ApiResponse(responseCode = "204", description = "No Content: no result found"),
+            @ApiResponse(responseCode = "304", description = "Not Modified: the categories still match the ETag sent in If-None-Match")
     })
-    public ResponseEntity<List<CategoryDTO>> getAllBookCategories() {
+    public ResponseEntity<List<CategoryDTO>> getAllBookCategories(WebRequest webRequest) {
         List<Category> categories = categoryService.getAllCategories();
         if (!CollectionUtils.isEmpty(categories)) {
             categories.removeAll(Collections.singleton(null));
+            if (webRequest.checkNotModified(EntityTags.of(categories))) {
+                return null;
+            }
             List<CategoryDTO> categoryDTOs = categories.stream().map(category -> {
                 return mapCategoryToCategoryDTO(category);
             }).collect(Collectors.toList());
@@ -50,8 +59,6 @@ public class CategoryRestController {
     }
 
     private CategoryDTO mapCategoryToCategoryDTO(Category category) {
-        ModelMapper mapper = new ModelMapper();
-        CategoryDTO categoryDTO = mapper.map(category, CategoryDTO.class);
-        return categoryDTO;
+        return categoryMapper.toCategoryDTO(category);
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,65 @@
+package com.ulrich.library2.controller;
+
+import com.ulrich.library2.service.CirculationType;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.LocalDate;
+
+@Schema(name = "Circulation Operation Model", description = "One checkout, return or renewal of a batch")
+public class CirculationOperationDTO {
+
+    @Schema(description = "CHECKOUT, RETURN or RENEW")
+    private CirculationType type;
+
+    @Schema(description = "Book id concerned by the loan")
+    private Integer bookId;
+
+    @Schema(description = "Customer id concerned by the loan")
+    private Integer customerId;
+
+    @Schema(description = "Loan beginning date, for a checkout")
+    private LocalDate beginDate;
+
+    @Schema(description = "Loan ending date, for a checkout or a renewal")
+    private LocalDate endDate;
+
+    public CirculationType getType() {
+        return type;
+    }
+
+    public void setType(CirculationType type) {
+        this.type = type;
+    }
+
+    public Integer getBookId() {
+        return bookId;
+    }
+
+    public void setBookId(Integer bookId) {
+        this.bookId = bookId;
+    }
+
+    public Integer getCustomerId() {
+        return customerId;
+    }
+
+    public void setCustomerId(Integer customerId) {
+        this.customerId = customerId;
+    }
+
+    public LocalDate getBeginDate() {
+        return beginDate;
+    }
+
+    public void setBeginDate(LocalDate beginDate) {
+        this.beginDate = beginDate;
+    }
+
+    public LocalDate getEndDate() {
+        return endDate;
+    }
+
+    public void setEndDate(LocalDate endDate) {
+        this.endDate = endDate;
+    }
+}
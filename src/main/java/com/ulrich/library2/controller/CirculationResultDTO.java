@@ -0,0 +1,63 @@
+package com.ulrich.library2.controller;
+
+import com.ulrich.library2.service.CirculationResult;
+import com.ulrich.library2.service.CirculationType;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(name = "Circulation Result Model", description = "Outcome of one operation of a batch, in the order of the request")
+public class CirculationResultDTO {
+
+    @Schema(description = "CHECKOUT, RETURN or RENEW")
+    private CirculationType type;
+
+    @Schema(description = "Book id concerned by the loan")
+    private Integer bookId;
+
+    @Schema(description = "Customer id concerned by the loan")
+    private Integer customerId;
+
+    @Schema(description = "CREATED, CLOSED or RENEWED on success, otherwise the reason of the refusal")
+    private CirculationResult result;
+
+    public CirculationResultDTO() {
+    }
+
+    public CirculationResultDTO(CirculationType type, Integer bookId, Integer customerId, CirculationResult result) {
+        this.type = type;
+        this.bookId = bookId;
+        this.customerId = customerId;
+        this.result = result;
+    }
+
+    public CirculationType getType() {
+        return type;
+    }
+
+    public void setType(CirculationType type) {
+        this.type = type;
+    }
+
+    public Integer getBookId() {
+        return bookId;
+    }
+
+    public void setBookId(Integer bookId) {
+        this.bookId = bookId;
+    }
+
+    public Integer getCustomerId() {
+        return customerId;
+    }
+
+    public void setCustomerId(Integer customerId) {
+        this.customerId = customerId;
+    }
+
+    public CirculationResult getResult() {
+        return result;
+    }
+
+    public void setResult(CirculationResult result) {
+        this.result = result;
+    }
+}
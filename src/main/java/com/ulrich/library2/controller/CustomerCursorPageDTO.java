@@ -0,0 +1,51 @@
+package com.ulrich.library2.controller;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+@Schema(name = "Customer Cursor Page Model", description = "Represents a page of customers read with a continuation cursor")
+public class CustomerCursorPageDTO {
+
+    @Schema(description = "Customers of the page")
+    private List<CustomerDTO> content;
+
+    @Schema(description = "Opaque cursor to send back to get the next page, null on the last page")
+    private String nextCursor;
+
+    @Schema(description = "Total number of customers, only filled when requested")
+    private Long totalElements;
+
+    public CustomerCursorPageDTO() {
+    }
+
+    public CustomerCursorPageDTO(List<CustomerDTO> content, String nextCursor, Long totalElements) {
+        this.content = content;
+        this.nextCursor = nextCursor;
+        this.totalElements = totalElements;
+    }
+
+    public List<CustomerDTO> getContent() {
+        return content;
+    }
+
+    public void setContent(List<CustomerDTO> content) {
+        this.content = content;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    public Long getTotalElements() {
+        return totalElements;
+    }
+
+    public void setTotalElements(Long totalElements) {
+        this.totalElements = totalElements;
+    }
+}
@@ -1,7 +1,13 @@
 package com.ulrich.library2.controller;
 
 import com.ulrich.library2.entity.customer.Customer;
+import com.ulrich.library2.mapper.CustomerMapper;
+import com.ulrich.library2.service.CatalogImportServiceImpl;
 import com.ulrich.library2.service.CustomerServiceImpl;
+import com.ulrich.library2.service.CustomerView;
+import com.ulrich.library2.service.ImportFormat;
+import com.ulrich.library2.service.ImportReport;
+import com.ulrich.library2.service.MailOutboxServiceImpl;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -11,26 +17,30 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Page;
 // Import nécessaire pour la correction: PageImpl
 import org.springframework.data.domain.PageImpl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.mail.MailException;
-import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.util.CollectionUtils;
 import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.util.UriComponentsBuilder;
-import org.modelmapper.ModelMapper;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
-import java.util.Date;
+import java.util.Base64;
 import java.util.List;
 import java.util.stream.Collectors;
 
-@CrossOrigin(origins = "http://localhost:5173")
+@CrossOrigin(origins = "http://localhost:5173", exposedHeaders = HttpHeaders.ETAG)
 @RestController
 @RequestMapping("/rest/customer/api")
 @Tag(name = "Customer API", description = "Contains all operations for managing customers")
@@ -38,13 +48,28 @@ public class CustomerRestController {
 
     public static final Logger LOGGER = LoggerFactory.getLogger(CustomerRestController.class);
 
+    private static final String CURSOR_PREFIX = "customer:";
+
+    private static final int MAX_CURSOR_PAGE_SIZE = 1000;
+
     private CustomerServiceImpl customerService;
 
-    private JavaMailSender javaMailSender;
+    private MailOutboxServiceImpl mailOutboxService;
+
+    private CustomerMapper customerMapper;
+
+    private CatalogImportServiceImpl catalogImportService;
 
-    public CustomerRestController(CustomerServiceImpl customerService, JavaMailSender javaMailSender) {
+    private NdjsonStreamWriter ndjsonStreamWriter;
+
+    public CustomerRestController(CustomerServiceImpl customerService, MailOutboxServiceImpl mailOutboxService,
+                                  CustomerMapper customerMapper, CatalogImportServiceImpl catalogImportService,
+                                  NdjsonStreamWriter ndjsonStreamWriter) {
         this.customerService = customerService;
-        this.javaMailSender = javaMailSender;
+        this.mailOutboxService = mailOutboxService;
+        this.customerMapper = customerMapper;
+        this.catalogImportService = catalogImportService;
+        this.ndjsonStreamWriter = ndjsonStreamWriter;
     }
 
     /**
@@ -109,6 +134,39 @@ public class CustomerRestController {
         return new ResponseEntity<CustomerDTO>(HttpStatus.NOT_MODIFIED);
     }
 
+    /**
+     * Modifie une partie des champs d'un client : un seul UPDATE, contrôlé par If-Match s'il est présent.
+     */
+    @PatchMapping("/patchCustomer/{customerId}")
+    @Operation(
+            summary = "Partially update a customer in the Library",
+            description = "Only the fields present in the body are changed. Send the ETag of the customer in If-Match to reject the update if the customer changed since it was read."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Ok: the customer is successfully updated, its new ETag is returned",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = CustomerDTO.class))),
+            @ApiResponse(responseCode = "404", description = "Not Found: the customer does not exist"),
+            @ApiResponse(responseCode = "409", description = "Conflict: the email is already used, or concurrent updates kept failing"),
+            @ApiResponse(responseCode = "412", description = "Precondition Failed: the customer no longer matches the ETag sent in If-Match")
+    })
+    public ResponseEntity<CustomerDTO> patchCustomer(@PathVariable @Parameter(description = "ID of the customer to update") Integer customerId,
+                                                     @RequestBody @Parameter(description = "Customer fields to change") CustomerDTO customerDTORequest,
+                                                     @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Long expectedVersion = EntityTags.expectedVersion(ifMatch, "customer", customerId);
+        Customer customer;
+        try {
+            customer = customerService.patchCustomer(customerId, expectedVersion, customerMapper.toChanges(customerDTORequest));
+        } catch (OptimisticLockingFailureException e) {
+            return new ResponseEntity<CustomerDTO>(expectedVersion == null ? HttpStatus.CONFLICT : HttpStatus.PRECONDITION_FAILED);
+        } catch (DataIntegrityViolationException e) {
+            return new ResponseEntity<CustomerDTO>(HttpStatus.CONFLICT);
+        }
+        if (customer == null) {
+            return new ResponseEntity<CustomerDTO>(HttpStatus.NOT_FOUND);
+        }
+        return ResponseEntity.ok().eTag(EntityTags.of(customer)).body(mapCustomerToCustomerDTO(customer));
+    }
+
     /**
      * Supprime un client.
      * @param customerId
@@ -170,6 +228,79 @@ public class CustomerRestController {
         return new ResponseEntity<>(customerDTOPage, HttpStatus.OK);
     }
 
+    /**
+     * Pagination par curseur : le coût d'une page reste constant quelle que soit sa profondeur.
+     * Le curseur retourné dans nextCursor est à renvoyer tel quel pour obtenir la page suivante.
+     *
+     * @param cursor
+     * @param size
+     * @param withTotal
+     * @return ResponseEntity<CustomerCursorPageDTO>
+     */
+    @GetMapping(value = "/paginatedSearch", params = "!beginPage")
+    @Operation(
+            summary = "List customers of the Library with a continuation cursor",
+            description = "Retrieves customers ordered by id, starting after the given cursor. The total count is only computed on demand."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Ok: successfully listed",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = CustomerCursorPageDTO.class))),
+            @ApiResponse(responseCode = "204", description = "No Content: no result found"),
+            @ApiResponse(responseCode = "400", description = "Bad Request: invalid cursor or page size")
+    })
+    public ResponseEntity<CustomerCursorPageDTO> searchCustomersWithCursor(
+            @RequestParam(value = "cursor", required = false) @Parameter(description = "Cursor returned by the previous page") String cursor,
+            @RequestParam(value = "size", defaultValue = "50") @Parameter(description = "Page size (1 to 1000)") int size,
+            @RequestParam(value = "withTotal", defaultValue = "false") @Parameter(description = "Also return the total number of customers") boolean withTotal) {
+
+        Integer lastCustomerId = decodeCursor(cursor);
+        if (lastCustomerId == null || size < 1 || size > MAX_CURSOR_PAGE_SIZE) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        // On lit un élément de plus pour savoir s'il existe une page suivante
+        List<Customer> customers = customerService.getCustomersAfter(lastCustomerId, size + 1);
+        if (customers.isEmpty()) {
+            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        }
+        boolean hasNext = customers.size() > size;
+        List<Customer> pageContent = hasNext ? customers.subList(0, size) : customers;
+
+        List<CustomerDTO> customerDTOs = pageContent.stream()
+                .map(this::mapCustomerToCustomerDTO)
+                .collect(Collectors.toList());
+        String nextCursor = hasNext ? encodeCursor(pageContent.get(pageContent.size() - 1).getId()) : null;
+        Long totalElements = withTotal ? customerService.countCustomers() : null;
+
+        return new ResponseEntity<>(new CustomerCursorPageDTO(customerDTOs, nextCursor, totalElements), HttpStatus.OK);
+    }
+
+    /**
+     * Import en masse de clients depuis un flux CSV ou NDJSON ; un client existant (même email) est mis à jour.
+     */
+    @PostMapping(value = "/importCustomers", consumes = {"text/csv", "application/x-ndjson", "application/jsonl"})
+    @Operation(summary = "Import Customers in bulk from a CSV or NDJSON stream",
+            description = "Columns: firstName, lastName, job, address, email. Invalid rows are reported and skipped")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Ok: the import report"),
+            @ApiResponse(responseCode = "415", description = "Unsupported Media Type: neither CSV nor NDJSON")
+    })
+    public ResponseEntity<ImportReport> importCustomers(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                                        InputStream body) throws IOException {
+        ImportFormat format = ImportFormat.fromContentType(contentType);
+        if (format == null) {
+            return new ResponseEntity<ImportReport>(HttpStatus.UNSUPPORTED_MEDIA_TYPE);
+        }
+        return new ResponseEntity<ImportReport>(catalogImportService.importCustomers(body, format), HttpStatus.OK);
+    }
+
+    @GetMapping(value = "/exportCustomers", produces = "application/x-ndjson")
+    @Operation(summary = "Export all customers as NDJSON", description = "One CustomerDTO per line, ordered by id and streamed while reading the database")
+    @ApiResponse(responseCode = "200", description = "Ok: the export is streamed")
+    public ResponseEntity<StreamingResponseBody> exportCustomers() {
+        return ndjsonStreamWriter.stream(customerService::forEachCustomer, customerMapper::toCustomerDTO);
+    }
+
     /**
      * Retourne le client ayant l'adresse email passé en paramètre.
      * @param email
@@ -184,12 +315,17 @@ public class CustomerRestController {
             @ApiResponse(responseCode = "200", description = "Ok: successful research",
                     content = @Content(mediaType = "application/json", schema = @Schema(implementation = CustomerDTO.class))),
             @ApiResponse(responseCode = "204", description = "No Content: no result found"),
+            @ApiResponse(responseCode = "304", description = "Not Modified: the customer still matches the ETag sent in If-None-Match"),
     })
-    public ResponseEntity<CustomerDTO> searchCustomerByEmail(@RequestParam("email") @Parameter(description = "Email to search") String email) {
+    public ResponseEntity<CustomerDTO> searchCustomerByEmail(@RequestParam("email") @Parameter(description = "Email to search") String email,
+                                                             WebRequest webRequest) {
         //, UriComponentsBuilder uriComponentBuilder
-        Customer customer = customerService.findCustomerByEmail(email);
+        CustomerView customer = customerService.findCustomerViewByEmail(email);
         if (customer != null) {
-            CustomerDTO customerDTO = mapCustomerToCustomerDTO(customer);
+            if (webRequest.checkNotModified(EntityTags.of(customer))) {
+                return null;
+            }
+            CustomerDTO customerDTO = customerMapper.toCustomerDTO(customer);
             return new ResponseEntity<CustomerDTO>(customerDTO, HttpStatus.OK);
         }
         return new ResponseEntity<CustomerDTO>(HttpStatus.NO_CONTENT);
@@ -212,11 +348,9 @@ public class CustomerRestController {
     })
     public ResponseEntity<List<CustomerDTO>> searchBookByLastName(@RequestParam("lastName") @Parameter(description = "Last name to search") String lastName) {
         //, UriComponentsBuilder uriComponentBuilder
-        List<Customer> customers = customerService.findCustomerByLastName(lastName);
+        List<CustomerView> customers = customerService.findCustomerByLastName(lastName);
         if (customers != null && !CollectionUtils.isEmpty(customers)) {
-            List<CustomerDTO> customerDTOs = customers.stream().map(customer -> {
-                return mapCustomerToCustomerDTO(customer);
-            }).collect(Collectors.toList());
+            List<CustomerDTO> customerDTOs = customers.stream().map(customerMapper::toCustomerDTO).collect(Collectors.toList());
             return new ResponseEntity<List<CustomerDTO>>(customerDTOs, HttpStatus.OK);
         }
         return new ResponseEntity<List<CustomerDTO>>(HttpStatus.NO_CONTENT);
@@ -224,6 +358,7 @@ public class CustomerRestController {
 
     /**
      * Envoi un mail à un client. L'objet MailDTO contient l'identifiant et l'email du client concerné, l'objet du mail et le contenu du message.
+     * L'envoi SMTP est asynchrone : la réponse est rendue dès que le mail est enregistré dans la file d'envoi.
      * @param loanMailDto
      * @param uriComponentBuilder
      * @return
@@ -234,9 +369,8 @@ public class CustomerRestController {
             description = "Sends an email to a specified customer."
     )
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "Ok: Email successfully sent"),
-            @ApiResponse(responseCode = "404", description = "Not Found: no customer found, or wrong email"),
-            @ApiResponse(responseCode = "403", description = "Forbidden: Email cannot be sent")
+            @ApiResponse(responseCode = "200", description = "Ok: Email successfully queued for sending"),
+            @ApiResponse(responseCode = "404", description = "Not Found: no customer found, or wrong email")
     })
     public ResponseEntity<Boolean> sendMailToCustomer(@RequestBody @Parameter(description = "Mail details") MailDTO loanMailDto, UriComponentsBuilder uriComponentBuilder) {
 
@@ -251,18 +385,9 @@ public class CustomerRestController {
             return new ResponseEntity<Boolean>(false, HttpStatus.NOT_FOUND);
         }
 
-        SimpleMailMessage mail = new SimpleMailMessage();
-        mail.setFrom(loanMailDto.MAIL_FROM);
-        mail.setTo(customer.getEmail());
-        mail.setSentDate(new Date());
-        mail.setSubject(loanMailDto.getEmailSubject());
-        mail.setText(loanMailDto.getEmailContent());
-
-//      try {
-//            javaMailSender.send(mail);
-//        } catch (MailException e) {
-//            return new ResponseEntity<Boolean>(false, HttpStatus.FORBIDDEN);
-//        }
+        // Le mail est mis en file dans MAIL_OUTBOX et envoyé en arrière-plan par le MailOutboxDispatcher
+        mailOutboxService.queueMail(loanMailDto.MAIL_FROM, customer.getEmail(),
+                loanMailDto.getEmailSubject(), loanMailDto.getEmailContent());
 
         return new ResponseEntity<Boolean>(true, HttpStatus.OK);
     }
@@ -274,11 +399,30 @@ public class CustomerRestController {
      * @return
      */
     private CustomerDTO mapCustomerToCustomerDTO(Customer customer) {
-        // ModelMapper est initialisé à chaque appel. Pour une meilleure performance, il serait
-        // préférable de l'injecter comme un champ final (private final ModelMapper modelMapper;).
-        ModelMapper mapper = new ModelMapper();
-        CustomerDTO customerDTO = mapper.map(customer, CustomerDTO.class);
-        return customerDTO;
+        return customerMapper.toCustomerDTO(customer);
+    }
+
+    private static String encodeCursor(Integer lastCustomerId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((CURSOR_PREFIX + lastCustomerId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Retourne le dernier identifiant lu (0 pour la première page), ou null si le curseur est invalide.
+     */
+    private static Integer decodeCursor(String cursor) {
+        if (!StringUtils.hasText(cursor)) {
+            return 0;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (!decoded.startsWith(CURSOR_PREFIX)) {
+                return null;
+            }
+            return Integer.valueOf(decoded.substring(CURSOR_PREFIX.length()));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
     }
 
     /**
@@ -288,9 +432,6 @@ public class CustomerRestController {
      * @return
      */
     private Customer mapCustomerDTOToCustomer(CustomerDTO customerDTO) {
-        // ModelMapper est initialisé à chaque appel.
-        ModelMapper mapper = new ModelMapper();
-        Customer customer = mapper.map(customerDTO, Customer.class);
-        return customer;
+        return customerMapper.toCustomer(customerDTO);
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,31 @@
+package com.ulrich.library2.controller;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+/**
+ * Pas de connexion disponible (pool saturé, attente refusée par BoundedWaitDataSource, base injoignable) :
+ * 503 avec Retry-After plutôt qu'un 500, le client peut réessayer.
+ */
+@RestControllerAdvice
+public class DatabaseUnavailableHandler {
+
+    public static final Logger LOGGER = LoggerFactory.getLogger(DatabaseUnavailableHandler.class);
+
+    private static final String RETRY_AFTER_SECONDS = "1";
+
+    @ExceptionHandler({CannotCreateTransactionException.class, CannotGetJdbcConnectionException.class})
+    public ResponseEntity<Void> databaseUnavailable(RuntimeException e) {
+        LOGGER.debug("No database connection available", e);
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+                .build();
+    }
+}
@@ -0,0 +1,72 @@
+package com.ulrich.library2.controller;
+
+import com.ulrich.library2.entity.book.Book;
+import com.ulrich.library2.entity.category.Category;
+import com.ulrich.library2.entity.customer.Customer;
+import com.ulrich.library2.service.CustomerView;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * ETag forts des lectures conditionnelles, tirés des colonnes @Version : ils changent avec le corps de la réponse,
+ * ce qui permet de répondre 304 à un If-None-Match sans construire ni sérialiser ce corps.
+ */
+final class EntityTags {
+
+    private EntityTags() {
+    }
+
+    /**
+     * Le livre est renvoyé avec le libellé de sa catégorie : la version de la catégorie entre dans l'ETag.
+     */
+    static String of(Book book) {
+        Category category = book.getCategory();
+        return "book-" + book.getId() + "-" + book.getVersion()
+                + (category == null ? "" : "-" + category.getVersion());
+    }
+
+    static String of(CustomerView customer) {
+        return "customer-" + customer.id() + "-" + customer.version();
+    }
+
+    static String of(Customer customer) {
+        return "customer-" + customer.getId() + "-" + customer.getVersion();
+    }
+
+    /**
+     * Version de l'ensemble des catégories : empreinte des couples code/version dans l'ordre de la réponse,
+     * elle change aussi à l'ajout ou à la suppression d'une catégorie.
+     */
+    static String of(List<Category> categories) {
+        StringBuilder versions = new StringBuilder();
+        for (Category category : categories) {
+            versions.append(category.getCode()).append(':').append(category.getVersion()).append(';');
+        }
+        return "categories-" + DigestUtils.md5DigestAsHex(versions.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Version attendue par l'en-tête If-Match d'une modification : null sans en-tête ou pour "*", -1 (aucune
+     * version) pour un ETag faible, illisible ou d'une autre ressource, la précondition échoue alors.
+     */
+    static Long expectedVersion(String ifMatch, String resource, Integer id) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        String prefix = "\"" + resource + "-" + id + "-";
+        if (!tag.startsWith(prefix) || !tag.endsWith("\"")) {
+            return -1L;
+        }
+        // pour un livre, la version de sa catégorie suit : seule celle du livre est contrôlée
+        String versions = tag.substring(prefix.length(), tag.length() - 1);
+        int end = versions.indexOf('-');
+        try {
+            return Long.valueOf(end < 0 ? versions : versions.substring(0, end));
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+}
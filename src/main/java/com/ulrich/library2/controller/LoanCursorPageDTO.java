@@ -0,0 +1,39 @@
+package com.ulrich.library2.controller;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+@Schema(name = "Loan Cursor Page Model", description = "Represents a page of loans read with a continuation cursor")
+public class LoanCursorPageDTO {
+
+    @Schema(description = "Loans of the page, most recent first")
+    private List<LoanDTO> content;
+
+    @Schema(description = "Opaque cursor to send back with the same filters to get the next page, null on the last page")
+    private String nextCursor;
+
+    public LoanCursorPageDTO() {
+    }
+
+    public LoanCursorPageDTO(List<LoanDTO> content, String nextCursor) {
+        this.content = content;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<LoanDTO> getContent() {
+        return content;
+    }
+
+    public void setContent(List<LoanDTO> content) {
+        this.content = content;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
@@ -2,27 +2,39 @@
 
 package com.ulrich.library2.controller;
 
-import com.ulrich.library2.entity.book.Book;
-import com.ulrich.library2.entity.customer.Customer;
 import com.ulrich.library2.entity.loan.Loan;
-import com.ulrich.library2.service.LoanId;
+import com.ulrich.library2.entity.loan.LoanView;
+import com.ulrich.library2.mapper.LoanMapper;
+import com.ulrich.library2.service.CheckoutResult;
+import com.ulrich.library2.service.CirculationOperation;
+import com.ulrich.library2.service.CirculationResult;
+import com.ulrich.library2.service.LoanSearchCriteria;
+import com.ulrich.library2.service.LoanSearchCursor;
 import com.ulrich.library2.service.LoanServiceImpl;
 import com.ulrich.library2.service.LoanStatus;
 import io.swagger.v3.oas.annotations.*;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.util.CollectionUtils;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.util.UriComponentsBuilder;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
-import java.util.Collections;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
-import java.util.function.Function;
 import java.util.stream.Collectors;
 @CrossOrigin(origins = "http://localhost:5173")
 @RestController
@@ -32,51 +44,133 @@ public class LoanRestController {
 
     public static final Logger LOGGER = LoggerFactory.getLogger(LoanRestController.class);
 
+    private static final String CURSOR_PREFIX = "loan:";
+
+    private static final int MAX_CURSOR_PAGE_SIZE = 1000;
+
+    private static final int MAX_CIRCULATION_OPERATIONS = 100;
+
     private LoanServiceImpl loanService;
 
-    public LoanRestController(LoanServiceImpl loanService) {
+    private LoanMapper loanMapper;
+
+    private NdjsonStreamWriter ndjsonStreamWriter;
+
+    public LoanRestController(LoanServiceImpl loanService, LoanMapper loanMapper, NdjsonStreamWriter ndjsonStreamWriter) {
         this.loanService = loanService;
+        this.loanMapper = loanMapper;
+        this.ndjsonStreamWriter = ndjsonStreamWriter;
     }
 
     @GetMapping("/maxEndDate")
-    @Operation(summary = "List loans realized before the indicated date")
+    @Operation(summary = "List loans realized before the indicated date", deprecated = true,
+            description = "Unbounded list, use /searchLoans with endBefore to read it page by page")
     @ApiResponse(responseCode = "200", description = "Ok: successfully listed")
     public ResponseEntity<List<LoanDTO>> searchAllBooksLoanBeforeThisDate(@RequestParam("date") String maxEndDateStr) {
-        List<Loan> loans = loanService.findAllLoansByEndDateBefore(LocalDate.parse(maxEndDateStr));
-        loans.removeAll(Collections.singleton(null));
+        List<LoanView> loans = loanService.findAllLoansByEndDateBefore(LocalDate.parse(maxEndDateStr));
         List<LoanDTO> loanInfosDtos = mapLoanDtosFromLoans(loans);
         return new ResponseEntity<List<LoanDTO>>(loanInfosDtos, HttpStatus.OK);
     }
 
     @GetMapping("/customerLoans")
-    @Operation(summary = "List loans realized before the indicated date")
+    @Operation(summary = "List loans realized before the indicated date", deprecated = true,
+            description = "Unbounded list, use /searchLoans with email and status=OPEN to read it page by page")
     @ApiResponse(responseCode = "200", description = "Ok: successfully listed")
     public ResponseEntity<List<LoanDTO>> searchAllOpenedLoansOfThisCustomer(@RequestParam("email") String email) {
-        List<Loan> loans = loanService.getAllOpenLoansOfThisCustomer(email, LoanStatus.OPEN);
-        loans.removeAll(Collections.singleton(null));
+        List<LoanView> loans = loanService.getAllOpenLoansOfThisCustomer(email, LoanStatus.OPEN);
         List<LoanDTO> loanInfosDtos = mapLoanDtosFromLoans(loans);
         return new ResponseEntity<List<LoanDTO>>(loanInfosDtos, HttpStatus.OK);
     }
 
+    /**
+     * Recherche filtrée des prêts, triée et paginée en base : du plus récent au plus ancien, par curseur.
+     * Le curseur retourné dans nextCursor est à renvoyer tel quel, avec les mêmes filtres, pour obtenir la page suivante.
+     */
+    @GetMapping("/searchLoans")
+    @Operation(
+            summary = "Search loans with filters and a continuation cursor",
+            description = "Retrieves loans ordered by begin date, most recent first. Every filter is optional."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Ok: successfully listed",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = LoanCursorPageDTO.class))),
+            @ApiResponse(responseCode = "204", description = "No Content: no result found"),
+            @ApiResponse(responseCode = "400", description = "Bad Request: invalid filter, cursor or page size")
+    })
+    public ResponseEntity<LoanCursorPageDTO> searchLoans(
+            @RequestParam(value = "status", required = false) @Parameter(description = "OPEN or CLOSE") LoanStatus status,
+            @RequestParam(value = "customerId", required = false) Integer customerId,
+            @RequestParam(value = "email", required = false) @Parameter(description = "Customer email, case insensitive") String email,
+            @RequestParam(value = "bookId", required = false) Integer bookId,
+            @RequestParam(value = "beginFrom", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+            @Parameter(description = "Loans begun on or after this date") LocalDate beginFrom,
+            @RequestParam(value = "beginTo", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+            @Parameter(description = "Loans begun before this date") LocalDate beginTo,
+            @RequestParam(value = "endBefore", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+            @Parameter(description = "Loans ending before this date") LocalDate endBefore,
+            @RequestParam(value = "cursor", required = false) @Parameter(description = "Cursor returned by the previous page") String cursor,
+            @RequestParam(value = "size", defaultValue = "50") @Parameter(description = "Page size (1 to 1000)") int size) {
+
+        LoanSearchCursor after = null;
+        if (StringUtils.hasText(cursor)) {
+            after = decodeCursor(cursor);
+            if (after == null) {
+                return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+            }
+        }
+        if (size < 1 || size > MAX_CURSOR_PAGE_SIZE) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        LoanSearchCriteria criteria = new LoanSearchCriteria(status, customerId, email, bookId, beginFrom, beginTo, endBefore);
+        // On lit un élément de plus pour savoir s'il existe une page suivante
+        List<LoanView> loans = loanService.searchLoans(criteria, after, size + 1);
+        if (loans.isEmpty()) {
+            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        }
+        boolean hasNext = loans.size() > size;
+        List<LoanView> pageContent = hasNext ? loans.subList(0, size) : loans;
+
+        List<LoanDTO> loanDTOs = pageContent.stream().map(loanMapper::toLoanDTO).collect(Collectors.toList());
+        String nextCursor = hasNext ? encodeCursor(LoanSearchCursor.of(pageContent.get(pageContent.size() - 1))) : null;
+        return new ResponseEntity<>(new LoanCursorPageDTO(loanDTOs, nextCursor), HttpStatus.OK);
+    }
+
     @PostMapping("/addLoan")
-    @Operation(summary = "Add a new Loan in the Library")
+    @Operation(summary = "Add a new Loan in the Library", description = "Atomically claims a copy of the book if one is still available")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "409", description = "Conflict: the loan already exists"),
-            @ApiResponse(responseCode = "201", description = "Created: the loan is successfully inserted"),
-            @ApiResponse(responseCode = "304", description = "Not Modified: the loan is unsuccessfully inserted")
+            @ApiResponse(responseCode = "409", description = "Conflict: the loan already exists, or no copy of the book is available"),
+            @ApiResponse(responseCode = "404", description = "Not Found: the book or the customer does not exist"),
+            @ApiResponse(responseCode = "201", description = "Created: the loan is successfully inserted")
     })
     public ResponseEntity<Boolean> createNewLoan(@RequestBody SimpleLoanDTO simpleLoanDTORequest,
                                                  UriComponentsBuilder uriComponentBuilder) {
-        boolean isLoanExists = loanService.checkIfLoanExists(simpleLoanDTORequest);
-        if (isLoanExists) {
-            return new ResponseEntity<Boolean>(false, HttpStatus.CONFLICT);
+        CheckoutResult result = loanService.checkoutBook(simpleLoanDTORequest);
+        switch (result) {
+            case CREATED:
+                return new ResponseEntity<Boolean>(true, HttpStatus.CREATED);
+            case UNKNOWN_BOOK:
+            case UNKNOWN_CUSTOMER:
+                return new ResponseEntity<Boolean>(false, HttpStatus.NOT_FOUND);
+            default:
+                LOGGER.info("Loan refused for book {} and customer {}: {}", simpleLoanDTORequest.getBookId(),
+                        simpleLoanDTORequest.getCustomerId(), result);
+                return new ResponseEntity<Boolean>(false, HttpStatus.CONFLICT);
         }
-        Loan loanRequest = mapSimpleLoanDTOToLoan(simpleLoanDTORequest);
-        Loan loan = loanService.saveLoan(loanRequest);
-        if (loan != null) {
-            return new ResponseEntity<Boolean>(true, HttpStatus.CREATED);
+    }
+
+    @GetMapping("/availability")
+    @Operation(summary = "Number of copies of a Book currently available for loan")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Ok: number of available copies"),
+            @ApiResponse(responseCode = "404", description = "Not Found: the book does not exist")
+    })
+    public ResponseEntity<Integer> getBookAvailability(@RequestParam("bookId") Integer bookId) {
+        Integer availableCopies = loanService.getAvailableCopies(bookId);
+        if (availableCopies == null) {
+            return new ResponseEntity<Integer>(HttpStatus.NOT_FOUND);
         }
-        return new ResponseEntity<Boolean>(false, HttpStatus.NOT_MODIFIED);
+        return new ResponseEntity<Integer>(availableCopies, HttpStatus.OK);
     }
 
     @PostMapping("/closeLoan")
@@ -92,47 +186,74 @@ public class LoanRestController {
         if (existingLoan == null) {
             return new ResponseEntity<Boolean>(false, HttpStatus.NO_CONTENT);
         }
-        existingLoan.setStatus(LoanStatus.CLOSE);
-        Loan loan = loanService.saveLoan(existingLoan);
-        if (loan != null) {
-            return new ResponseEntity<Boolean>(true, HttpStatus.OK);
+        loanService.closeLoan(existingLoan);
+        return new ResponseEntity<Boolean>(true, HttpStatus.OK);
+    }
+
+    /**
+     * Emprunts, retours et prolongations d'un lecteur au guichet en un seul appel et une seule transaction.
+     * Une opération refusée n'empêche pas les autres : chacune a son résultat, dans l'ordre de la requête.
+     */
+    @PostMapping("/circulation")
+    @Operation(summary = "Apply a batch of checkouts, returns and renewals",
+            description = "Operations are applied in order in one transaction, the result of each one is returned in the same order")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Ok: the batch is applied, see the result of each operation"),
+            @ApiResponse(responseCode = "400", description = "Bad Request: empty batch or more than 100 operations")
+    })
+    public ResponseEntity<List<CirculationResultDTO>> applyCirculation(@RequestBody List<CirculationOperationDTO> operationDTOs) {
+        if (CollectionUtils.isEmpty(operationDTOs) || operationDTOs.size() > MAX_CIRCULATION_OPERATIONS) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        List<CirculationOperation> operations = operationDTOs.stream()
+                .map(loanMapper::toCirculationOperation)
+                .collect(Collectors.toList());
+        List<CirculationResult> results = loanService.applyCirculation(operations);
+        List<CirculationResultDTO> resultDTOs = new ArrayList<>(operations.size());
+        for (int i = 0; i < operations.size(); i++) {
+            resultDTOs.add(loanMapper.toCirculationResultDTO(operations.get(i), results.get(i)));
         }
-        return new ResponseEntity<Boolean>(false, HttpStatus.NOT_MODIFIED);
+        return new ResponseEntity<>(resultDTOs, HttpStatus.OK);
+    }
+
+    @GetMapping(value = "/exportLoans", produces = "application/x-ndjson")
+    @Operation(summary = "Export the whole loan history as NDJSON", description = "One LoanDTO per line, streamed while reading the database")
+    @ApiResponse(responseCode = "200", description = "Ok: the export is streamed")
+    public ResponseEntity<StreamingResponseBody> exportLoans() {
+        return ndjsonStreamWriter.stream(loanService::forEachLoan, loanMapper::toLoanDTO);
     }
 
-    private List<LoanDTO> mapLoanDtosFromLoans(List<Loan> loans) {
-        Function<Loan, LoanDTO> mapperFunction = (loan) -> {
-            LoanDTO loanDTO = new LoanDTO();
-            loanDTO.getBookDTO().setId(loan.getPk().getBook().getId());
-            loanDTO.getBookDTO().setIsbn(loan.getPk().getBook().getIsbn());
-            loanDTO.getBookDTO().setTitle(loan.getPk().getBook().getTitle());
-            loanDTO.getCustomerDTO().setId(loan.getPk().getCustomer().getId());
-            loanDTO.getCustomerDTO().setFirstName(loan.getPk().getCustomer().getFirstName());
-            loanDTO.getCustomerDTO().setLastName(loan.getPk().getCustomer().getLastName());
-            loanDTO.getCustomerDTO().setEmail(loan.getPk().getCustomer().getEmail());
-            loanDTO.setLoanBeginDate(loan.getBeginDate());
-            loanDTO.setLoanEndDate(loan.getEndDate());
-            return loanDTO;
-        };
+    private List<LoanDTO> mapLoanDtosFromLoans(List<LoanView> loans) {
         if (!CollectionUtils.isEmpty(loans)) {
-            return loans.stream().map(mapperFunction).sorted().collect(Collectors.toList());
+            // déjà triés par la requête
+            return loans.stream().map(loanMapper::toLoanDTO).collect(Collectors.toList());
         }
         return null;
     }
 
-    private Loan mapSimpleLoanDTOToLoan(SimpleLoanDTO simpleLoanDTO) {
-        Loan loan = new Loan();
-        Book book = new Book();
-        book.setId(simpleLoanDTO.getBookId());
-        Customer customer = new Customer();
-        customer.setId(simpleLoanDTO.getCustomerId());
-        LoanId loanId = new LoanId(book, customer);
-        loan.setPk(loanId);
-        loan.setBeginDate(simpleLoanDTO.getBeginDate());
-        loan.setEndDate(simpleLoanDTO.getEndDate());
-        loan.setStatus(LoanStatus.OPEN);
-        return loan;
+    private static String encodeCursor(LoanSearchCursor cursor) {
+        String position = CURSOR_PREFIX + cursor.beginDate() + "|" + cursor.bookId() + "|" + cursor.customerId()
+                + "|" + cursor.creationDateTime();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
     }
-}
-
 
+    /**
+     * Retourne la position du dernier prêt lu, ou null si le curseur est invalide.
+     */
+    private static LoanSearchCursor decodeCursor(String cursor) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (!decoded.startsWith(CURSOR_PREFIX)) {
+                return null;
+            }
+            String[] position = decoded.substring(CURSOR_PREFIX.length()).split("\\|");
+            if (position.length != 4) {
+                return null;
+            }
+            return new LoanSearchCursor(LocalDate.parse(position[0]), Integer.valueOf(position[1]),
+                    Integer.valueOf(position[2]), LocalDateTime.parse(position[3]));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            return null;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,70 @@
+package com.ulrich.library2.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Réponse NDJSON (un objet JSON par ligne) écrite au fil de la lecture en base. Le flux est vidé dès la
+ * première ligne puis toutes les flushEveryRows lignes : le client reçoit les données immédiatement et
+ * rien n'est accumulé en mémoire.
+ */
+@Component
+public class NdjsonStreamWriter {
+
+    public static final Logger LOGGER = LoggerFactory.getLogger(NdjsonStreamWriter.class);
+
+    public static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    private ObjectMapper objectMapper;
+
+    private int flushEveryRows;
+
+    public NdjsonStreamWriter(ObjectMapper objectMapper,
+                              @Value("${library.export.flush-every-rows:500}") int flushEveryRows) {
+        this.objectMapper = objectMapper;
+        this.flushEveryRows = Math.max(flushEveryRows, 1);
+    }
+
+    /**
+     * @param source parcourt les entités (typiquement IBookService::forEachBook)
+     * @param mapper conversion d'une entité vers l'objet sérialisé
+     */
+    public <T> ResponseEntity<StreamingResponseBody> stream(ToLongFunction<Consumer<T>> source, Function<T, ?> mapper) {
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                // le séparateur de fin de ligne est écrit à la main, pas l'espace mis par défaut entre deux valeurs
+                generator.setRootValueSeparator(null);
+                long[] written = new long[1];
+                long rows = source.applyAsLong(entity -> {
+                    try {
+                        generator.writeObject(mapper.apply(entity));
+                        generator.writeRaw('\n');
+                        if (++written[0] == 1 || written[0] % flushEveryRows == 0) {
+                            generator.flush();
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                LOGGER.debug("NDJSON export: {} rows written", rows);
+            } catch (UncheckedIOException e) {
+                // le plus souvent le client a interrompu le téléchargement
+                throw e.getCause();
+            }
+        };
+        return ResponseEntity.ok().contentType(APPLICATION_NDJSON).body(body);
+    }
+}
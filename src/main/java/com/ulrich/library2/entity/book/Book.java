@@ -1,6 +1,7 @@
 package com.ulrich.library2.entity.book;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.DynamicUpdate;
 import java.time.LocalDate;
 import java.util.HashSet;
 import java.util.Set;
@@ -9,6 +10,7 @@ import com.ulrich.library2.entity.loan.Loan;
 
 
 @Entity
+@DynamicUpdate
 @Table(name = "BOOK")
 public class Book {
 
@@ -28,6 +30,8 @@ public class Book {
 
     private Category category;
 
+    private Long version;
+
     Set<Loan> loans = new HashSet<Loan>();
 
     @Id
@@ -96,7 +100,20 @@ public class Book {
         this.author = author;
     }
 
-    @ManyToOne(optional = false ,cascade=CascadeType.ALL)
+    /**
+     * Incrémentée à chaque modification : source de l'ETag du livre.
+     */
+    @Version
+    @Column(name = "VERSION", nullable = false)
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    @ManyToOne(optional = false)
     @JoinColumn(name = "CAT_CODE", referencedColumnName = "CODE")
     public Category getCategory() {
         return category;
@@ -5,6 +5,7 @@
  import jakarta.persistence.Entity;
  import jakarta.persistence.Id;
  import jakarta.persistence.Table;
+ import jakarta.persistence.Version;
 
  @Entity
  @Table(name = "CATEGORY")
@@ -23,6 +24,8 @@
 
 private String label;
 
+ private Long version;
+
  @Id
  @Column(name = "CODE")
  public String getCode() {
@@ -41,6 +44,20 @@ public void setCode(String code) {
           public void setLabel(String label) {
           this.label = label;
           }
+
+     /**
+      * Incrémentée à chaque modification : entre dans la version de l'ensemble des catégories (ETag).
+      */
+     @Version
+     @Column(name = "VERSION", nullable = false)
+     public Long getVersion() {
+         return version;
+     }
+
+     public void setVersion(Long version) {
+         this.version = version;
+     }
+
      @Override
      public int hashCode() {
          final int prime = 31;
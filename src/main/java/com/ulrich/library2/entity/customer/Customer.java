@@ -5,10 +5,12 @@ import java.util.HashSet;
 import java.util.Set;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.DynamicUpdate;
 
 import com.ulrich.library2.entity.loan.Loan;
 
 @Entity
+@DynamicUpdate
 @Table(name = "CUSTOMER")
 public class Customer {
 
@@ -26,6 +28,8 @@ public class Customer {
 
     private LocalDateTime creationDate=LocalDateTime.now();
 
+    private Long version;
+
     Set<Loan> loans = new HashSet<Loan>();
 
     @Id
@@ -91,8 +95,25 @@ public class Customer {
         return creationDate;
     }
 
+    /**
+     * Hibernate passe aussi par ce setter au chargement : la valeur lue doit être conservée, sinon
+     * chaque client chargé est vu comme modifié et réécrit au flush.
+     */
     public void setCreationDate(LocalDateTime creationDate) {
-        this.creationDate = LocalDateTime.now();
+        this.creationDate = creationDate == null ? LocalDateTime.now() : creationDate;
+    }
+
+    /**
+     * Incrémentée à chaque modification : source de l'ETag du client.
+     */
+    @Version
+    @Column(name = "VERSION", nullable = false)
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
     }
 
     @OneToMany(fetch = FetchType.LAZY, mappedBy = "pk.customer", cascade = CascadeType.ALL)
@@ -0,0 +1,93 @@
+package com.ulrich.library2.entity.job;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import jakarta.persistence.*;
+
+/**
+ * Point de reprise d'un traitement planifié : la prochaine exécution repart de cette date. Pendant une exécution
+ * par tranches, la dernière ligne traitée (lastEndDate, lastBookId, lastCustomerId) y est enregistrée à chaque
+ * tranche : une exécution interrompue reprend après elle.
+ */
+@Entity
+@Table(name = "JOB_WATERMARK")
+public class JobWatermark {
+
+    private String jobName;
+
+    private LocalDate watermark;
+
+    private LocalDate lastEndDate;
+
+    private Integer lastBookId;
+
+    private Integer lastCustomerId;
+
+    private LocalDateTime updatedAt;
+
+    public JobWatermark() {
+    }
+
+    public JobWatermark(String jobName, LocalDate watermark) {
+        this.jobName = jobName;
+        this.watermark = watermark;
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    @Id
+    @Column(name = "JOB_NAME")
+    public String getJobName() {
+        return jobName;
+    }
+
+    public void setJobName(String jobName) {
+        this.jobName = jobName;
+    }
+
+    @Column(name = "WATERMARK", nullable = false)
+    public LocalDate getWatermark() {
+        return watermark;
+    }
+
+    public void setWatermark(LocalDate watermark) {
+        this.watermark = watermark;
+    }
+
+    @Column(name = "LAST_END_DATE")
+    public LocalDate getLastEndDate() {
+        return lastEndDate;
+    }
+
+    public void setLastEndDate(LocalDate lastEndDate) {
+        this.lastEndDate = lastEndDate;
+    }
+
+    @Column(name = "LAST_BOOK_ID")
+    public Integer getLastBookId() {
+        return lastBookId;
+    }
+
+    public void setLastBookId(Integer lastBookId) {
+        this.lastBookId = lastBookId;
+    }
+
+    @Column(name = "LAST_CUSTOMER_ID")
+    public Integer getLastCustomerId() {
+        return lastCustomerId;
+    }
+
+    public void setLastCustomerId(Integer lastCustomerId) {
+        this.lastCustomerId = lastCustomerId;
+    }
+
+    @Column(name = "UPDATED_AT", nullable = false)
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+}
@@ -5,6 +5,7 @@ import com.ulrich.library2.service.LoanStatus;
 import java.io.Serializable;
 import java.time.LocalDate;
 import com.ulrich.library2.entity.book.Book;
+import org.hibernate.annotations.ColumnDefault;
 
 
 
@@ -28,6 +29,8 @@ import com.ulrich.library2.entity.book.Book;
 
          private LoanStatus status;
 
+         private boolean archived;
+
          @EmbeddedId
 public LoanId getPk() {
 
@@ -65,6 +68,20 @@ public LocalDate getBeginDate() {
 
          public void setStatus(LoanStatus status) {
          this.status = status;
+         }
+
+         /**
+          * Clé de partition de LOAN : les prêts CLOSE anciens sont déplacés par le LoanArchiver dans la partition
+          * d'archive, les prêts OPEN restent toujours dans la partition active.
+          */
+         @ColumnDefault("false")
+         @Column(name = "ARCHIVED", nullable = false)
+ public boolean isArchived() {
+         return archived;
+         }
+
+         public void setArchived(boolean archived) {
+         this.archived = archived;
          }
 
              @Override
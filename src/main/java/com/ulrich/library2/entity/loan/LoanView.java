@@ -0,0 +1,166 @@
+package com.ulrich.library2.entity.loan;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.Immutable;
+
+import com.ulrich.library2.service.LoanStatus;
+
+/**
+ * Modèle de lecture des prêts : une ligne par prêt, avec le titre et l'ISBN du livre et l'identité du client
+ * recopiés. Les listes de prêts sont lues dans cette seule table, sans jointure. Elle est écrite
+ * uniquement par le LoanViewProjector, dans la transaction qui modifie le prêt, le livre ou le client.
+ */
+@Entity
+@Immutable
+@IdClass(LoanViewId.class)
+@Table(name = "LOAN_VIEW", indexes = {
+        @Index(name = "IDX_LOAN_VIEW_EMAIL_STATUS", columnList = "EMAIL_KEY, STATUS"),
+        @Index(name = "IDX_LOAN_VIEW_END_DATE", columnList = "END_DATE"),
+        @Index(name = "IDX_LOAN_VIEW_CUSTOMER", columnList = "CUSTOMER_ID, BEGIN_DATE"),
+        @Index(name = "IDX_LOAN_VIEW_BEGIN_DATE", columnList = "BEGIN_DATE, BOOK_ID, CUSTOMER_ID, CREATION_DATE_TIME"),
+        @Index(name = "IDX_LOAN_VIEW_STATUS_BEGIN_DATE", columnList = "STATUS, BEGIN_DATE, BOOK_ID, CUSTOMER_ID, CREATION_DATE_TIME")
+})
+public class LoanView {
+
+    private Integer bookId;
+
+    private Integer customerId;
+
+    private LocalDateTime creationDateTime;
+
+    private String bookTitle;
+
+    private String bookIsbn;
+
+    private String customerFirstName;
+
+    private String customerLastName;
+
+    private String customerEmail;
+
+    private String emailKey;
+
+    private LocalDate beginDate;
+
+    private LocalDate endDate;
+
+    private LoanStatus status;
+
+    @Id
+    @Column(name = "BOOK_ID")
+    public Integer getBookId() {
+        return bookId;
+    }
+
+    public void setBookId(Integer bookId) {
+        this.bookId = bookId;
+    }
+
+    @Id
+    @Column(name = "CUSTOMER_ID")
+    public Integer getCustomerId() {
+        return customerId;
+    }
+
+    public void setCustomerId(Integer customerId) {
+        this.customerId = customerId;
+    }
+
+    @Id
+    @Column(name = "CREATION_DATE_TIME")
+    public LocalDateTime getCreationDateTime() {
+        return creationDateTime;
+    }
+
+    public void setCreationDateTime(LocalDateTime creationDateTime) {
+        this.creationDateTime = creationDateTime;
+    }
+
+    @Column(name = "BOOK_TITLE", nullable = false)
+    public String getBookTitle() {
+        return bookTitle;
+    }
+
+    public void setBookTitle(String bookTitle) {
+        this.bookTitle = bookTitle;
+    }
+
+    @Column(name = "BOOK_ISBN", nullable = false)
+    public String getBookIsbn() {
+        return bookIsbn;
+    }
+
+    public void setBookIsbn(String bookIsbn) {
+        this.bookIsbn = bookIsbn;
+    }
+
+    @Column(name = "CUSTOMER_FIRST_NAME")
+    public String getCustomerFirstName() {
+        return customerFirstName;
+    }
+
+    public void setCustomerFirstName(String customerFirstName) {
+        this.customerFirstName = customerFirstName;
+    }
+
+    @Column(name = "CUSTOMER_LAST_NAME")
+    public String getCustomerLastName() {
+        return customerLastName;
+    }
+
+    public void setCustomerLastName(String customerLastName) {
+        this.customerLastName = customerLastName;
+    }
+
+    @Column(name = "CUSTOMER_EMAIL")
+    public String getCustomerEmail() {
+        return customerEmail;
+    }
+
+    public void setCustomerEmail(String customerEmail) {
+        this.customerEmail = customerEmail;
+    }
+
+    /**
+     * LOWER(CUSTOMER_EMAIL) : clé de recherche indexée, sans fonction appliquée à la colonne.
+     */
+    @Column(name = "EMAIL_KEY")
+    public String getEmailKey() {
+        return emailKey;
+    }
+
+    public void setEmailKey(String emailKey) {
+        this.emailKey = emailKey;
+    }
+
+    @Column(name = "BEGIN_DATE", nullable = false)
+    public LocalDate getBeginDate() {
+        return beginDate;
+    }
+
+    public void setBeginDate(LocalDate beginDate) {
+        this.beginDate = beginDate;
+    }
+
+    @Column(name = "END_DATE", nullable = false)
+    public LocalDate getEndDate() {
+        return endDate;
+    }
+
+    public void setEndDate(LocalDate endDate) {
+        this.endDate = endDate;
+    }
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "STATUS")
+    public LoanStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(LoanStatus status) {
+        this.status = status;
+    }
+}
@@ -0,0 +1,69 @@
+package com.ulrich.library2.entity.loan;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * Clé de LOAN_VIEW : la même que celle de LOAN, réduite aux identifiants.
+ */
+public class LoanViewId implements Serializable {
+
+    private static final long serialVersionUID = 4190387715204628017L;
+
+    private Integer bookId;
+
+    private Integer customerId;
+
+    private LocalDateTime creationDateTime;
+
+    public LoanViewId() {
+    }
+
+    public LoanViewId(Integer bookId, Integer customerId, LocalDateTime creationDateTime) {
+        this.bookId = bookId;
+        this.customerId = customerId;
+        this.creationDateTime = creationDateTime;
+    }
+
+    public Integer getBookId() {
+        return bookId;
+    }
+
+    public void setBookId(Integer bookId) {
+        this.bookId = bookId;
+    }
+
+    public Integer getCustomerId() {
+        return customerId;
+    }
+
+    public void setCustomerId(Integer customerId) {
+        this.customerId = customerId;
+    }
+
+    public LocalDateTime getCreationDateTime() {
+        return creationDateTime;
+    }
+
+    public void setCreationDateTime(LocalDateTime creationDateTime) {
+        this.creationDateTime = creationDateTime;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof LoanViewId other)) {
+            return false;
+        }
+        return Objects.equals(bookId, other.bookId) && Objects.equals(customerId, other.customerId)
+                && Objects.equals(creationDateTime, other.creationDateTime);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(bookId, customerId, creationDateTime);
+    }
+}
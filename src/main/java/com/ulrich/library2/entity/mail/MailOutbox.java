@@ -0,0 +1,141 @@
+package com.ulrich.library2.entity.mail;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.*;
+
+import com.ulrich.library2.service.MailStatus;
+
+/**
+ * Mail en attente d'envoi. La ligne est écrite dans la transaction de la requête et envoyée plus tard
+ * par le MailOutboxDispatcher.
+ */
+@Entity
+@Table(name = "MAIL_OUTBOX")
+public class MailOutbox {
+
+    private Long id;
+
+    private String sender;
+
+    private String recipient;
+
+    private String subject;
+
+    private String content;
+
+    private MailStatus status;
+
+    private Integer attempts = 0;
+
+    private LocalDateTime createdAt;
+
+    private LocalDateTime nextAttemptAt;
+
+    private LocalDateTime sentAt;
+
+    private String lastError;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "MAIL_ID")
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    @Column(name = "SENDER", nullable = false)
+    public String getSender() {
+        return sender;
+    }
+
+    public void setSender(String sender) {
+        this.sender = sender;
+    }
+
+    @Column(name = "RECIPIENT", nullable = false)
+    public String getRecipient() {
+        return recipient;
+    }
+
+    public void setRecipient(String recipient) {
+        this.recipient = recipient;
+    }
+
+    @Column(name = "SUBJECT")
+    public String getSubject() {
+        return subject;
+    }
+
+    public void setSubject(String subject) {
+        this.subject = subject;
+    }
+
+    @Column(name = "CONTENT", columnDefinition = "TEXT")
+    public String getContent() {
+        return content;
+    }
+
+    public void setContent(String content) {
+        this.content = content;
+    }
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "STATUS", nullable = false)
+    public MailStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(MailStatus status) {
+        this.status = status;
+    }
+
+    @Column(name = "ATTEMPTS", nullable = false)
+    public Integer getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(Integer attempts) {
+        this.attempts = attempts;
+    }
+
+    @Column(name = "CREATED_AT", nullable = false)
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    @Column(name = "NEXT_ATTEMPT_AT", nullable = false)
+    public LocalDateTime getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+
+    public void setNextAttemptAt(LocalDateTime nextAttemptAt) {
+        this.nextAttemptAt = nextAttemptAt;
+    }
+
+    @Column(name = "SENT_AT")
+    public LocalDateTime getSentAt() {
+        return sentAt;
+    }
+
+    public void setSentAt(LocalDateTime sentAt) {
+        this.sentAt = sentAt;
+    }
+
+    @Column(name = "LAST_ERROR", length = 1000)
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+}
@@ -0,0 +1,98 @@
+package com.ulrich.library2.mapper;
+
+import com.ulrich.library2.controller.BookDTO;
+import com.ulrich.library2.controller.CategoryDTO;
+import com.ulrich.library2.entity.book.Book;
+import com.ulrich.library2.entity.category.Category;
+import com.ulrich.library2.service.BookView;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Conversion Book <-> BookDTO écrite à la main, sans réflexion.
+ */
+@Component
+public class BookMapper {
+
+    private CategoryMapper categoryMapper;
+
+    public BookMapper(CategoryMapper categoryMapper) {
+        this.categoryMapper = categoryMapper;
+    }
+
+    public BookDTO toBookDTO(Book book) {
+        BookDTO bookDTO = new BookDTO();
+        bookDTO.setId(book.getId());
+        bookDTO.setTitle(book.getTitle());
+        bookDTO.setIsbn(book.getIsbn());
+        bookDTO.setReleaseDate(book.getReleaseDate());
+        bookDTO.setRegisterDate(book.getRegisterDate());
+        bookDTO.setTotalExamplaries(book.getTotalExamplaries());
+        bookDTO.setAuthor(book.getAuthor());
+        bookDTO.setCategory(categoryMapper.toCategoryDTO(book.getCategory()));
+        return bookDTO;
+    }
+
+    public BookDTO toBookDTO(BookView book) {
+        BookDTO bookDTO = new BookDTO();
+        bookDTO.setId(book.id());
+        bookDTO.setTitle(book.title());
+        bookDTO.setIsbn(book.isbn());
+        bookDTO.setReleaseDate(book.releaseDate());
+        bookDTO.setRegisterDate(book.registerDate());
+        bookDTO.setTotalExamplaries(book.totalExamplaries());
+        bookDTO.setAuthor(book.author());
+        if (book.categoryCode() != null) {
+            bookDTO.setCategory(new CategoryDTO(book.categoryCode(), book.categoryLabel()));
+        }
+        return bookDTO;
+    }
+
+    /**
+     * La date d'enregistrement est toujours positionnée à la date du jour.
+     */
+    public Book toBook(BookDTO bookDTO) {
+        Book book = new Book();
+        book.setId(bookDTO.getId());
+        book.setTitle(bookDTO.getTitle());
+        book.setIsbn(bookDTO.getIsbn());
+        book.setReleaseDate(bookDTO.getReleaseDate());
+        book.setTotalExamplaries(bookDTO.getTotalExamplaries());
+        book.setAuthor(bookDTO.getAuthor());
+        book.setCategory(categoryMapper.toCategory(bookDTO.getCategory()));
+        book.setRegisterDate(LocalDate.now());
+        return book;
+    }
+
+    /**
+     * Modifications d'un PATCH : seuls les champs renseignés sont appliqués, ni l'identifiant ni la date
+     * d'enregistrement. La nouvelle catégorie n'est désignée que par son code, le service la résout.
+     */
+    public Consumer<Book> toChanges(BookDTO bookDTO) {
+        return book -> {
+            if (bookDTO.getTitle() != null) {
+                book.setTitle(bookDTO.getTitle());
+            }
+            if (bookDTO.getIsbn() != null) {
+                book.setIsbn(bookDTO.getIsbn());
+            }
+            if (bookDTO.getReleaseDate() != null) {
+                book.setReleaseDate(bookDTO.getReleaseDate());
+            }
+            if (bookDTO.getTotalExamplaries() != null) {
+                book.setTotalExamplaries(bookDTO.getTotalExamplaries());
+            }
+            if (bookDTO.getAuthor() != null) {
+                book.setAuthor(bookDTO.getAuthor());
+            }
+            CategoryDTO category = bookDTO.getCategory();
+            if (category != null && (book.getCategory() == null
+                    || !Objects.equals(category.getCode(), book.getCategory().getCode()))) {
+                book.setCategory(new Category(category.getCode(), null));
+            }
+        };
+    }
+}
@@ -0,0 +1,26 @@
+package com.ulrich.library2.mapper;
+
+import com.ulrich.library2.controller.CategoryDTO;
+import com.ulrich.library2.entity.category.Category;
+import org.springframework.stereotype.Component;
+
+/**
+ * Conversion Category <-> CategoryDTO écrite à la main, sans réflexion.
+ */
+@Component
+public class CategoryMapper {
+
+    public CategoryDTO toCategoryDTO(Category category) {
+        if (category == null) {
+            return null;
+        }
+        return new CategoryDTO(category.getCode(), category.getLabel());
+    }
+
+    public Category toCategory(CategoryDTO categoryDTO) {
+        if (categoryDTO == null) {
+            return null;
+        }
+        return new Category(categoryDTO.getCode(), categoryDTO.getLabel());
+    }
+}
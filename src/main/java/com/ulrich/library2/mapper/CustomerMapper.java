@@ -0,0 +1,74 @@
+package com.ulrich.library2.mapper;
+
+import com.ulrich.library2.controller.CustomerDTO;
+import com.ulrich.library2.entity.customer.Customer;
+import com.ulrich.library2.service.CustomerView;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Consumer;
+
+/**
+ * Conversion Customer <-> CustomerDTO écrite à la main, sans réflexion.
+ */
+@Component
+public class CustomerMapper {
+
+    public CustomerDTO toCustomerDTO(Customer customer) {
+        CustomerDTO customerDTO = new CustomerDTO();
+        customerDTO.setId(customer.getId());
+        customerDTO.setFirstName(customer.getFirstName());
+        customerDTO.setLastName(customer.getLastName());
+        customerDTO.setJob(customer.getJob());
+        customerDTO.setAddress(customer.getAddress());
+        customerDTO.setEmail(customer.getEmail());
+        customerDTO.setCreationDate(customer.getCreationDate());
+        return customerDTO;
+    }
+
+    public CustomerDTO toCustomerDTO(CustomerView customer) {
+        CustomerDTO customerDTO = new CustomerDTO();
+        customerDTO.setId(customer.id());
+        customerDTO.setFirstName(customer.firstName());
+        customerDTO.setLastName(customer.lastName());
+        customerDTO.setJob(customer.job());
+        customerDTO.setAddress(customer.address());
+        customerDTO.setEmail(customer.email());
+        customerDTO.setCreationDate(customer.creationDate());
+        return customerDTO;
+    }
+
+    public Customer toCustomer(CustomerDTO customerDTO) {
+        Customer customer = new Customer();
+        customer.setId(customerDTO.getId());
+        customer.setFirstName(customerDTO.getFirstName());
+        customer.setLastName(customerDTO.getLastName());
+        customer.setJob(customerDTO.getJob());
+        customer.setAddress(customerDTO.getAddress());
+        customer.setEmail(customerDTO.getEmail());
+        customer.setCreationDate(customerDTO.getCreationDate());
+        return customer;
+    }
+
+    /**
+     * Modifications d'un PATCH : seuls les champs renseignés sont appliqués, ni l'identifiant ni la date de création.
+     */
+    public Consumer<Customer> toChanges(CustomerDTO customerDTO) {
+        return customer -> {
+            if (customerDTO.getFirstName() != null) {
+                customer.setFirstName(customerDTO.getFirstName());
+            }
+            if (customerDTO.getLastName() != null) {
+                customer.setLastName(customerDTO.getLastName());
+            }
+            if (customerDTO.getJob() != null) {
+                customer.setJob(customerDTO.getJob());
+            }
+            if (customerDTO.getAddress() != null) {
+                customer.setAddress(customerDTO.getAddress());
+            }
+            if (customerDTO.getEmail() != null) {
+                customer.setEmail(customerDTO.getEmail());
+            }
+        };
+    }
+}
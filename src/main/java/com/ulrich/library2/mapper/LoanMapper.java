@@ -0,0 +1,61 @@
+package com.ulrich.library2.mapper;
+
+import com.ulrich.library2.controller.CirculationOperationDTO;
+import com.ulrich.library2.controller.CirculationResultDTO;
+import com.ulrich.library2.controller.LoanDTO;
+import com.ulrich.library2.entity.book.Book;
+import com.ulrich.library2.entity.customer.Customer;
+import com.ulrich.library2.entity.loan.Loan;
+import com.ulrich.library2.entity.loan.LoanView;
+import com.ulrich.library2.service.CirculationOperation;
+import com.ulrich.library2.service.CirculationResult;
+import org.springframework.stereotype.Component;
+
+/**
+ * Conversion Loan -> LoanDTO écrite à la main, sans réflexion.
+ */
+@Component
+public class LoanMapper {
+
+    /**
+     * Seuls les champs d'identification du livre et du client sont repris dans le LoanDTO.
+     */
+    public LoanDTO toLoanDTO(Loan loan) {
+        Book book = loan.getPk().getBook();
+        Customer customer = loan.getPk().getCustomer();
+        LoanDTO loanDTO = new LoanDTO();
+        loanDTO.getBookDTO().setId(book.getId());
+        loanDTO.getBookDTO().setIsbn(book.getIsbn());
+        loanDTO.getBookDTO().setTitle(book.getTitle());
+        loanDTO.getCustomerDTO().setId(customer.getId());
+        loanDTO.getCustomerDTO().setFirstName(customer.getFirstName());
+        loanDTO.getCustomerDTO().setLastName(customer.getLastName());
+        loanDTO.getCustomerDTO().setEmail(customer.getEmail());
+        loanDTO.setLoanBeginDate(loan.getBeginDate());
+        loanDTO.setLoanEndDate(loan.getEndDate());
+        return loanDTO;
+    }
+
+    public LoanDTO toLoanDTO(LoanView loan) {
+        LoanDTO loanDTO = new LoanDTO();
+        loanDTO.getBookDTO().setId(loan.getBookId());
+        loanDTO.getBookDTO().setIsbn(loan.getBookIsbn());
+        loanDTO.getBookDTO().setTitle(loan.getBookTitle());
+        loanDTO.getCustomerDTO().setId(loan.getCustomerId());
+        loanDTO.getCustomerDTO().setFirstName(loan.getCustomerFirstName());
+        loanDTO.getCustomerDTO().setLastName(loan.getCustomerLastName());
+        loanDTO.getCustomerDTO().setEmail(loan.getCustomerEmail());
+        loanDTO.setLoanBeginDate(loan.getBeginDate());
+        loanDTO.setLoanEndDate(loan.getEndDate());
+        return loanDTO;
+    }
+
+    public CirculationOperation toCirculationOperation(CirculationOperationDTO operationDTO) {
+        return new CirculationOperation(operationDTO.getType(), operationDTO.getBookId(), operationDTO.getCustomerId(),
+                operationDTO.getBeginDate(), operationDTO.getEndDate());
+    }
+
+    public CirculationResultDTO toCirculationResultDTO(CirculationOperation operation, CirculationResult result) {
+        return new CirculationResultDTO(operation.type(), operation.bookId(), operation.customerId(), result);
+    }
+}
@@ -2,26 +2,78 @@ package com.ulrich.library2.repository;
 
 
 import com.ulrich.library2.entity.book.Book;
+import com.ulrich.library2.service.BookView;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface IBookDao extends JpaRepository<Book, Integer> {
 
-    Book findByIsbnIgnoreCase(String isbn);
+    /**
+     * Comparaison sur LOWER() et non UPPER() : c'est l'expression de l'index unique UX_BOOK_ISBN_LOWER (V7).
+     */
+    @Query("SELECT b FROM Book b WHERE LOWER(b.isbn) = LOWER(:isbn)")
+    Book findByIsbnIgnoreCase(@Param("isbn") String isbn);
 
-    public List<Book> findByTitleLikeIgnoreCase(String title);
+    @QueryHints({
+            @QueryHint(name = "org.hibernate.cacheable", value = "true"),
+            @QueryHint(name = "org.hibernate.cacheRegion", value = "library.query.book")
+    })
+    @Query("SELECT b FROM Book b WHERE LOWER(b.isbn) = LOWER(:isbn)")
+    Book findCachedByIsbnIgnoreCase(@Param("isbn") String isbn);
 
-    @Query(   "SELECT b "
+    String BOOK_VIEW = "SELECT new com.ulrich.library2.service.BookView(b.id, b.title, b.isbn, b.releaseDate, "
+            + "       b.registerDate, b.totalExamplaries, b.author, cat.code, cat.label) "
             + "FROM Book b "
-            + "INNER JOIN b.category cat "
-            + "WHERE cat.code = :code"
-    )
-    public List<Book> 	findByCategory(@Param("code") String codeCategory);
+            + "INNER JOIN b.category cat ";
+
+    /**
+     * Projections en lecture seule : livre et catégorie en une requête, rien n'entre dans le contexte de persistance.
+     * Le LIKE '%titre%' passe par l'index trigramme IDX_BOOK_TITLE_TRGM, posé sur LOWER(TITLE).
+     */
+    @Query(BOOK_VIEW + "WHERE LOWER(b.title) LIKE LOWER(:title) ORDER BY b.id")
+    public List<BookView> findViewsByTitleLike(@Param("title") String title);
+
+    @Query(BOOK_VIEW + "WHERE cat.code = :code ORDER BY b.id")
+    public List<BookView> findViewsByCategory(@Param("code") String codeCategory);
+
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "1000"))
+    @Query(BOOK_VIEW)
+    public List<BookView> findAllViews();
+
+    @Query(BOOK_VIEW + "WHERE b.id IN :ids")
+    public List<BookView> findViewsByIdIn(@Param("ids") Collection<Integer> bookIds);
+
+    /**
+     * Verrouille la ligne BOOK jusqu'à la fin de la transaction : sert de garde entre instances pour les emprunts.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM Book b WHERE b.id = :id")
+    public Book findByIdForUpdate(@Param("id") Integer bookId);
+
+    @Query("SELECT b.id, b.totalExamplaries FROM Book b")
+    public List<Object[]> findAllTotalExamplaries();
+
+    /**
+     * Parcours de tout le catalogue par curseur serveur (fetch size fixe), sans passer par le cache de second niveau.
+     */
+    @QueryHints({
+            @QueryHint(name = "org.hibernate.fetchSize", value = "500"),
+            @QueryHint(name = "org.hibernate.readOnly", value = "true"),
+            @QueryHint(name = "org.hibernate.cacheMode", value = "IGNORE")
+    })
+    @Query("SELECT b FROM Book b JOIN FETCH b.category ORDER BY b.id")
+    public Stream<Book> streamAllOrderById();
 
 }
 
@@ -2,11 +2,23 @@ package com.ulrich.library2.repository;
 
 
 import com.ulrich.library2.entity.category.Category;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository
     public interface ICategoryDao extends JpaRepository<Category, Integer> {
+
+        @QueryHints({
+                @QueryHint(name = "org.hibernate.cacheable", value = "true"),
+                @QueryHint(name = "org.hibernate.cacheRegion", value = "library.query.category")
+        })
+        @Query("SELECT c FROM Category c")
+        public List<Category> findAllCached();
     }
 
 
@@ -1,17 +1,67 @@
 package com.ulrich.library2.repository;
 
 import com.ulrich.library2.entity.customer.Customer;
+import com.ulrich.library2.service.CustomerView;
+import org.springframework.data.domain.Limit;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface ICustomerDao extends JpaRepository<Customer, Integer> {
 
-    public Customer findCustomerByEmailIgnoreCase(String email);
+    /**
+     * Les recherches insensibles à la casse comparent LOWER(colonne) à LOWER(paramètre) : ce sont les
+     * expressions des index UX_CUSTOMER_EMAIL_LOWER (unique, V7) et IDX_CUSTOMER_LAST_NAME_LOWER.
+     */
+    @Query("SELECT c FROM Customer c WHERE LOWER(c.email) = LOWER(:email)")
+    public Customer findCustomerByEmailIgnoreCase(@Param("email") String email);
 
-    public List<Customer> findCustomerByLastNameIgnoreCase(String lastName);
+    @QueryHints({
+            @QueryHint(name = "org.hibernate.cacheable", value = "true"),
+            @QueryHint(name = "org.hibernate.cacheRegion", value = "library.query.customer")
+    })
+    @Query("SELECT c FROM Customer c WHERE LOWER(c.email) = LOWER(:email)")
+    public Customer findCachedCustomerByEmailIgnoreCase(@Param("email") String email);
+
+    String CUSTOMER_VIEW = "SELECT new com.ulrich.library2.service.CustomerView(c.id, c.firstName, c.lastName, "
+            + "       c.job, c.address, c.email, c.creationDate, c.version) "
+            + "FROM Customer c ";
+
+    /**
+     * Projections en lecture seule : rien n'entre dans le contexte de persistance.
+     */
+    @Query(CUSTOMER_VIEW + "WHERE LOWER(c.lastName) = LOWER(:lastName) ORDER BY c.id")
+    public List<CustomerView> findViewsByLastName(@Param("lastName") String lastName);
+
+    @Query(CUSTOMER_VIEW + "WHERE LOWER(c.email) = LOWER(:email)")
+    public CustomerView findViewByEmail(@Param("email") String email);
+
+    @QueryHints({
+            @QueryHint(name = "org.hibernate.cacheable", value = "true"),
+            @QueryHint(name = "org.hibernate.cacheRegion", value = "library.query.customer")
+    })
+    @Query(CUSTOMER_VIEW + "WHERE LOWER(c.email) = LOWER(:email)")
+    public CustomerView findCachedViewByEmail(@Param("email") String email);
+
+    public List<Customer> findByIdGreaterThanOrderByIdAsc(Integer lastId, Limit limit);
+
+    /**
+     * Parcours de tous les clients par curseur serveur (fetch size fixe), sans passer par le cache de second niveau.
+     */
+    @QueryHints({
+            @QueryHint(name = "org.hibernate.fetchSize", value = "500"),
+            @QueryHint(name = "org.hibernate.readOnly", value = "true"),
+            @QueryHint(name = "org.hibernate.cacheMode", value = "IGNORE")
+    })
+    @Query("SELECT c FROM Customer c ORDER BY c.id")
+    public Stream<Customer> streamAllOrderById();
 
 }
 
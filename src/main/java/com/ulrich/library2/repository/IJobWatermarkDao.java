@@ -0,0 +1,35 @@
+package com.ulrich.library2.repository;
+
+import com.ulrich.library2.entity.job.JobWatermark;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface IJobWatermarkDao extends JpaRepository<JobWatermark, String> {
+
+    /**
+     * Crée le watermark d'un traitement s'il n'existe pas encore, sans erreur si une autre instance vient de le créer.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO JOB_WATERMARK (JOB_NAME, WATERMARK, UPDATED_AT) "
+            + "VALUES (:jobName, :watermark, :updatedAt) "
+            + "ON CONFLICT (JOB_NAME) DO NOTHING", nativeQuery = true)
+    public int insertIfAbsent(@Param("jobName") String jobName, @Param("watermark") LocalDate watermark,
+                              @Param("updatedAt") LocalDateTime updatedAt);
+
+    /**
+     * Verrouille le watermark jusqu'à la fin de la transaction : une seule instance à la fois traite une tranche.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT w FROM JobWatermark w WHERE w.jobName = :jobName")
+    public Optional<JobWatermark> findForUpdate(@Param("jobName") String jobName);
+}
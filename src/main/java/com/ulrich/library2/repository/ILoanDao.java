@@ -2,32 +2,86 @@ package com.ulrich.library2.repository;
 
 import com.ulrich.library2.entity.loan.Loan;
 import com.ulrich.library2.service.LoanStatus;
+import com.ulrich.library2.service.OverdueLoan;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.stream.Stream;
 
+/**
+ * Les requêtes sur les prêts OPEN précisent archived = false : ils ne sont jamais archivés, et PostgreSQL
+ * ne lit alors que la partition active de LOAN.
+ */
 @Repository
 public interface ILoanDao extends JpaRepository<Loan, Integer> {
 
-    public List<Loan> findByEndDateBefore(LocalDate maxEndDate);
-
-    @Query(   "SELECT lo "
-            + "FROM Loan lo "
-            + "INNER JOIN lo.pk.customer c "
-            + "WHERE UPPER(c.email) = UPPER(?1) "
-            + "   AND lo.status = ?2 ")
-    public List<Loan> getAllOpenLoansOfThisCustomer(String email, LoanStatus status);
-
     @Query(   "SELECT lo "
             + "FROM Loan lo "
             + "INNER JOIN lo.pk.book b "
             + "INNER JOIN lo.pk.customer c "
             + "WHERE b.id =	?1 "
             + "   AND c.id = ?2 "
-            + "   AND lo.status = ?3 ")
+            + "   AND lo.status = ?3 "
+            + "   AND lo.archived = false ")
     public Loan getLoanByCriteria(Integer bookId, Integer customerId, LoanStatus status);
+
+    @Query(   "SELECT COUNT(lo) "
+            + "FROM Loan lo "
+            + "WHERE lo.pk.book.id = ?1 "
+            + "   AND lo.status = ?2 "
+            + "   AND lo.archived = false ")
+    public long countByBookAndStatus(Integer bookId, LoanStatus status);
+
+    @Query(   "SELECT lo.pk.book.id, COUNT(lo) "
+            + "FROM Loan lo "
+            + "WHERE lo.status = ?1 "
+            + "   AND lo.archived = false "
+            + "GROUP BY lo.pk.book.id ")
+    public List<Object[]> countByStatusGroupByBook(LoanStatus status);
+    /**
+     * Prêts OPEN arrivés à échéance dans [from, to), lus par tranches : on reprend après le dernier
+     * triplet (END_DATE, BOOK_ID, CUSTOMER_ID) lu, sans OFFSET. Le statut est écrit en littéral pour que
+     * PostgreSQL retienne l'index partiel IDX_LOAN_OPEN_END_DATE (WHERE STATUS = 'OPEN').
+     */
+    @Query(   "SELECT new com.ulrich.library2.service.OverdueLoan(b.id, b.isbn, b.title, "
+            + "       c.id, c.firstName, c.lastName, c.email, lo.beginDate, lo.endDate) "
+            + "FROM Loan lo "
+            + "INNER JOIN lo.pk.book b "
+            + "INNER JOIN lo.pk.customer c "
+            + "WHERE lo.status = com.ulrich.library2.service.LoanStatus.OPEN "
+            + "   AND lo.archived = false "
+            + "   AND lo.endDate >= :from AND lo.endDate < :to "
+            + "   AND (lo.endDate > :lastEndDate "
+            + "        OR (lo.endDate = :lastEndDate AND (b.id > :lastBookId "
+            + "            OR (b.id = :lastBookId AND c.id > :lastCustomerId)))) "
+            + "ORDER BY lo.endDate, b.id, c.id ")
+    public List<OverdueLoan> findOpenOverdueLoansAfter(@Param("from") LocalDate from, @Param("to") LocalDate to,
+                                                       @Param("lastEndDate") LocalDate lastEndDate,
+                                                       @Param("lastBookId") Integer lastBookId,
+                                                       @Param("lastCustomerId") Integer lastCustomerId,
+                                                       Limit limit);
+
+    /**
+     * Historique complet des prêts, livre et client chargés dans la même requête, lu par curseur serveur.
+     */
+    @QueryHints({
+            @QueryHint(name = "org.hibernate.fetchSize", value = "500"),
+            @QueryHint(name = "org.hibernate.readOnly", value = "true"),
+            @QueryHint(name = "org.hibernate.cacheMode", value = "IGNORE")
+    })
+    @Query(   "SELECT lo "
+            + "FROM Loan lo "
+            + "INNER JOIN FETCH lo.pk.book b "
+            + "INNER JOIN FETCH b.category "
+            + "INNER JOIN FETCH lo.pk.customer c "
+            + "ORDER BY b.id, c.id, lo.pk.creationDateTime ")
+    public Stream<Loan> streamAllWithBookAndCustomer();
 }
 
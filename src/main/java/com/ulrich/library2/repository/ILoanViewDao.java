@@ -0,0 +1,25 @@
+package com.ulrich.library2.repository;
+
+import com.ulrich.library2.entity.loan.LoanView;
+import com.ulrich.library2.entity.loan.LoanViewId;
+import com.ulrich.library2.service.LoanStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface ILoanViewDao extends JpaRepository<LoanView, LoanViewId> {
+
+    public List<LoanView> findByEndDateBeforeOrderByBeginDateDesc(LocalDate maxEndDate);
+
+    /**
+     * EMAIL_KEY est l'email passé par LOWER() à l'écriture : on applique la même fonction au paramètre.
+     */
+    @Query("SELECT lv FROM LoanView lv WHERE lv.emailKey = LOWER(:email) AND lv.status = :status ORDER BY lv.beginDate DESC")
+    public List<LoanView> findByEmailAndStatus(@Param("email") String email, @Param("status") LoanStatus status);
+
+}
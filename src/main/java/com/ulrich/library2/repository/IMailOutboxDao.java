@@ -0,0 +1,40 @@
+package com.ulrich.library2.repository;
+
+import com.ulrich.library2.entity.mail.MailOutbox;
+import com.ulrich.library2.service.MailStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface IMailOutboxDao extends JpaRepository<MailOutbox, Long> {
+
+    /**
+     * Les lignes déjà verrouillées par une autre instance sont ignorées (SKIP LOCKED), ce qui permet
+     * à plusieurs dispatchers de vider la file en parallèle sans se marcher dessus.
+     * Les mails SENDING dont le bail a expiré sont repris.
+     */
+    @Query(value = "SELECT * "
+            + "FROM MAIL_OUTBOX "
+            + "WHERE STATUS IN ('PENDING', 'SENDING') "
+            + "   AND NEXT_ATTEMPT_AT <= :now "
+            + "ORDER BY MAIL_ID "
+            + "LIMIT :limit "
+            + "FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    public List<MailOutbox> findDueMailsForUpdate(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    @Modifying
+    @Query(   "UPDATE MailOutbox m "
+            + "SET m.status = :status, m.sentAt = :sentAt, m.lastError = null "
+            + "WHERE m.id IN :ids ")
+    public int markSent(@Param("ids") Collection<Long> ids, @Param("status") MailStatus status,
+                        @Param("sentAt") LocalDateTime sentAt);
+
+    public long countByStatusIn(Collection<MailStatus> statuses);
+}
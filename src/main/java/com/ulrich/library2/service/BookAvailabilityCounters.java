@@ -0,0 +1,91 @@
+package com.ulrich.library2.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Nombre d'exemplaires disponibles par livre, tenu en mémoire.
+ * Chaque livre a son propre compteur : les lectures sont sans verrou et deux livres différents ne se gênent jamais.
+ * Les valeurs sont écrites sous le verrou de la ligne BOOK par le moteur d'emprunt et resynchronisées
+ * périodiquement avec la table LOAN.
+ * Chaque écriture porte un numéro de publication croissant : la resynchronisation ne remplace que les compteurs
+ * qui n'ont pas été publiés depuis sa lecture de la base.
+ */
+@Component
+public class BookAvailabilityCounters {
+
+    private final Map<Integer, Counter> availableCopies = new ConcurrentHashMap<>();
+
+    private final AtomicLong publications = new AtomicLong();
+
+    private record Counter(int value, long publication) {
+    }
+
+    /**
+     * Retourne le nombre d'exemplaires disponibles, ou null si le livre n'est pas encore connu.
+     */
+    public Integer get(Integer bookId) {
+        Counter counter = availableCopies.get(bookId);
+        return counter == null ? null : counter.value();
+    }
+
+    public void set(Integer bookId, int value) {
+        availableCopies.put(bookId, new Counter(Math.max(value, 0), publications.incrementAndGet()));
+    }
+
+    /**
+     * N'écrit la valeur que si aucun autre thread ne l'a fait entre-temps.
+     */
+    public int setIfAbsent(Integer bookId, int value) {
+        return availableCopies.computeIfAbsent(bookId,
+                key -> new Counter(Math.max(value, 0), publications.incrementAndGet())).value();
+    }
+
+    /**
+     * Marque le compteur comme publié à nouveau, sans changer sa valeur : à appeler une fois commitée la
+     * transaction qui l'a écrit, pour qu'une resynchronisation qui aurait lu la base avant ce commit ne l'écrase pas.
+     */
+    public void touch(Integer bookId) {
+        availableCopies.computeIfPresent(bookId,
+                (key, counter) -> new Counter(counter.value(), publications.incrementAndGet()));
+    }
+
+    public void evict(Integer bookId) {
+        availableCopies.remove(bookId);
+    }
+
+    public void clear() {
+        availableCopies.clear();
+    }
+
+    /**
+     * Numéro de la dernière publication, à relever avant de lire la base pour reconcile.
+     */
+    public long snapshot() {
+        return publications.get();
+    }
+
+    /**
+     * Remplace les compteurs déjà en mémoire par les valeurs recalculées depuis la base, sauf ceux publiés après
+     * snapshot : ils sont plus récents que la lecture. Un livre absent du résultat a été supprimé. Les livres
+     * pas encore en mémoire restent calculés à leur premier accès.
+     */
+    public void reconcile(long snapshot, Map<Integer, Integer> availableCopiesByBook) {
+        for (Integer bookId : availableCopies.keySet()) {
+            availableCopies.computeIfPresent(bookId, (key, counter) -> {
+                if (counter.publication() > snapshot) {
+                    return counter;
+                }
+                Integer value = availableCopiesByBook.get(key);
+                return value == null ? null : new Counter(Math.max(value, 0), counter.publication());
+            });
+        }
+    }
+
+    public int size() {
+        return availableCopies.size();
+    }
+}
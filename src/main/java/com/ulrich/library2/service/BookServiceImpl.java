@@ -1,57 +1,275 @@
 package com.ulrich.library2.service;
 
 import com.ulrich.library2.entity.book.Book;
+import com.ulrich.library2.entity.category.Category;
 import com.ulrich.library2.repository.IBookDao;
-import jakarta.transaction.Transactional;
+import jakarta.persistence.EntityManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
 
 @Service("bookService")
 @Transactional
 public class BookServiceImpl implements IBookService {
 
+    private static final int TITLE_INDEX_CHUNK_SIZE = 1000;
+
     private IBookDao bookDao;
 
-    public BookServiceImpl(IBookDao bookDao) {
+    private BookTitleIndex bookTitleIndex;
+
+    private boolean titleIndexEnabled;
+
+    private BookAvailabilityCounters availabilityCounters;
+
+    private boolean cacheEnabled;
+
+    private EntityManager entityManager;
+
+    private LoanViewProjector loanViewProjector;
+
+    private CategoryRegistry categoryRegistry;
+
+    private TransactionTemplate transactionTemplate;
+
+    private int maxPatchAttempts;
+
+    public BookServiceImpl(IBookDao bookDao, BookTitleIndex bookTitleIndex,
+                           @Value("${library.book.title-index.enabled:true}") boolean titleIndexEnabled,
+                           BookAvailabilityCounters availabilityCounters,
+                           @Value("${library.cache.region.book.enabled:true}") boolean cacheEnabled,
+                           EntityManager entityManager, LoanViewProjector loanViewProjector,
+                           CategoryRegistry categoryRegistry, PlatformTransactionManager transactionManager,
+                           @Value("${library.patch.max-attempts:3}") int maxPatchAttempts) {
         this.bookDao = bookDao;
+        this.bookTitleIndex = bookTitleIndex;
+        this.titleIndexEnabled = titleIndexEnabled;
+        this.availabilityCounters = availabilityCounters;
+        this.cacheEnabled = cacheEnabled;
+        this.entityManager = entityManager;
+        this.loanViewProjector = loanViewProjector;
+        this.categoryRegistry = categoryRegistry;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxPatchAttempts = maxPatchAttempts;
+    }
+
+    /**
+     * Construit l'index des titres au démarrage de l'application.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildTitleIndex() {
+        if (titleIndexEnabled) {
+            bookTitleIndex.rebuild(bookDao::findAllViews);
+        }
+    }
+
+    /**
+     * Met à jour l'index des titres pour les livres donnés, par paquets : sert après un import en masse,
+     * sans relire tout le catalogue.
+     */
+    public void indexTitles(List<Integer> bookIds) {
+        if (!titleIndexEnabled) {
+            return;
+        }
+        for (int from = 0; from < bookIds.size(); from += TITLE_INDEX_CHUNK_SIZE) {
+            List<Integer> chunk = bookIds.subList(from, Math.min(from + TITLE_INDEX_CHUNK_SIZE, bookIds.size()));
+            bookTitleIndex.refresh(chunk, bookDao::findViewsByIdIn);
+        }
     }
 
     @Override
     public Book saveBook(Book book) {
-        return bookDao.save(book);
+        book.setCategory(resolveCategory(book.getCategory()));
+        Book savedBook = bookDao.save(book);
+        afterCommit(() -> indexTitle(savedBook));
+        return savedBook;
     }
 
+    /**
+     * Le livre envoyé remplace celui en base sans contrôle de version. Ses champs sont recopiés sur le livre chargé
+     * plutôt que fusionnés : pas de merge en cascade dans les prêts, et l'UPDATE ne porte que les colonnes changées.
+     *
+     * @return le livre modifié, ou null s'il n'existe plus
+     */
     @Override
     public Book updateBook(Book book) {
-        return bookDao.save(book);
+        Category category = resolveCategory(book.getCategory());
+        Book updatedBook = bookDao.findById(book.getId()).orElse(null);
+        if (updatedBook == null) {
+            return null;
+        }
+        updatedBook.setTitle(book.getTitle());
+        updatedBook.setIsbn(book.getIsbn());
+        updatedBook.setReleaseDate(book.getReleaseDate());
+        updatedBook.setRegisterDate(book.getRegisterDate());
+        updatedBook.setTotalExamplaries(book.getTotalExamplaries());
+        updatedBook.setAuthor(book.getAuthor());
+        updatedBook.setCategory(category);
+        loanViewProjector.bookUpdated(updatedBook);
+        afterCommit(() -> {
+            indexTitle(updatedBook);
+            // le nombre d'exemplaires a pu changer : le compteur sera recalculé au prochain accès
+            availabilityCounters.evict(updatedBook.getId());
+        });
+        return updatedBook;
+    }
+
+    /**
+     * Modification partielle : le livre est relu (sans requête s'il est dans le cache de second niveau), modifié,
+     * puis Hibernate n'écrit que les colonnes changées dans un UPDATE conditionné par la version (@DynamicUpdate).
+     * Sans version attendue, un conflit avec une écriture concurrente relance lecture et modification, chaque
+     * tentative dans sa propre transaction, au plus maxPatchAttempts fois.
+     *
+     * @param expectedVersion version connue du client, null pour ne pas la contrôler
+     * @return le livre modifié, ou null s'il n'existe pas
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Book patchBook(Integer bookId, Long expectedVersion, Consumer<Book> changes) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> applyPatch(bookId, expectedVersion, changes));
+            } catch (OptimisticLockingFailureException e) {
+                if (expectedVersion != null || attempt >= maxPatchAttempts) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private Book applyPatch(Integer bookId, Long expectedVersion, Consumer<Book> changes) {
+        Book book = bookDao.findById(bookId).orElse(null);
+        if (book == null) {
+            return null;
+        }
+        if (expectedVersion != null && !expectedVersion.equals(book.getVersion())) {
+            throw new ObjectOptimisticLockingFailureException(Book.class, bookId);
+        }
+        String title = book.getTitle();
+        String isbn = book.getIsbn();
+        Integer totalExamplaries = book.getTotalExamplaries();
+        Category category = book.getCategory();
+        changes.accept(book);
+        if (book.getCategory() != category) {
+            book.setCategory(resolveCategory(book.getCategory()));
+        }
+        // l'UPDATE part ici : un conflit de version est levé avant toute autre écriture
+        bookDao.flush();
+        if (!Objects.equals(title, book.getTitle()) || !Objects.equals(isbn, book.getIsbn())) {
+            loanViewProjector.bookUpdated(book);
+        }
+        boolean examplariesChanged = !Objects.equals(totalExamplaries, book.getTotalExamplaries());
+        afterCommit(() -> {
+            indexTitle(book);
+            if (examplariesChanged) {
+                availabilityCounters.evict(bookId);
+            }
+        });
+        return book;
     }
 
     @Override
     public void deleteBook(Integer bookId) {
         bookDao.deleteById(bookId);
+        loanViewProjector.bookDeleted(bookId);
+        afterCommit(() -> {
+            if (titleIndexEnabled) {
+                bookTitleIndex.remove(bookId);
+            }
+            availabilityCounters.evict(bookId);
+        });
     }
 
     @Override
+    @Transactional(readOnly = true)
     public boolean checkIfIdExists(Integer id) {
         return bookDao.existsById(id);
     }
 
     @Override
-    public List<Book> findBooksByTitleOrPartTitle(String title) {
-        return bookDao.findByTitleLikeIgnoreCase((new StringBuilder()).append("%").append(title).append("%").toString());
+    @Transactional(readOnly = true)
+    public List<BookView> findBooksByTitleOrPartTitle(String title) {
+        if (titleIndexEnabled && bookTitleIndex.isReady()) {
+            return bookTitleIndex.search(title);
+        }
+        return bookDao.findViewsByTitleLike((new StringBuilder()).append("%").append(title).append("%").toString());
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Book findBookByIsbn(String isbn) {
+        if (cacheEnabled) {
+            return bookDao.findCachedByIsbnIgnoreCase(isbn);
+        }
         return bookDao.findByIsbnIgnoreCase(isbn);
     }
 
     @Override
-    public List<Book> getBooksByCategory(String codeCategory) {
-        return bookDao.findByCategory(codeCategory);
+    @Transactional(readOnly = true)
+    public List<BookView> getBooksByCategory(String codeCategory) {
+        return bookDao.findViewsByCategory(codeCategory);
     }
 
-}
+    @Override
+    @Transactional(readOnly = true)
+    public long forEachBook(Consumer<Book> action) {
+        return EntityStreams.forEach(entityManager, bookDao.streamAllOrderById(), action);
+    }
+
+    /**
+     * Catégorie du registre pour le code de category, seul significatif. Un code que le registre ne connaît pas
+     * est cherché une fois en base ; s'il n'y est pas non plus, l'écriture est refusée.
+     */
+    private Category resolveCategory(Category category) {
+        String code = category == null ? null : category.getCode();
+        if (code == null) {
+            throw new IllegalArgumentException("missing category code");
+        }
+        Category known = categoryRegistry.find(code);
+        if (known == null) {
+            Category stored = entityManager.find(Category.class, code);
+            if (stored == null) {
+                throw new IllegalArgumentException("unknown category code " + code);
+            }
+            categoryRegistry.put(stored);
+            known = categoryRegistry.find(code);
+        }
+        return known;
+    }
 
+    private void indexTitle(Book book) {
+        if (titleIndexEnabled) {
+            bookTitleIndex.put(BookView.of(book));
+        }
+    }
 
+    /**
+     * Les caches en mémoire ne sont mis à jour qu'une fois la transaction validée, pour ne pas exposer une écriture annulée.
+     */
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+}
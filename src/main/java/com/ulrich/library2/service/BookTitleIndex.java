@@ -0,0 +1,166 @@
+package com.ulrich.library2.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Index inversé en mémoire des titres de livres, découpés en trigrammes.
+ * Permet de répondre aux recherches par partie de titre sans parcourir la table BOOK. Les livres y sont
+ * gardés en projection BookView, plus légère qu'une entité et sans lien avec une session Hibernate.
+ */
+@Component
+public class BookTitleIndex {
+
+    public static final Logger LOGGER = LoggerFactory.getLogger(BookTitleIndex.class);
+
+    private static final int GRAM_SIZE = 3;
+
+    private final Map<String, Set<Integer>> postings = new ConcurrentHashMap<>();
+
+    private final Map<Integer, BookView> books = new ConcurrentHashMap<>();
+
+    private volatile boolean ready;
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int size() {
+        return books.size();
+    }
+
+    /**
+     * Reconstruit entièrement l'index à partir des livres lus par loader. La lecture se fait sous le verrou de
+     * l'index : un put ou un remove validé pendant qu'elle tourne attend la fin de la reconstruction et
+     * s'applique après, au lieu d'être écrasé par une photo plus ancienne.
+     */
+    public synchronized void rebuild(Supplier<? extends Collection<BookView>> loader) {
+        ready = false;
+        Collection<BookView> allBooks = loader.get();
+        postings.clear();
+        books.clear();
+        for (BookView book : allBooks) {
+            add(book);
+        }
+        ready = true;
+        LOGGER.info("Book title index built with {} books and {} trigrams", books.size(), postings.size());
+    }
+
+    /**
+     * Ajoute ou remplace un livre dans l'index.
+     */
+    public synchronized void put(BookView book) {
+        if (book == null || book.id() == null) {
+            return;
+        }
+        remove(book.id());
+        add(book);
+    }
+
+    /**
+     * Relit les livres bookIds par loader, sous le verrou comme rebuild, et les remplace dans l'index ;
+     * ceux que loader ne renvoie plus en sont retirés.
+     */
+    public synchronized void refresh(Collection<Integer> bookIds,
+                                     Function<Collection<Integer>, ? extends Collection<BookView>> loader) {
+        Collection<BookView> views = loader.apply(bookIds);
+        for (Integer bookId : bookIds) {
+            remove(bookId);
+        }
+        for (BookView book : views) {
+            add(book);
+        }
+    }
+
+    public synchronized void remove(Integer bookId) {
+        BookView previous = books.remove(bookId);
+        if (previous == null) {
+            return;
+        }
+        for (String gram : trigrams(normalize(previous.title()))) {
+            Set<Integer> ids = postings.get(gram);
+            if (ids != null) {
+                ids.remove(bookId);
+                if (ids.isEmpty()) {
+                    postings.remove(gram);
+                }
+            }
+        }
+    }
+
+    /**
+     * Retourne les livres dont le titre contient le terme recherché, sans tenir compte de la casse.
+     */
+    public List<BookView> search(String term) {
+        String needle = normalize(term);
+        List<BookView> result = new ArrayList<>();
+        if (needle.length() < GRAM_SIZE) {
+            for (BookView book : books.values()) {
+                if (normalize(book.title()).contains(needle)) {
+                    result.add(book);
+                }
+            }
+        } else {
+            for (Integer id : candidates(needle)) {
+                BookView book = books.get(id);
+                if (book != null && normalize(book.title()).contains(needle)) {
+                    result.add(book);
+                }
+            }
+        }
+        result.sort(Comparator.comparing(BookView::id));
+        return result;
+    }
+
+    private Set<Integer> candidates(String needle) {
+        List<Set<Integer>> lists = new ArrayList<>();
+        for (String gram : trigrams(needle)) {
+            Set<Integer> ids = postings.get(gram);
+            if (ids == null) {
+                return Set.of();
+            }
+            lists.add(ids);
+        }
+        lists.sort(Comparator.comparingInt(Set::size));
+        Set<Integer> result = new HashSet<>(lists.get(0));
+        for (int i = 1; i < lists.size() && !result.isEmpty(); i++) {
+            result.retainAll(lists.get(i));
+        }
+        return result;
+    }
+
+    private void add(BookView book) {
+        if (book == null || book.id() == null) {
+            return;
+        }
+        books.put(book.id(), book);
+        for (String gram : trigrams(normalize(book.title()))) {
+            postings.computeIfAbsent(gram, key -> ConcurrentHashMap.newKeySet()).add(book.id());
+        }
+    }
+
+    static Set<String> trigrams(String text) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM_SIZE <= text.length(); i++) {
+            grams.add(text.substring(i, i + GRAM_SIZE));
+        }
+        return grams;
+    }
+
+    static String normalize(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,19 @@
+package com.ulrich.library2.service;
+
+import com.ulrich.library2.entity.book.Book;
+
+import java.time.LocalDate;
+
+/**
+ * Livre en lecture seule, lu directement en projection avec sa catégorie (sans charger d'entité).
+ */
+public record BookView(Integer id, String title, String isbn, LocalDate releaseDate, LocalDate registerDate,
+                       Integer totalExamplaries, String author, String categoryCode, String categoryLabel) {
+
+    public static BookView of(Book book) {
+        return new BookView(book.getId(), book.getTitle(), book.getIsbn(), book.getReleaseDate(),
+                book.getRegisterDate(), book.getTotalExamplaries(), book.getAuthor(),
+                book.getCategory() == null ? null : book.getCategory().getCode(),
+                book.getCategory() == null ? null : book.getCategory().getLabel());
+    }
+}
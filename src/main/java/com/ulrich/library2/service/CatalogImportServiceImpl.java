@@ -0,0 +1,331 @@
+package com.ulrich.library2.service;
+
+import com.ulrich.library2.config.SecondLevelCacheConfig;
+import com.ulrich.library2.entity.book.Book;
+import com.ulrich.library2.entity.category.Category;
+import com.ulrich.library2.entity.customer.Customer;
+import com.ulrich.library2.repository.ICategoryDao;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Import en masse de livres et de clients. Les lignes sont validées au fil de la lecture et envoyées à
+ * PostgreSQL par le protocole COPY dans une table temporaire, puis fusionnées en une seule requête
+ * INSERT ... ON CONFLICT. La mémoire utilisée ne dépend pas de la taille du fichier.
+ */
+@Service("catalogImportService")
+public class CatalogImportServiceImpl implements ICatalogImportService {
+
+    public static final Logger LOGGER = LoggerFactory.getLogger(CatalogImportServiceImpl.class);
+
+    private static final String BOOK_STAGING_DDL = "CREATE TEMP TABLE book_import ("
+            + "row_no BIGINT, title TEXT, isbn TEXT, release_date DATE, total_examplaries INTEGER, "
+            + "author TEXT, cat_code TEXT) ON COMMIT DROP";
+
+    private static final String BOOK_COPY = "COPY book_import (row_no, title, isbn, release_date, "
+            + "total_examplaries, author, cat_code) FROM STDIN WITH (FORMAT csv)";
+
+    // Un ISBN qui ne diffère d'un autre (du fichier ou de la table) que par la casse est ambigu : la ligne est rejetée
+    private static final String BOOK_CASE_CONFLICTS = "WITH rejected AS ("
+            + " DELETE FROM book_import i WHERE EXISTS (SELECT 1 FROM book_import o"
+            + " WHERE LOWER(o.isbn) = LOWER(i.isbn) AND o.isbn <> i.isbn)"
+            + " OR EXISTS (SELECT 1 FROM book b WHERE LOWER(b.isbn) = LOWER(i.isbn) AND b.isbn <> i.isbn)"
+            + " RETURNING row_no, isbn)"
+            + " SELECT row_no, isbn FROM rejected ORDER BY row_no";
+
+    // En cas de doublon dans le fichier, la dernière ligne l'emporte
+    private static final String BOOK_MERGE = "WITH upserted AS ("
+            + " INSERT INTO book (title, isbn, release_date, register_date, total_examplaries, author, cat_code)"
+            + " SELECT DISTINCT ON (LOWER(isbn)) title, isbn, release_date, CURRENT_DATE, total_examplaries, author, cat_code"
+            + " FROM book_import ORDER BY LOWER(isbn), row_no DESC"
+            + " ON CONFLICT ((LOWER(isbn))) DO UPDATE SET title = EXCLUDED.title, release_date = EXCLUDED.release_date,"
+            + " total_examplaries = EXCLUDED.total_examplaries, author = EXCLUDED.author, cat_code = EXCLUDED.cat_code,"
+            + " version = book.version + 1"
+            + " RETURNING (xmax = 0) AS inserted)"
+            + " SELECT COUNT(*) FILTER (WHERE inserted), COUNT(*) FILTER (WHERE NOT inserted) FROM upserted";
+
+    private static final String MERGED_BOOK_IDS = "SELECT b.book_id FROM book b"
+            + " WHERE LOWER(b.isbn) IN (SELECT LOWER(isbn) FROM book_import)";
+
+    private static final String CUSTOMER_STAGING_DDL = "CREATE TEMP TABLE customer_import ("
+            + "row_no BIGINT, first_name TEXT, last_name TEXT, job TEXT, address TEXT, email TEXT) ON COMMIT DROP";
+
+    private static final String CUSTOMER_COPY = "COPY customer_import (row_no, first_name, last_name, job, "
+            + "address, email) FROM STDIN WITH (FORMAT csv)";
+
+    private static final String CUSTOMER_CASE_CONFLICTS = "WITH rejected AS ("
+            + " DELETE FROM customer_import i WHERE EXISTS (SELECT 1 FROM customer_import o"
+            + " WHERE LOWER(o.email) = LOWER(i.email) AND o.email <> i.email)"
+            + " OR EXISTS (SELECT 1 FROM customer c WHERE LOWER(c.email) = LOWER(i.email) AND c.email <> i.email)"
+            + " RETURNING row_no, email)"
+            + " SELECT row_no, email FROM rejected ORDER BY row_no";
+
+    private static final String CUSTOMER_MERGE = "WITH upserted AS ("
+            + " INSERT INTO customer (first_name, last_name, job, address, email, creation_date)"
+            + " SELECT DISTINCT ON (LOWER(email)) first_name, last_name, job, address, email, LOCALTIMESTAMP"
+            + " FROM customer_import ORDER BY LOWER(email), row_no DESC"
+            + " ON CONFLICT ((LOWER(email))) DO UPDATE SET first_name = EXCLUDED.first_name, last_name = EXCLUDED.last_name,"
+            + " job = EXCLUDED.job, address = EXCLUDED.address,"
+            + " version = customer.version + 1"
+            + " RETURNING (xmax = 0) AS inserted)"
+            + " SELECT COUNT(*) FILTER (WHERE inserted), COUNT(*) FILTER (WHERE NOT inserted) FROM upserted";
+
+    private DataSource dataSource;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private TransactionTemplate transactionTemplate;
+
+    private ICategoryDao categoryDao;
+
+    private BookServiceImpl bookService;
+
+    private BookAvailabilityCounters availabilityCounters;
+
+    private EntityManagerFactory entityManagerFactory;
+
+    private LoanViewProjector loanViewProjector;
+
+    private int maxReportedErrors;
+
+    public CatalogImportServiceImpl(DataSource dataSource, JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                    ICategoryDao categoryDao, BookServiceImpl bookService,
+                                    BookAvailabilityCounters availabilityCounters,
+                                    EntityManagerFactory entityManagerFactory, LoanViewProjector loanViewProjector,
+                                    @Value("${library.import.max-reported-errors:1000}") int maxReportedErrors) {
+        this.dataSource = dataSource;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.categoryDao = categoryDao;
+        this.bookService = bookService;
+        this.availabilityCounters = availabilityCounters;
+        this.entityManagerFactory = entityManagerFactory;
+        this.loanViewProjector = loanViewProjector;
+        this.maxReportedErrors = maxReportedErrors;
+    }
+
+    @Override
+    public ImportReport importBooks(InputStream input, ImportFormat format) throws IOException {
+        // Les codes catégorie sont résolus une seule fois pour tout le fichier
+        Set<String> categoryCodes = categoryDao.findAll().stream().map(Category::getCode).collect(Collectors.toSet());
+        List<Integer> mergedBookIds = new ArrayList<>();
+        ImportReport report = load(input, format, BOOK_STAGING_DDL, BOOK_COPY, BOOK_CASE_CONFLICTS, BOOK_MERGE,
+                row -> toBookRecord(row, categoryCodes), () -> {
+                    loanViewProjector.importedBooksMerged();
+                    mergedBookIds.addAll(jdbcTemplate.queryForList(MERGED_BOOK_IDS, Integer.class));
+                });
+
+        // Les écritures JDBC échappent à Hibernate : on invalide les caches qui portent sur BOOK
+        Cache cache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+        cache.evictEntityData(Book.class);
+        cache.evictQueryRegion(SecondLevelCacheConfig.BOOK_QUERY_REGION);
+        cache.evictDefaultQueryRegion();
+        availabilityCounters.clear();
+        // après le commit : seuls les livres fusionnés sont relus, pas tout le catalogue
+        bookService.indexTitles(mergedBookIds);
+        return report;
+    }
+
+    @Override
+    public ImportReport importCustomers(InputStream input, ImportFormat format) throws IOException {
+        ImportReport report = load(input, format, CUSTOMER_STAGING_DDL, CUSTOMER_COPY, CUSTOMER_CASE_CONFLICTS, CUSTOMER_MERGE,
+                this::toCustomerRecord, loanViewProjector::importedCustomersMerged);
+
+        Cache cache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+        cache.evictEntityData(Customer.class);
+        cache.evictQueryRegion(SecondLevelCacheConfig.CUSTOMER_QUERY_REGION);
+        cache.evictDefaultQueryRegion();
+        return report;
+    }
+
+    /**
+     * Convertit une ligne lue en enregistrement COPY, ou lève IllegalArgumentException si elle est invalide.
+     */
+    private interface RecordMapper {
+        String[] toRecord(Map<String, String> row);
+    }
+
+    private ImportReport load(InputStream input, ImportFormat format, String stagingDdl, String copySql,
+                              String caseConflictsSql, String mergeSql, RecordMapper mapper,
+                              Runnable afterMerge) throws IOException {
+        try {
+            return transactionTemplate.execute(status -> {
+                Connection connection = DataSourceUtils.getConnection(dataSource);
+                try (ImportRowReader reader = new ImportRowReader(input, format)) {
+                    try (Statement statement = connection.createStatement()) {
+                        statement.execute(stagingDdl);
+                    }
+                    List<ImportReport.ImportRowError> errors = new ArrayList<>();
+                    long rejected = 0;
+                    PGCopyOutputStream copyStream = new PGCopyOutputStream(connection.unwrap(PGConnection.class), copySql);
+                    try (Writer writer = new OutputStreamWriter(copyStream, StandardCharsets.UTF_8)) {
+                        while (true) {
+                            String error = null;
+                            String[] record = null;
+                            try {
+                                Map<String, String> row = reader.next();
+                                if (row == null) {
+                                    break;
+                                }
+                                record = mapper.toRecord(row);
+                            } catch (IllegalArgumentException e) {
+                                error = e.getMessage();
+                            } catch (IOException | RuntimeException e) {
+                                // flux illisible (CSV mal formé) : on garde les lignes déjà chargées
+                                rejected++;
+                                addError(errors, reader.getRowNumber(), "unreadable input, import stopped: " + e.getMessage());
+                                break;
+                            }
+                            if (error != null) {
+                                rejected++;
+                                addError(errors, reader.getRowNumber(), error);
+                            } else {
+                                writeCsvRecord(writer, reader.getRowNumber(), record);
+                            }
+                        }
+                    }
+                    try (Statement statement = connection.createStatement();
+                         ResultSet result = statement.executeQuery(caseConflictsSql)) {
+                        while (result.next()) {
+                            rejected++;
+                            addError(errors, result.getLong(1), result.getString(2)
+                                    + " differs only by case from another key in the file or the database");
+                        }
+                    }
+                    long inserted;
+                    long updated;
+                    try (Statement statement = connection.createStatement();
+                         ResultSet result = statement.executeQuery(mergeSql)) {
+                        result.next();
+                        inserted = result.getLong(1);
+                        updated = result.getLong(2);
+                    }
+                    // même transaction et même connexion : la table temporaire est encore visible
+                    afterMerge.run();
+                    LOGGER.info("Bulk import: {} rows read, {} inserted, {} updated, {} rejected",
+                            reader.getRowNumber(), inserted, updated, rejected);
+                    return new ImportReport(reader.getRowNumber(), inserted, updated, rejected, errors);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } catch (SQLException e) {
+                    throw new IllegalStateException("Bulk import failed", e);
+                } finally {
+                    DataSourceUtils.releaseConnection(connection, dataSource);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void addError(List<ImportReport.ImportRowError> errors, long row, String message) {
+        if (errors.size() < maxReportedErrors) {
+            errors.add(new ImportReport.ImportRowError(row, message));
+        }
+    }
+
+    private static String[] toBookRecord(Map<String, String> row, Set<String> categoryCodes) {
+        String title = required(row, "title");
+        String isbn = required(row, "isbn");
+        // seule limite : la largeur de BOOK.ISBN, sans quoi la ligne ferait échouer la fusion de tout le fichier
+        if (isbn.length() > 255) {
+            throw new IllegalArgumentException("isbn is longer than 255 characters");
+        }
+        String author = required(row, "author");
+        String categoryCode = required(row, "categoryCode");
+        if (!categoryCodes.contains(categoryCode)) {
+            throw new IllegalArgumentException("unknown category code " + categoryCode);
+        }
+        LocalDate releaseDate;
+        try {
+            releaseDate = LocalDate.parse(required(row, "releaseDate"));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("releaseDate is not an ISO date (yyyy-MM-dd)");
+        }
+        int totalExamplaries = 1;
+        String total = optional(row, "totalExamplaries");
+        if (total != null) {
+            try {
+                totalExamplaries = Integer.parseInt(total);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("totalExamplaries is not a number");
+            }
+            if (totalExamplaries < 1) {
+                throw new IllegalArgumentException("totalExamplaries must be at least 1");
+            }
+        }
+        return new String[] {title, isbn, releaseDate.toString(), Integer.toString(totalExamplaries), author, categoryCode};
+    }
+
+    private String[] toCustomerRecord(Map<String, String> row) {
+        String firstName = required(row, "firstName");
+        String lastName = required(row, "lastName");
+        String email = required(row, "email");
+        if (email.indexOf('@') < 1) {
+            throw new IllegalArgumentException("email is not valid");
+        }
+        return new String[] {firstName, lastName, optional(row, "job"), optional(row, "address"), email};
+    }
+
+    private static String required(Map<String, String> row, String field) {
+        String value = optional(row, field);
+        if (value == null) {
+            throw new IllegalArgumentException(field + " is required");
+        }
+        return value;
+    }
+
+    private static String optional(Map<String, String> row, String field) {
+        String value = row.get(field);
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        return value.trim();
+    }
+
+    /**
+     * Écrit un enregistrement au format CSV de COPY : valeur absente = NULL, toute autre valeur est quotée.
+     */
+    private static void writeCsvRecord(Writer writer, long rowNumber, String[] values) throws IOException {
+        writer.write(Long.toString(rowNumber));
+        for (String value : values) {
+            writer.write(',');
+            if (value != null) {
+                writer.write('"');
+                writer.write(value.replace("\"", "\"\""));
+                writer.write('"');
+            }
+        }
+        writer.write('\n');
+    }
+}
@@ -0,0 +1,55 @@
+package com.ulrich.library2.service;
+
+import com.ulrich.library2.entity.category.Category;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Catégories connues, chargées au démarrage : les écritures de livres y prennent leur catégorie par code, sans
+ * requête sur CATEGORY. L'application ne modifie pas les catégories ; une catégorie ajoutée en base après le
+ * chargement est enregistrée ici par le premier livre qui la référence.
+ */
+@Component
+public class CategoryRegistry {
+
+    public static final Logger LOGGER = LoggerFactory.getLogger(CategoryRegistry.class);
+
+    private final Map<String, Category> categories = new ConcurrentHashMap<>();
+
+    public int size() {
+        return categories.size();
+    }
+
+    /**
+     * Remplace entièrement le contenu du registre.
+     */
+    public synchronized void reload(Collection<Category> allCategories) {
+        categories.clear();
+        allCategories.forEach(this::put);
+        LOGGER.info("Category registry loaded with {} categories", categories.size());
+    }
+
+    public void put(Category category) {
+        categories.put(category.getCode(), copy(category));
+    }
+
+    /**
+     * Retourne une copie détachée, propre à l'appelant, ou null si le code est inconnu du registre. Sa version
+     * est renseignée : Hibernate la tient pour une ligne existante et n'en écrit que la clé dans BOOK.CAT_CODE.
+     */
+    public Category find(String code) {
+        Category category = categories.get(code);
+        return category == null ? null : copy(category);
+    }
+
+    private static Category copy(Category category) {
+        Category copy = new Category(category.getCode(), category.getLabel());
+        copy.setVersion(category.getVersion());
+        return copy;
+    }
+}
@@ -3,7 +3,11 @@ package com.ulrich.library2.service;
 
 import com.ulrich.library2.entity.category.Category;
 import com.ulrich.library2.repository.ICategoryDao;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
@@ -12,12 +16,33 @@ public class CategoryServiceImpl implements ICategoryService {
 
     private ICategoryDao categoryDao;
 
-    public CategoryServiceImpl(ICategoryDao categoryDao) {
+    private boolean cacheEnabled;
+
+    private CategoryRegistry categoryRegistry;
+
+    public CategoryServiceImpl(ICategoryDao categoryDao,
+                               @Value("${library.cache.region.category.enabled:true}") boolean cacheEnabled,
+                               CategoryRegistry categoryRegistry) {
         this.categoryDao = categoryDao;
+        this.cacheEnabled = cacheEnabled;
+        this.categoryRegistry = categoryRegistry;
+    }
+
+    /**
+     * Charge le registre des catégories au démarrage de l'application.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void loadCategoryRegistry() {
+        categoryRegistry.reload(categoryDao.findAll());
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<Category> getAllCategories(){
+        if (cacheEnabled) {
+            return categoryDao.findAllCached();
+        }
         return categoryDao.findAll();
     }
 
@@ -0,0 +1,8 @@
+package com.ulrich.library2.service;
+
+
+
+public enum CheckoutResult {
+
+    CREATED, ALREADY_LOANED, NO_COPY_AVAILABLE, UNKNOWN_BOOK, UNKNOWN_CUSTOMER
+}
@@ -0,0 +1,10 @@
+package com.ulrich.library2.service;
+
+import java.time.LocalDate;
+
+/**
+ * Une opération de prêt au guichet : emprunt (dates de début et de fin), retour, ou prolongation (nouvelle date de fin).
+ */
+public record CirculationOperation(CirculationType type, Integer bookId, Integer customerId,
+                                   LocalDate beginDate, LocalDate endDate) {
+}
@@ -0,0 +1,6 @@
+package com.ulrich.library2.service;
+
+public enum CirculationResult {
+
+    CREATED, CLOSED, RENEWED, ALREADY_LOANED, NO_COPY_AVAILABLE, NO_OPEN_LOAN, UNKNOWN_BOOK, UNKNOWN_CUSTOMER, INVALID
+}
@@ -0,0 +1,6 @@
+package com.ulrich.library2.service;
+
+public enum CirculationType {
+
+    CHECKOUT, RETURN, RENEW
+}
@@ -3,13 +3,23 @@ package com.ulrich.library2.service;
 
 import com.ulrich.library2.entity.customer.Customer;
 import com.ulrich.library2.repository.ICustomerDao;
-import jakarta.transaction.Transactional;
+import jakarta.persistence.EntityManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
 
 @Service("customerService")
 @Transactional
@@ -17,8 +27,27 @@ public class CustomerServiceImpl implements ICustomerService {
 
     private ICustomerDao customerDao;
 
-    public CustomerServiceImpl(ICustomerDao customerDao) {
+    private boolean cacheEnabled;
+
+    private EntityManager entityManager;
+
+    private LoanViewProjector loanViewProjector;
+
+    private TransactionTemplate transactionTemplate;
+
+    private int maxPatchAttempts;
+
+    public CustomerServiceImpl(ICustomerDao customerDao,
+                               @Value("${library.cache.region.customer.enabled:true}") boolean cacheEnabled,
+                               EntityManager entityManager, LoanViewProjector loanViewProjector,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${library.patch.max-attempts:3}") int maxPatchAttempts) {
         this.customerDao = customerDao;
+        this.cacheEnabled = cacheEnabled;
+        this.entityManager = entityManager;
+        this.loanViewProjector = loanViewProjector;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxPatchAttempts = maxPatchAttempts;
     }
 
     @Override
@@ -26,39 +55,126 @@ public class CustomerServiceImpl implements ICustomerService {
         return customerDao.save(customer);
     }
 
+    /**
+     * Le client envoyé remplace celui en base sans contrôle de version : il en reprend la version.
+     */
     @Override
     public Customer updateCustomer(Customer customer) {
-        return customerDao.save(customer);
+        customerDao.findById(customer.getId()).ifPresent(current -> customer.setVersion(current.getVersion()));
+        Customer updatedCustomer = customerDao.save(customer);
+        loanViewProjector.customerUpdated(updatedCustomer);
+        return updatedCustomer;
+    }
+
+    /**
+     * Modification partielle, sur le modèle de BookServiceImpl.patchBook : un seul UPDATE des colonnes changées,
+     * conditionné par la version, relancé en cas de conflit si le client n'a pas fourni de version.
+     *
+     * @param expectedVersion version connue du client, null pour ne pas la contrôler
+     * @return le client modifié, ou null s'il n'existe pas
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Customer patchCustomer(Integer customerId, Long expectedVersion, Consumer<Customer> changes) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> applyPatch(customerId, expectedVersion, changes));
+            } catch (OptimisticLockingFailureException e) {
+                if (expectedVersion != null || attempt >= maxPatchAttempts) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private Customer applyPatch(Integer customerId, Long expectedVersion, Consumer<Customer> changes) {
+        Customer customer = customerDao.findById(customerId).orElse(null);
+        if (customer == null) {
+            return null;
+        }
+        if (expectedVersion != null && !expectedVersion.equals(customer.getVersion())) {
+            throw new ObjectOptimisticLockingFailureException(Customer.class, customerId);
+        }
+        String firstName = customer.getFirstName();
+        String lastName = customer.getLastName();
+        String email = customer.getEmail();
+        changes.accept(customer);
+        customerDao.flush();
+        if (!Objects.equals(firstName, customer.getFirstName()) || !Objects.equals(lastName, customer.getLastName())
+                || !Objects.equals(email, customer.getEmail())) {
+            loanViewProjector.customerUpdated(customer);
+        }
+        return customer;
     }
 
     @Override
     public void deleteCustomer(Integer customerId) {
         customerDao.deleteById(customerId);
+        loanViewProjector.customerDeleted(customerId);
     }
 
     @Override
+    @Transactional(readOnly = true)
     public boolean checkIfIdexists(Integer id) {
         return customerDao.existsById(id);
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Customer findCustomerByEmail(String email) {
+        if (cacheEnabled) {
+            return customerDao.findCachedCustomerByEmailIgnoreCase(email);
+        }
         return customerDao.findCustomerByEmailIgnoreCase(email);
     }
 
+    @Override
+    @Transactional(readOnly = true)
     public Customer findCustomerById(Integer customerId) {
-        return customerDao.getOne(customerId);
+        return customerDao.findById(customerId).orElse(null);
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Page<Customer> getPaginatedCustomersList(int begin, int end){
         Pageable page = PageRequest.of(begin, end);
         return customerDao.findAll(page);
     }
 
+    /**
+     * Pagination par curseur : recherche sur CUSTOMER_ID, sans OFFSET ni count(*).
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<Customer> getCustomersAfter(Integer lastCustomerId, int size) {
+        return customerDao.findByIdGreaterThanOrderByIdAsc(lastCustomerId == null ? 0 : lastCustomerId, Limit.of(size));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long countCustomers() {
+        return customerDao.count();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long forEachCustomer(Consumer<Customer> action) {
+        return EntityStreams.forEach(entityManager, customerDao.streamAllOrderById(), action);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public CustomerView findCustomerViewByEmail(String email) {
+        if (cacheEnabled) {
+            return customerDao.findCachedViewByEmail(email);
+        }
+        return customerDao.findViewByEmail(email);
+    }
+
     @Override
-    public List<Customer> findCustomerByLastName(String lastName){
-        return customerDao.findCustomerByLastNameIgnoreCase(lastName);
+    @Transactional(readOnly = true)
+    public List<CustomerView> findCustomerByLastName(String lastName){
+        return customerDao.findViewsByLastName(lastName);
     }
 
 }
@@ -0,0 +1,10 @@
+package com.ulrich.library2.service;
+
+import java.time.LocalDateTime;
+
+/**
+ * Client en lecture seule, lu directement en projection (sans charger l'entité Customer).
+ */
+public record CustomerView(Integer id, String firstName, String lastName, String job, String address,
+                           String email, LocalDateTime creationDate, Long version) {
+}
@@ -0,0 +1,33 @@
+package com.ulrich.library2.service;
+
+import jakarta.persistence.EntityManager;
+
+import java.util.Iterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Parcours d'un Stream d'entités issu d'un curseur serveur. Le contexte de persistance est vidé
+ * régulièrement : la mémoire utilisée reste celle d'un lot, quel que soit le nombre de lignes.
+ */
+final class EntityStreams {
+
+    static final int CLEAR_EVERY_ROWS = 500;
+
+    private EntityStreams() {
+    }
+
+    static <T> long forEach(EntityManager entityManager, Stream<T> entities, Consumer<? super T> action) {
+        long count = 0;
+        try (entities) {
+            Iterator<T> iterator = entities.iterator();
+            while (iterator.hasNext()) {
+                action.accept(iterator.next());
+                if (++count % CLEAR_EVERY_ROWS == 0) {
+                    entityManager.clear();
+                }
+            }
+        }
+        return count;
+    }
+}
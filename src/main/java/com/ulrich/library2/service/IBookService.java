@@ -3,6 +3,7 @@ package com.ulrich.library2.service;
 import com.ulrich.library2.entity.book.Book;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface IBookService {
 
@@ -10,15 +11,33 @@ public interface IBookService {
 
     public Book updateBook(Book book);
 
+    /**
+     * Applique changes au livre bookId, dont la version doit valoir expectedVersion si elle est fournie.
+     *
+     * @return le livre modifié, ou null s'il n'existe pas
+     * @throws org.springframework.dao.OptimisticLockingFailureException si la version a changé
+     */
+    public Book patchBook(Integer bookId, Long expectedVersion, Consumer<Book> changes);
+
     public void deleteBook(Integer bookId);
 
-    public List<Book> findBooksByTitleOrPartTitle(String title);
+    /**
+     * Recherche en lecture seule : les livres sont retournés en projection, sans entité managée.
+     */
+    public List<BookView> findBooksByTitleOrPartTitle(String title);
 
     public Book findBookByIsbn(String isbn);
 
     public boolean checkIfIdExists(Integer id);
 
-    public List<Book> getBooksByCategory(String codeCategory);
+    public List<BookView> getBooksByCategory(String codeCategory);
+
+    /**
+     * Applique action à chaque livre du catalogue, lu par curseur dans l'ordre des identifiants.
+     *
+     * @return le nombre de livres parcourus
+     */
+    public long forEachBook(Consumer<Book> action);
 
 }
 
@@ -0,0 +1,12 @@
+package com.ulrich.library2.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+public interface ICatalogImportService {
+
+    public ImportReport importBooks(InputStream input, ImportFormat format) throws IOException;
+
+    public ImportReport importCustomers(InputStream input, ImportFormat format) throws IOException;
+
+}
@@ -1,6 +1,7 @@
 package com.ulrich.library2.service;
 import com.ulrich.library2.entity.customer.*;
 import java.util.List;
+import java.util.function.Consumer;
 
 import org.springframework.data.domain.Page;
 
@@ -10,17 +11,41 @@ public interface ICustomerService {
 
     public Customer updateCustomer(Customer customer);
 
+    /**
+     * Applique changes au client customerId, dont la version doit valoir expectedVersion si elle est fournie.
+     *
+     * @return le client modifié, ou null s'il n'existe pas
+     * @throws org.springframework.dao.OptimisticLockingFailureException si la version a changé
+     */
+    public Customer patchCustomer(Integer customerId, Long expectedVersion, Consumer<Customer> changes);
+
     public void deleteCustomer(Integer customerId);
 
     public boolean checkIfIdexists(Integer id);
 
     public Customer findCustomerByEmail(String email);
 
-    public List<Customer> findCustomerByLastName(String lastName);
+    /**
+     * Variante en lecture seule de findCustomerByEmail, pour les recherches : projection sans entité managée.
+     */
+    public CustomerView findCustomerViewByEmail(String email);
+
+    public List<CustomerView> findCustomerByLastName(String lastName);
 
     public Customer findCustomerById(Integer customerId);
 
     public Page<Customer> getPaginatedCustomersList(int begin, int end);
 
+    public List<Customer> getCustomersAfter(Integer lastCustomerId, int size);
+
+    public long countCustomers();
+
+    /**
+     * Applique action à chaque client, lu par curseur dans l'ordre des identifiants.
+     *
+     * @return le nombre de clients parcourus
+     */
+    public long forEachCustomer(Consumer<Customer> action);
+
 }
 
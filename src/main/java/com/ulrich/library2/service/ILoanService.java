@@ -3,15 +3,29 @@ package com.ulrich.library2.service;
 
 import com.ulrich.library2.controller.SimpleLoanDTO;
 import com.ulrich.library2.entity.loan.Loan;
+import com.ulrich.library2.entity.loan.LoanView;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface ILoanService {
 
-    public List<Loan> findAllLoansByEndDateBefore(LocalDate maxEndDate);
+    /**
+     * Lu dans le modèle de lecture LOAN_VIEW, sans jointure.
+     */
+    public List<LoanView> findAllLoansByEndDateBefore(LocalDate maxEndDate);
 
-    public List<Loan> getAllOpenLoansOfThisCustomer(String email, LoanStatus status);
+    /**
+     * Lu dans le modèle de lecture LOAN_VIEW, sans jointure.
+     */
+    public List<LoanView> getAllOpenLoansOfThisCustomer(String email, LoanStatus status);
+
+    /**
+     * Page de prêts filtrés, triés en base du plus récent au plus ancien, lus après le curseur after
+     * (null pour la première page).
+     */
+    public List<LoanView> searchLoans(LoanSearchCriteria criteria, LoanSearchCursor after, int limit);
 
     public Loan getOpenedLoan(SimpleLoanDTO simpleLoanDTO);
 
@@ -21,6 +35,28 @@ public interface ILoanService {
 
     public void closeLoan(Loan loan);
 
+    public CheckoutResult checkoutBook(SimpleLoanDTO simpleLoanDTO);
+
+    /**
+     * Applique un lot d'emprunts, de retours et de prolongations dans une seule transaction, dans l'ordre du lot.
+     *
+     * @return le résultat de chaque opération, dans le même ordre
+     */
+    public List<CirculationResult> applyCirculation(List<CirculationOperation> operations);
+
+    public Integer getAvailableCopies(Integer bookId);
+
+    public void reconcileAvailableCopies();
+
+    public List<OverdueLoan> findOverdueLoansChunk(LocalDate from, LocalDate to, OverdueLoan after, int chunkSize);
+
+    /**
+     * Applique action à chaque prêt de l'historique (tous statuts), lu par curseur.
+     *
+     * @return le nombre de prêts parcourus
+     */
+    public long forEachLoan(Consumer<Loan> action);
+
 
 }
 
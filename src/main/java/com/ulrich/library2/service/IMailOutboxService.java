@@ -0,0 +1,20 @@
+package com.ulrich.library2.service;
+
+import com.ulrich.library2.entity.mail.MailOutbox;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface IMailOutboxService {
+
+    public MailOutbox queueMail(String sender, String recipient, String subject, String content);
+
+    public List<MailOutbox> claimDueMails(int batchSize);
+
+    public void markSent(Collection<Long> mailIds);
+
+    public void markFailed(MailOutbox mail, String error);
+
+    public long countPendingMails();
+
+}
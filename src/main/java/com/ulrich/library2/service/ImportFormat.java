@@ -0,0 +1,28 @@
+package com.ulrich.library2.service;
+
+/**
+ * Formats acceptés par l'import en masse.
+ */
+public enum ImportFormat {
+
+    CSV, NDJSON;
+
+    /**
+     * Déduit le format du Content-Type de la requête, ou null s'il n'est pas supporté.
+     */
+    public static ImportFormat fromContentType(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        String mediaType = contentType.toLowerCase().split(";")[0].trim();
+        switch (mediaType) {
+            case "text/csv":
+                return CSV;
+            case "application/x-ndjson":
+            case "application/jsonl":
+                return NDJSON;
+            default:
+                return null;
+        }
+    }
+}
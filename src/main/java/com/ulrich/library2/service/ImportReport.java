@@ -0,0 +1,13 @@
+package com.ulrich.library2.service;
+
+import java.util.List;
+
+/**
+ * Compte rendu d'un import en masse. Seules les premières erreurs sont détaillées, rowsRejected donne le total.
+ */
+public record ImportReport(long rowsRead, long rowsInserted, long rowsUpdated, long rowsRejected,
+                           List<ImportRowError> errors) {
+
+    public record ImportRowError(long row, String message) {
+    }
+}
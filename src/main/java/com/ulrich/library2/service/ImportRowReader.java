@@ -0,0 +1,98 @@
+package com.ulrich.library2.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Lit un flux CSV (avec ligne d'en-tête) ou NDJSON ligne par ligne, sans jamais le charger en entier.
+ * Une ligne NDJSON invalide est signalée sans interrompre la lecture.
+ */
+class ImportRowReader implements AutoCloseable {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private static final CsvMapper CSV = new CsvMapper();
+
+    private final ImportFormat format;
+
+    private BufferedReader lines;
+
+    private MappingIterator<Map<String, String>> csvRows;
+
+    private long rowNumber;
+
+    ImportRowReader(InputStream input, ImportFormat format) throws IOException {
+        this.format = format;
+        if (format == ImportFormat.CSV) {
+            CsvSchema schema = CsvSchema.emptySchema().withHeader().withNullValue("");
+            this.csvRows = CSV.readerFor(Map.class).with(schema).readValues(input);
+        } else {
+            this.lines = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        }
+    }
+
+    long getRowNumber() {
+        return rowNumber;
+    }
+
+    /**
+     * Retourne la ligne suivante, ou null en fin de flux.
+     *
+     * @throws IllegalArgumentException si la ligne courante ne peut pas être lue
+     */
+    Map<String, String> next() throws IOException {
+        if (format == ImportFormat.CSV) {
+            if (!csvRows.hasNextValue()) {
+                return null;
+            }
+            rowNumber++;
+            return csvRows.nextValue();
+        }
+        String line;
+        do {
+            line = lines.readLine();
+            if (line == null) {
+                return null;
+            }
+        } while (line.isBlank());
+        rowNumber++;
+        JsonNode node;
+        try {
+            node = JSON.readTree(line);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("invalid JSON: " + e.getOriginalMessage());
+        }
+        if (!node.isObject()) {
+            throw new IllegalArgumentException("a JSON object is expected");
+        }
+        Map<String, String> row = new HashMap<>();
+        for (Iterator<Map.Entry<String, JsonNode>> fields = node.fields(); fields.hasNext(); ) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            row.put(field.getKey(), field.getValue().isNull() ? null : field.getValue().asText());
+        }
+        return row;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (csvRows != null) {
+            csvRows.close();
+        }
+        if (lines != null) {
+            lines.close();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.ulrich.library2.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Archivage planifié des prêts. LOAN est partitionnée par liste sur ARCHIVED : la partition active (loan_active)
+ * ne garde que les prêts OPEN et les prêts CLOSE récents, la partition d'archive (loan_archive) est elle-même
+ * partitionnée par année de BEGIN_DATE. Les prêts CLOSE rendus depuis plus de retention-days jours passent à
+ * ARCHIVED = true, et PostgreSQL déplace la ligne dans l'archive. Les requêtes d'historique sur LOAN lisent
+ * toujours toutes les partitions.
+ */
+@Component
+public class LoanArchiver {
+
+    public static final Logger LOGGER = LoggerFactory.getLogger(LoanArchiver.class);
+
+    private static final String ARCHIVE_IS_PARTITIONED = "SELECT EXISTS (SELECT 1 FROM pg_partitioned_table p "
+            + "JOIN pg_class c ON c.oid = p.partrelid WHERE c.relname = 'loan_archive')";
+
+    private static final String YEARS_TO_ARCHIVE = "SELECT DISTINCT CAST(EXTRACT(YEAR FROM begin_date) AS INTEGER) "
+            + "FROM loan WHERE archived = FALSE AND status = 'CLOSE' AND end_date < ?";
+
+    // la condition archived = FALSE limite la lecture à la partition active
+    private static final String ARCHIVE_BATCH = "UPDATE loan SET archived = TRUE "
+            + "WHERE archived = FALSE AND (book_id, customer_id, creation_date_time) IN ("
+            + "SELECT book_id, customer_id, creation_date_time FROM loan "
+            + "WHERE archived = FALSE AND status = 'CLOSE' AND end_date < ? LIMIT ?)";
+
+    private JdbcTemplate jdbcTemplate;
+
+    private TransactionTemplate transactionTemplate;
+
+    private int retentionDays;
+
+    private int batchSize;
+
+    private Timer archiveDuration;
+
+    private Counter loansArchived;
+
+    public LoanArchiver(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                        @Value("${library.loan.archive.retention-days:365}") int retentionDays,
+                        @Value("${library.loan.archive.batch-size:5000}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.retentionDays = retentionDays;
+        this.batchSize = batchSize;
+        this.archiveDuration = Timer.builder("library.loan.archive.duration")
+                .description("Duration of a closed loan archival run")
+                .register(meterRegistry);
+        this.loansArchived = Counter.builder("library.loan.archive.rows")
+                .description("Closed loans moved to the archive partition")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${library.loan.archive.cron:0 30 3 * * *}")
+    public void scheduledArchive() {
+        try {
+            archive(LocalDate.now());
+        } catch (RuntimeException e) {
+            LOGGER.error("Loan archival failed, the remaining loans will be archived by the next run", e);
+        }
+    }
+
+    /**
+     * Archive les prêts CLOSE dont la date de fin précède today - retentionDays, par lots validés un à un :
+     * une interruption ne perd rien, le lot suivant repart des prêts restants.
+     *
+     * @return le nombre de prêts archivés
+     */
+    public long archive(LocalDate today) {
+        return archiveDuration.record(() -> {
+            Date cutoff = Date.valueOf(today.minusDays(retentionDays));
+            createArchivePartitions(cutoff);
+            long total = 0;
+            int archived;
+            do {
+                archived = transactionTemplate.execute(status -> jdbcTemplate.update(ARCHIVE_BATCH, cutoff, batchSize));
+                loansArchived.increment(archived);
+                total += archived;
+            } while (archived == batchSize);
+            LOGGER.info("Loan archival before {}: {} loans archived", cutoff, total);
+            return total;
+        });
+    }
+
+    /**
+     * Crée à la demande les partitions annuelles de l'archive qui vont recevoir des prêts. Rien à faire quand
+     * le schéma n'est pas partitionné (créé par Hibernate hors des migrations Flyway) : ARCHIVED n'y est
+     * qu'un indicateur.
+     */
+    private void createArchivePartitions(Date cutoff) {
+        if (!Boolean.TRUE.equals(jdbcTemplate.queryForObject(ARCHIVE_IS_PARTITIONED, Boolean.class))) {
+            return;
+        }
+        List<Integer> years = jdbcTemplate.queryForList(YEARS_TO_ARCHIVE, Integer.class, cutoff);
+        for (Integer year : years) {
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS loan_archive_" + year + " PARTITION OF loan_archive "
+                    + "FOR VALUES FROM ('" + year + "-01-01') TO ('" + (year + 1) + "-01-01')");
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.ulrich.library2.service;
+
+import java.time.LocalDate;
+
+/**
+ * Filtres de la recherche de prêts ; un filtre null n'est pas appliqué.
+ * beginFrom est inclus, beginTo et endBefore sont exclus.
+ */
+public record LoanSearchCriteria(LoanStatus status, Integer customerId, String email, Integer bookId,
+                                 LocalDate beginFrom, LocalDate beginTo, LocalDate endBefore) {
+}
@@ -0,0 +1,16 @@
+package com.ulrich.library2.service;
+
+import com.ulrich.library2.entity.loan.LoanView;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Position du dernier prêt lu dans l'ordre de la recherche (BEGIN_DATE puis clé primaire, décroissants).
+ */
+public record LoanSearchCursor(LocalDate beginDate, Integer bookId, Integer customerId, LocalDateTime creationDateTime) {
+
+    public static LoanSearchCursor of(LoanView loan) {
+        return new LoanSearchCursor(loan.getBeginDate(), loan.getBookId(), loan.getCustomerId(), loan.getCreationDateTime());
+    }
+}
@@ -1,42 +1,166 @@
 package com.ulrich.library2.service;
 
+import java.sql.Date;
+import java.sql.Timestamp;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
 
 import com.ulrich.library2.controller.SimpleLoanDTO;
+import com.ulrich.library2.entity.book.Book;
+import com.ulrich.library2.entity.customer.Customer;
 import com.ulrich.library2.entity.loan.Loan;
+import com.ulrich.library2.entity.loan.LoanView;
+import com.ulrich.library2.repository.IBookDao;
 import com.ulrich.library2.repository.ILoanDao;
+import com.ulrich.library2.repository.ILoanViewDao;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.StringUtils;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 @Service("loanService")
 @Transactional
 public class LoanServiceImpl implements ILoanService {
 
+    public static final Logger LOGGER = LoggerFactory.getLogger(LoanServiceImpl.class);
+
+    // livres verrouillés dans l'ordre des identifiants : deux lots concurrents ne peuvent pas s'interbloquer
+    private static final String LOCK_BOOKS = "SELECT book_id, total_examplaries FROM book WHERE book_id = ANY (?) "
+            + "ORDER BY book_id FOR UPDATE";
+
+    private static final String EXISTING_CUSTOMERS = "SELECT customer_id FROM customer WHERE customer_id = ANY (?)";
+
+    private static final String OPEN_LOANS_BY_BOOK = "SELECT book_id, COUNT(*) FROM loan "
+            + "WHERE archived = FALSE AND status = 'OPEN' AND book_id = ANY (?) GROUP BY book_id";
+
+    private static final String OPEN_LOANS_OF_PAIRS = "SELECT book_id, customer_id, creation_date_time, begin_date, end_date "
+            + "FROM loan WHERE archived = FALSE AND status = 'OPEN' AND book_id = ANY (?) AND customer_id = ANY (?)";
+
+    private static final String INSERT_LOAN = "INSERT INTO loan (book_id, customer_id, creation_date_time, begin_date, "
+            + "end_date, status, archived) VALUES (?, ?, ?, ?, ?, ?, FALSE)";
+
+    private static final String UPDATE_LOAN = "UPDATE loan SET end_date = ?, status = ? "
+            + "WHERE archived = FALSE AND book_id = ? AND customer_id = ? AND creation_date_time = ?";
+
     private ILoanDao loanDao;
 
-    public LoanServiceImpl(ILoanDao loanDao) {
+    private IBookDao bookDao;
+
+    private BookAvailabilityCounters availabilityCounters;
+
+    private EntityManager entityManager;
+
+    private ILoanViewDao loanViewDao;
+
+    private LoanViewProjector loanViewProjector;
+
+    private JdbcTemplate jdbcTemplate;
+
+    public LoanServiceImpl(ILoanDao loanDao, IBookDao bookDao, BookAvailabilityCounters availabilityCounters,
+                           EntityManager entityManager, ILoanViewDao loanViewDao, LoanViewProjector loanViewProjector,
+                           JdbcTemplate jdbcTemplate) {
         this.loanDao = loanDao;
+        this.bookDao = bookDao;
+        this.availabilityCounters = availabilityCounters;
+        this.entityManager = entityManager;
+        this.loanViewDao = loanViewDao;
+        this.loanViewProjector = loanViewProjector;
+        this.jdbcTemplate = jdbcTemplate;
     }
 
     @Override
-    public List<Loan> findAllLoansByEndDateBefore(LocalDate maxEndDate) {
-        return loanDao.findByEndDateBefore(maxEndDate);
+    @Transactional(readOnly = true)
+    public List<LoanView> findAllLoansByEndDateBefore(LocalDate maxEndDate) {
+        return loanViewDao.findByEndDateBeforeOrderByBeginDateDesc(maxEndDate);
     }
 
     @Override
-    public List<Loan> getAllOpenLoansOfThisCustomer(String email, LoanStatus status) {
-        return loanDao.getAllOpenLoansOfThisCustomer(email, status);
+    @Transactional(readOnly = true)
+    public List<LoanView> getAllOpenLoansOfThisCustomer(String email, LoanStatus status) {
+        return loanViewDao.findByEmailAndStatus(email, status);
     }
 
+    /**
+     * Seuls les filtres renseignés sont ajoutés à la requête, pour que le plan reste adapté à chaque combinaison.
+     * La page suivante reprend après le dernier prêt lu (comparaison de tuple sur l'ordre de tri), sans OFFSET.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<LoanView> searchLoans(LoanSearchCriteria criteria, LoanSearchCursor after, int limit) {
+        StringBuilder jpql = new StringBuilder("SELECT lv FROM LoanView lv WHERE 1 = 1");
+        Map<String, Object> parameters = new HashMap<>();
+        if (criteria.status() != null) {
+            jpql.append(" AND lv.status = :status");
+            parameters.put("status", criteria.status());
+        }
+        if (criteria.customerId() != null) {
+            jpql.append(" AND lv.customerId = :customerId");
+            parameters.put("customerId", criteria.customerId());
+        }
+        if (StringUtils.hasText(criteria.email())) {
+            jpql.append(" AND lv.emailKey = LOWER(:email)");
+            parameters.put("email", criteria.email());
+        }
+        if (criteria.bookId() != null) {
+            jpql.append(" AND lv.bookId = :bookId");
+            parameters.put("bookId", criteria.bookId());
+        }
+        if (criteria.beginFrom() != null) {
+            jpql.append(" AND lv.beginDate >= :beginFrom");
+            parameters.put("beginFrom", criteria.beginFrom());
+        }
+        if (criteria.beginTo() != null) {
+            jpql.append(" AND lv.beginDate < :beginTo");
+            parameters.put("beginTo", criteria.beginTo());
+        }
+        if (criteria.endBefore() != null) {
+            // un prêt ne finit pas avant d'avoir commencé : la borne sur BEGIN_DATE permet de partir du bon endroit de l'index
+            jpql.append(" AND lv.endDate < :endBefore AND lv.beginDate < :endBefore");
+            parameters.put("endBefore", criteria.endBefore());
+        }
+        if (after != null) {
+            jpql.append(" AND (lv.beginDate, lv.bookId, lv.customerId, lv.creationDateTime)"
+                    + " < (:lastBeginDate, :lastBookId, :lastCustomerId, :lastCreationDateTime)");
+            parameters.put("lastBeginDate", after.beginDate());
+            parameters.put("lastBookId", after.bookId());
+            parameters.put("lastCustomerId", after.customerId());
+            parameters.put("lastCreationDateTime", after.creationDateTime());
+        }
+        jpql.append(" ORDER BY lv.beginDate DESC, lv.bookId DESC, lv.customerId DESC, lv.creationDateTime DESC");
 
+        TypedQuery<LoanView> query = entityManager.createQuery(jpql.toString(), LoanView.class);
+        parameters.forEach(query::setParameter);
+        return query.setMaxResults(limit).getResultList();
+    }
 
+    /**
+     * Pas en readOnly : lu sur le primaire, un réplica en retard pourrait rendre un prêt déjà clôturé.
+     */
     @Override
     public Loan getOpenedLoan(SimpleLoanDTO simpleLoanDTO) {
         return loanDao.getLoanByCriteria(simpleLoanDTO.getBookId(), simpleLoanDTO.getCustomerId(), LoanStatus.OPEN);
     }
 
     @Override
+    @Transactional(readOnly = true)
     public boolean checkIfLoanExists(SimpleLoanDTO simpleLoanDTO) {
         Loan loan = loanDao.getLoanByCriteria(simpleLoanDTO.getBookId(), simpleLoanDTO.getCustomerId(), LoanStatus.OPEN);
         if (loan != null) {
@@ -47,15 +171,313 @@ public class LoanServiceImpl implements ILoanService {
 
     @Override
     public Loan saveLoan(Loan loan) {
-        return loanDao.save(loan);
+        Loan savedLoan = loanDao.save(loan);
+        loanViewProjector.loanSaved(savedLoan);
+        return savedLoan;
     }
 
     /**
      * On fera de la suppression logique car le statut de l'objet Loan est positionné à CLOSE.
+     * Le livre est verrouillé le temps de la transaction pour que le compteur d'exemplaires reste exact.
      */
     @Override
     public void closeLoan(Loan loan) {
+        Integer bookId = loan.getPk().getBook().getId();
+        Book book = bookDao.findByIdForUpdate(bookId);
+        loan.setStatus(LoanStatus.CLOSE);
         loanDao.save(loan);
+        loanViewProjector.loanSaved(loan);
+        if (book != null) {
+            long openLoans = loanDao.countByBookAndStatus(bookId, LoanStatus.OPEN);
+            publishAvailableCopies(bookId, availableCopies(book, openLoans));
+        }
+    }
+
+    /**
+     * Emprunt atomique d'un exemplaire. La ligne BOOK est verrouillée (SELECT ... FOR UPDATE) : les emprunts
+     * d'un même livre sont sérialisés, y compris entre plusieurs instances, tandis que ceux de livres
+     * différents ne s'attendent pas.
+     */
+    @Override
+    public CheckoutResult checkoutBook(SimpleLoanDTO simpleLoanDTO) {
+        Integer bookId = simpleLoanDTO.getBookId();
+        Book book = bookDao.findByIdForUpdate(bookId);
+        if (book == null) {
+            return CheckoutResult.UNKNOWN_BOOK;
+        }
+        // le client n'est référencé que par son id : sans ce contrôle, la clé étrangère échouerait au flush
+        if (jdbcTemplate.queryForList(EXISTING_CUSTOMERS, Integer.class,
+                (Object) new Integer[] {simpleLoanDTO.getCustomerId()}).isEmpty()) {
+            return CheckoutResult.UNKNOWN_CUSTOMER;
+        }
+        if (loanDao.getLoanByCriteria(bookId, simpleLoanDTO.getCustomerId(), LoanStatus.OPEN) != null) {
+            return CheckoutResult.ALREADY_LOANED;
+        }
+        long openLoans = loanDao.countByBookAndStatus(bookId, LoanStatus.OPEN);
+        int availableCopies = availableCopies(book, openLoans);
+        if (availableCopies <= 0) {
+            availabilityCounters.set(bookId, 0);
+            return CheckoutResult.NO_COPY_AVAILABLE;
+        }
+        // référence sans SELECT : un Customer construit ici, sans version, passerait pour une nouvelle ligne
+        Customer customer = entityManager.getReference(Customer.class, simpleLoanDTO.getCustomerId());
+        Loan loan = new Loan();
+        loan.setPk(new LoanId(book, customer));
+        loan.setBeginDate(simpleLoanDTO.getBeginDate());
+        loan.setEndDate(simpleLoanDTO.getEndDate());
+        loan.setStatus(LoanStatus.OPEN);
+        loanDao.save(loan);
+        loanViewProjector.loanSaved(loan);
+        publishAvailableCopies(bookId, availableCopies - 1);
+        return CheckoutResult.CREATED;
+    }
+
+    /**
+     * Tout le lot est résolu en quatre requêtes ensemblistes (verrou des livres, clients, prêts OPEN par livre,
+     * prêts OPEN des couples livre/client), puis les opérations sont jouées en mémoire dans l'ordre : un retour
+     * libère l'exemplaire pour un emprunt suivant du même lot. Les écritures partent en deux batchs JDBC,
+     * un INSERT pour les nouveaux prêts et un UPDATE pour les prêts existants rendus ou prolongés.
+     */
+    @Override
+    public List<CirculationResult> applyCirculation(List<CirculationOperation> operations) {
+        Set<Integer> bookIds = new TreeSet<>();
+        Set<Integer> customerIds = new TreeSet<>();
+        for (CirculationOperation operation : operations) {
+            if (operation.bookId() != null && operation.customerId() != null) {
+                bookIds.add(operation.bookId());
+                customerIds.add(operation.customerId());
+            }
+        }
+        Integer[] bookIdArray = bookIds.toArray(new Integer[0]);
+        Integer[] customerIdArray = customerIds.toArray(new Integer[0]);
+
+        Map<Integer, Integer> availableCopies = new HashMap<>();
+        jdbcTemplate.query(LOCK_BOOKS, row -> {
+            availableCopies.put(row.getInt(1), row.getInt(2));
+        }, (Object) bookIdArray);
+        Set<Integer> knownCustomers = new HashSet<>(
+                jdbcTemplate.queryForList(EXISTING_CUSTOMERS, Integer.class, (Object) customerIdArray));
+        jdbcTemplate.query(OPEN_LOANS_BY_BOOK, row -> {
+            availableCopies.merge(row.getInt(1), -row.getInt(2), Integer::sum);
+        }, (Object) bookIdArray);
+        Map<LoanKey, Loan> openLoans = new HashMap<>();
+        jdbcTemplate.query(OPEN_LOANS_OF_PAIRS, row -> {
+            Loan loan = newLoan(row.getInt(1), row.getInt(2), row.getTimestamp(3).toLocalDateTime(),
+                    row.getDate(4).toLocalDate(), row.getDate(5).toLocalDate());
+            openLoans.put(new LoanKey(row.getInt(1), row.getInt(2)), loan);
+        }, bookIdArray, customerIdArray);
+
+        // Loan.equals ignore la date de création : un couple rendu puis réemprunté donne deux prêts « égaux »
+        List<CirculationResult> results = new ArrayList<>(operations.size());
+        Set<Loan> createdLoans = Collections.newSetFromMap(new IdentityHashMap<>());
+        Set<Loan> updatedLoans = Collections.newSetFromMap(new IdentityHashMap<>());
+        LocalDateTime now = LocalDateTime.now();
+        for (CirculationOperation operation : operations) {
+            CirculationResult result = applyOperation(operation, availableCopies, knownCustomers, openLoans,
+                    // une microseconde d'écart par opération : un même couple peut être emprunté deux fois dans le lot
+                    now.plusNanos(1000L * results.size()), createdLoans, updatedLoans);
+            results.add(result);
+        }
+
+        if (!createdLoans.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_LOAN, createdLoans, createdLoans.size(), (statement, loan) -> {
+                statement.setInt(1, loan.getPk().getBook().getId());
+                statement.setInt(2, loan.getPk().getCustomer().getId());
+                statement.setTimestamp(3, Timestamp.valueOf(loan.getPk().getCreationDateTime()));
+                statement.setDate(4, Date.valueOf(loan.getBeginDate()));
+                statement.setDate(5, Date.valueOf(loan.getEndDate()));
+                statement.setString(6, loan.getStatus().name());
+            });
+        }
+        if (!updatedLoans.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_LOAN, updatedLoans, updatedLoans.size(), (statement, loan) -> {
+                statement.setDate(1, Date.valueOf(loan.getEndDate()));
+                statement.setString(2, loan.getStatus().name());
+                statement.setInt(3, loan.getPk().getBook().getId());
+                statement.setInt(4, loan.getPk().getCustomer().getId());
+                statement.setTimestamp(5, Timestamp.valueOf(loan.getPk().getCreationDateTime()));
+            });
+        }
+        List<Loan> savedLoans = new ArrayList<>(createdLoans);
+        savedLoans.addAll(updatedLoans);
+        if (!savedLoans.isEmpty()) {
+            loanViewProjector.loansSaved(savedLoans);
+        }
+        Set<Integer> touchedBooks = new HashSet<>();
+        savedLoans.forEach(loan -> touchedBooks.add(loan.getPk().getBook().getId()));
+        touchedBooks.forEach(bookId -> publishAvailableCopies(bookId, availableCopies.get(bookId)));
+        return results;
+    }
+
+    private static CirculationResult applyOperation(CirculationOperation operation, Map<Integer, Integer> availableCopies,
+                                                    Set<Integer> knownCustomers, Map<LoanKey, Loan> openLoans,
+                                                    LocalDateTime creationDateTime, Set<Loan> createdLoans,
+                                                    Set<Loan> updatedLoans) {
+        if (operation.type() == null || operation.bookId() == null || operation.customerId() == null) {
+            return CirculationResult.INVALID;
+        }
+        if (!availableCopies.containsKey(operation.bookId())) {
+            return CirculationResult.UNKNOWN_BOOK;
+        }
+        if (!knownCustomers.contains(operation.customerId())) {
+            return CirculationResult.UNKNOWN_CUSTOMER;
+        }
+        LoanKey key = new LoanKey(operation.bookId(), operation.customerId());
+        Loan openLoan = openLoans.get(key);
+        switch (operation.type()) {
+            case CHECKOUT:
+                if (operation.beginDate() == null || operation.endDate() == null
+                        || operation.endDate().isBefore(operation.beginDate())) {
+                    return CirculationResult.INVALID;
+                }
+                if (openLoan != null) {
+                    return CirculationResult.ALREADY_LOANED;
+                }
+                if (availableCopies.get(operation.bookId()) <= 0) {
+                    return CirculationResult.NO_COPY_AVAILABLE;
+                }
+                Loan loan = newLoan(operation.bookId(), operation.customerId(), creationDateTime,
+                        operation.beginDate(), operation.endDate());
+                openLoans.put(key, loan);
+                createdLoans.add(loan);
+                availableCopies.merge(operation.bookId(), -1, Integer::sum);
+                return CirculationResult.CREATED;
+            case RETURN:
+                if (openLoan == null) {
+                    return CirculationResult.NO_OPEN_LOAN;
+                }
+                openLoan.setStatus(LoanStatus.CLOSE);
+                openLoans.remove(key);
+                if (!createdLoans.contains(openLoan)) {
+                    updatedLoans.add(openLoan);
+                }
+                availableCopies.merge(operation.bookId(), 1, Integer::sum);
+                return CirculationResult.CLOSED;
+            default:
+                if (openLoan == null) {
+                    return CirculationResult.NO_OPEN_LOAN;
+                }
+                if (operation.endDate() == null || !operation.endDate().isAfter(openLoan.getEndDate())) {
+                    return CirculationResult.INVALID;
+                }
+                openLoan.setEndDate(operation.endDate());
+                if (!createdLoans.contains(openLoan)) {
+                    updatedLoans.add(openLoan);
+                }
+                return CirculationResult.RENEWED;
+        }
+    }
+
+    private static Loan newLoan(Integer bookId, Integer customerId, LocalDateTime creationDateTime,
+                                LocalDate beginDate, LocalDate endDate) {
+        Book book = new Book();
+        book.setId(bookId);
+        Customer customer = new Customer();
+        customer.setId(customerId);
+        LoanId loanId = new LoanId(book, customer);
+        loanId.setCreationDateTime(creationDateTime);
+        Loan loan = new Loan();
+        loan.setPk(loanId);
+        loan.setBeginDate(beginDate);
+        loan.setEndDate(endDate);
+        loan.setStatus(LoanStatus.OPEN);
+        return loan;
+    }
+
+    private record LoanKey(Integer bookId, Integer customerId) {
+    }
+
+    /**
+     * Lit le compteur en mémoire ; il n'est calculé en base qu'au premier accès à un livre.
+     * Pas en readOnly : le compteur est calculé sur le primaire, une valeur lue sur un réplica en retard resterait en mémoire.
+     */
+    @Override
+    public Integer getAvailableCopies(Integer bookId) {
+        Integer availableCopies = availabilityCounters.get(bookId);
+        if (availableCopies != null) {
+            return availableCopies;
+        }
+        Book book = bookDao.findById(bookId).orElse(null);
+        if (book == null) {
+            return null;
+        }
+        long openLoans = loanDao.countByBookAndStatus(bookId, LoanStatus.OPEN);
+        return availabilityCounters.setIfAbsent(bookId, availableCopies(book, openLoans));
+    }
+
+    /**
+     * Recalcule tous les compteurs depuis la table LOAN, pour rattraper les emprunts faits par d'autres instances.
+     * Sur le primaire, comme getAvailableCopies. Les lectures ne verrouillent rien : un compteur publié par un
+     * emprunt ou un retour pendant le recalcul est conservé (voir BookAvailabilityCounters.reconcile).
+     */
+    @Override
+    @Scheduled(fixedDelayString = "${library.loan.availability.reconcile-delay-ms:300000}",
+            initialDelayString = "${library.loan.availability.reconcile-delay-ms:300000}")
+    public void reconcileAvailableCopies() {
+        long snapshot = availabilityCounters.snapshot();
+        Map<Integer, Long> openLoansByBook = new HashMap<>();
+        for (Object[] row : loanDao.countByStatusGroupByBook(LoanStatus.OPEN)) {
+            openLoansByBook.put((Integer) row[0], (Long) row[1]);
+        }
+        Map<Integer, Integer> availableCopiesByBook = new HashMap<>();
+        for (Object[] row : bookDao.findAllTotalExamplaries()) {
+            Integer bookId = (Integer) row[0];
+            int total = row[1] == null ? 0 : (Integer) row[1];
+            availableCopiesByBook.put(bookId, (int) (total - openLoansByBook.getOrDefault(bookId, 0L)));
+        }
+        availabilityCounters.reconcile(snapshot, availableCopiesByBook);
+        LOGGER.debug("Availability counters reconciled for {} books", availableCopiesByBook.size());
+    }
+
+    /**
+     * Tranche suivante des prêts OPEN échus entre from (inclus) et to (exclu), après le prêt after (null pour la première).
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<OverdueLoan> findOverdueLoansChunk(LocalDate from, LocalDate to, OverdueLoan after, int chunkSize) {
+        if (after == null) {
+            return loanDao.findOpenOverdueLoansAfter(from, to, from.minusDays(1), 0, 0, Limit.of(chunkSize));
+        }
+        return loanDao.findOpenOverdueLoansAfter(from, to, after.endDate(), after.bookId(), after.customerId(),
+                Limit.of(chunkSize));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long forEachLoan(Consumer<Loan> action) {
+        return EntityStreams.forEach(entityManager, loanDao.streamAllWithBookAndCustomer(), action);
+    }
+
+    private static int availableCopies(Book book, long openLoans) {
+        int total = book.getTotalExamplaries() == null ? 0 : book.getTotalExamplaries();
+        return (int) (total - openLoans);
+    }
+
+    /**
+     * Le compteur est écrit juste avant le commit, tant que le verrou BOOK est encore tenu, ce qui garantit
+     * l'ordre des écritures, puis marqué à nouveau après le commit. En cas de rollback il est invalidé pour
+     * être relu en base.
+     */
+    private void publishAvailableCopies(Integer bookId, int availableCopies) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            availabilityCounters.set(bookId, availableCopies);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                availabilityCounters.set(bookId, availableCopies);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    availabilityCounters.touch(bookId);
+                } else {
+                    availabilityCounters.evict(bookId);
+                }
+            }
+        });
     }
 
 }
@@ -0,0 +1,148 @@
+package com.ulrich.library2.service;
+
+import com.ulrich.library2.entity.book.Book;
+import com.ulrich.library2.entity.customer.Customer;
+import com.ulrich.library2.entity.loan.Loan;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * Tient à jour la table LOAN_VIEW. Chaque méthode est appelée par le service qui modifie le prêt, le livre ou
+ * le client, et s'exécute en JDBC dans sa transaction : le modèle de lecture est validé ou annulé avec l'écriture.
+ * Les lignes sont construites à partir de BOOK et CUSTOMER, jamais à partir de LOAN : l'ordre de flush
+ * d'Hibernate n'a pas d'importance.
+ */
+@Component
+public class LoanViewProjector {
+
+    public static final Logger LOGGER = LoggerFactory.getLogger(LoanViewProjector.class);
+
+    private static final String COLUMNS = "book_id, customer_id, creation_date_time, book_title, book_isbn, "
+            + "customer_first_name, customer_last_name, customer_email, email_key, begin_date, end_date, status";
+
+    private static final String UPSERT = "INSERT INTO loan_view (" + COLUMNS + ") "
+            + "SELECT b.book_id, c.customer_id, ?, b.title, b.isbn, c.first_name, c.last_name, c.email, LOWER(c.email), ?, ?, ? "
+            + "FROM book b CROSS JOIN customer c WHERE b.book_id = ? AND c.customer_id = ? "
+            + "ON CONFLICT (book_id, customer_id, creation_date_time) DO UPDATE SET "
+            + "begin_date = EXCLUDED.begin_date, end_date = EXCLUDED.end_date, status = EXCLUDED.status";
+
+    /**
+     * Recopie complète depuis LOAN, BOOK et CUSTOMER ; la table doit être vide.
+     */
+    public static final String REBUILD = "INSERT INTO loan_view (" + COLUMNS + ") "
+            + "SELECT l.book_id, l.customer_id, l.creation_date_time, b.title, b.isbn, c.first_name, c.last_name, "
+            + "c.email, LOWER(c.email), l.begin_date, l.end_date, l.status "
+            + "FROM loan l JOIN book b ON b.book_id = l.book_id JOIN customer c ON c.customer_id = l.customer_id";
+
+    // Les lignes déjà à jour ne sont pas réécrites
+    private static final String UPDATE_BOOK = "UPDATE loan_view SET book_title = ?, book_isbn = ? "
+            + "WHERE book_id = ? AND (book_title IS DISTINCT FROM ? OR book_isbn IS DISTINCT FROM ?)";
+
+    private static final String UPDATE_CUSTOMER = "UPDATE loan_view SET customer_first_name = ?, customer_last_name = ?, "
+            + "customer_email = ?, email_key = LOWER(?) WHERE customer_id = ? AND (customer_first_name IS DISTINCT FROM ? "
+            + "OR customer_last_name IS DISTINCT FROM ? OR customer_email IS DISTINCT FROM ?)";
+
+    private static final String REFRESH_IMPORTED_BOOKS = "UPDATE loan_view lv SET book_title = b.title "
+            + "FROM book b WHERE b.book_id = lv.book_id AND LOWER(b.isbn) IN (SELECT LOWER(isbn) FROM book_import) "
+            + "AND lv.book_title IS DISTINCT FROM b.title";
+
+    private static final String REFRESH_IMPORTED_CUSTOMERS = "UPDATE loan_view lv SET customer_first_name = c.first_name, "
+            + "customer_last_name = c.last_name FROM customer c WHERE c.customer_id = lv.customer_id "
+            + "AND LOWER(c.email) IN (SELECT LOWER(email) FROM customer_import) "
+            + "AND (lv.customer_first_name IS DISTINCT FROM c.first_name OR lv.customer_last_name IS DISTINCT FROM c.last_name)";
+
+    private JdbcTemplate jdbcTemplate;
+
+    public LoanViewProjector(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Crée ou met à jour la ligne du prêt (dates et statut).
+     */
+    public void loanSaved(Loan loan) {
+        jdbcTemplate.update(UPSERT, Timestamp.valueOf(loan.getPk().getCreationDateTime()),
+                Date.valueOf(loan.getBeginDate()), Date.valueOf(loan.getEndDate()), loan.getStatus().name(),
+                loan.getPk().getBook().getId(), loan.getPk().getCustomer().getId());
+    }
+
+    /**
+     * Variante en lot de loanSaved, envoyée en un seul batch JDBC.
+     */
+    public void loansSaved(List<Loan> loans) {
+        jdbcTemplate.batchUpdate(UPSERT, loans, loans.size(), (statement, loan) -> {
+            statement.setTimestamp(1, Timestamp.valueOf(loan.getPk().getCreationDateTime()));
+            statement.setDate(2, Date.valueOf(loan.getBeginDate()));
+            statement.setDate(3, Date.valueOf(loan.getEndDate()));
+            statement.setString(4, loan.getStatus().name());
+            statement.setInt(5, loan.getPk().getBook().getId());
+            statement.setInt(6, loan.getPk().getCustomer().getId());
+        });
+    }
+
+    public void bookUpdated(Book book) {
+        jdbcTemplate.update(UPDATE_BOOK, book.getTitle(), book.getIsbn(), book.getId(), book.getTitle(), book.getIsbn());
+    }
+
+    public void bookDeleted(Integer bookId) {
+        jdbcTemplate.update("DELETE FROM loan_view WHERE book_id = ?", bookId);
+    }
+
+    public void customerUpdated(Customer customer) {
+        jdbcTemplate.update(UPDATE_CUSTOMER, customer.getFirstName(), customer.getLastName(), customer.getEmail(),
+                customer.getEmail(), customer.getId(), customer.getFirstName(), customer.getLastName(), customer.getEmail());
+    }
+
+    public void customerDeleted(Integer customerId) {
+        jdbcTemplate.update("DELETE FROM loan_view WHERE customer_id = ?", customerId);
+    }
+
+    /**
+     * À appeler dans la transaction d'un import en masse, après la fusion de la table temporaire book_import.
+     */
+    public void importedBooksMerged() {
+        jdbcTemplate.update(REFRESH_IMPORTED_BOOKS);
+    }
+
+    /**
+     * À appeler dans la transaction d'un import en masse, après la fusion de la table temporaire customer_import.
+     */
+    public void importedCustomersMerged() {
+        jdbcTemplate.update(REFRESH_IMPORTED_CUSTOMERS);
+    }
+
+    /**
+     * Reconstruit toute la table depuis LOAN (données chargées hors de l'application, reprise d'une base existante).
+     *
+     * @return le nombre de prêts recopiés
+     */
+    @Transactional
+    public int rebuild() {
+        jdbcTemplate.execute("TRUNCATE loan_view");
+        int loans = jdbcTemplate.update(REBUILD);
+        LOGGER.info("Loan read model rebuilt with {} loans", loans);
+        return loans;
+    }
+
+    /**
+     * Au démarrage, remplit la table si elle est vide alors que des prêts existent.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void rebuildIfEmpty() {
+        Boolean empty = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM loan) AND NOT EXISTS (SELECT 1 FROM loan_view)", Boolean.class);
+        if (Boolean.TRUE.equals(empty)) {
+            rebuild();
+        }
+    }
+}
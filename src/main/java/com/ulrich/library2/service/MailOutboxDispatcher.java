@@ -0,0 +1,190 @@
+package com.ulrich.library2.service;
+
+import com.ulrich.library2.entity.mail.MailOutbox;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Vide la table MAIL_OUTBOX par lots. Chaque lot est découpé en quelques paquets envoyés en parallèle
+ * sur des threads virtuels ; un paquet est envoyé en un seul appel à JavaMailSender, donc sur une
+ * seule connexion SMTP.
+ */
+@Component
+public class MailOutboxDispatcher {
+
+    public static final Logger LOGGER = LoggerFactory.getLogger(MailOutboxDispatcher.class);
+
+    private IMailOutboxService mailOutboxService;
+
+    private JavaMailSender javaMailSender;
+
+    private int batchSize;
+
+    private int connections;
+
+    private ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private AtomicLong queueDepth = new AtomicLong();
+
+    private Timer deliveryLatency;
+
+    private Counter sentMails;
+
+    private Counter failedMails;
+
+    public MailOutboxDispatcher(IMailOutboxService mailOutboxService, JavaMailSender javaMailSender,
+                                MeterRegistry meterRegistry,
+                                @Value("${library.mail.outbox.batch-size:100}") int batchSize,
+                                @Value("${library.mail.outbox.connections:4}") int connections) {
+        this.mailOutboxService = mailOutboxService;
+        this.javaMailSender = javaMailSender;
+        this.batchSize = batchSize;
+        this.connections = Math.max(connections, 1);
+        Gauge.builder("library.mail.outbox.depth", queueDepth, AtomicLong::get)
+                .description("Mails waiting to be sent")
+                .register(meterRegistry);
+        this.deliveryLatency = Timer.builder("library.mail.outbox.delivery.latency")
+                .description("Time between queueing and successful delivery of a mail")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.sentMails = Counter.builder("library.mail.outbox.sent").register(meterRegistry);
+        this.failedMails = Counter.builder("library.mail.outbox.failures").register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${library.mail.outbox.poll-delay-ms:2000}")
+    public void dispatch() {
+        try {
+            List<MailOutbox> mails;
+            do {
+                mails = mailOutboxService.claimDueMails(batchSize);
+                if (!mails.isEmpty()) {
+                    sendBatch(mails);
+                }
+            } while (mails.size() == batchSize);
+            queueDepth.set(mailOutboxService.countPendingMails());
+        } catch (RuntimeException e) {
+            LOGGER.error("Mail outbox dispatch failed", e);
+        }
+    }
+
+    public long getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private void sendBatch(List<MailOutbox> mails) {
+        int chunkSize = (mails.size() + connections - 1) / connections;
+        List<List<MailOutbox>> chunks = new ArrayList<>();
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int from = 0; from < mails.size(); from += chunkSize) {
+            List<MailOutbox> chunk = mails.subList(from, Math.min(from + chunkSize, mails.size()));
+            chunks.add(chunk);
+            tasks.add(() -> {
+                sendChunk(chunk);
+                return null;
+            });
+        }
+        try {
+            List<Future<Void>> results = executor.invokeAll(tasks);
+            for (int i = 0; i < results.size(); i++) {
+                try {
+                    results.get(i).get();
+                } catch (ExecutionException e) {
+                    // ex. échec de markSent : les mails du paquet restent en SENDING et seront repris à l'expiration du bail
+                    List<MailOutbox> chunk = chunks.get(i);
+                    LOGGER.error("Mail outbox chunk of {} mails failed (ids {} to {})", chunk.size(),
+                            chunk.get(0).getId(), chunk.get(chunk.size() - 1).getId(), e.getCause());
+                    failedMails.increment(chunk.size());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void sendChunk(List<MailOutbox> chunk) {
+        SimpleMailMessage[] messages = new SimpleMailMessage[chunk.size()];
+        for (int i = 0; i < chunk.size(); i++) {
+            messages[i] = toMailMessage(chunk.get(i));
+        }
+        Map<Object, Exception> failedMessages = Map.of();
+        try {
+            javaMailSender.send(messages);
+        } catch (MailSendException e) {
+            failedMessages = e.getFailedMessages();
+            if (failedMessages.isEmpty()) {
+                markAllFailed(chunk, e);
+                return;
+            }
+        } catch (MailException e) {
+            markAllFailed(chunk, e);
+            return;
+        }
+        List<Long> sentIds = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < chunk.size(); i++) {
+            MailOutbox mail = chunk.get(i);
+            Exception failure = failedMessages.get(messages[i]);
+            if (failure == null) {
+                sentIds.add(mail.getId());
+                deliveryLatency.record(Duration.between(mail.getCreatedAt(), now));
+            } else {
+                markFailed(mail, failure);
+            }
+        }
+        mailOutboxService.markSent(sentIds);
+        sentMails.increment(sentIds.size());
+    }
+
+    private void markAllFailed(List<MailOutbox> chunk, Exception e) {
+        for (MailOutbox mail : chunk) {
+            markFailed(mail, e);
+        }
+    }
+
+    private void markFailed(MailOutbox mail, Exception e) {
+        LOGGER.warn("Mail {} to {} not sent (attempt {}): {}", mail.getId(), mail.getRecipient(), mail.getAttempts(), e.getMessage());
+        mailOutboxService.markFailed(mail, e.getMessage());
+        failedMails.increment();
+    }
+
+    private static SimpleMailMessage toMailMessage(MailOutbox mail) {
+        SimpleMailMessage message = new SimpleMailMessage();
+        message.setFrom(mail.getSender());
+        message.setTo(mail.getRecipient());
+        message.setSentDate(mail.getCreatedAt() == null ? new Date() : Timestamp.valueOf(mail.getCreatedAt()));
+        message.setSubject(mail.getSubject());
+        message.setText(mail.getContent());
+        return message;
+    }
+}
@@ -0,0 +1,102 @@
+package com.ulrich.library2.service;
+
+import com.ulrich.library2.entity.mail.MailOutbox;
+import com.ulrich.library2.repository.IMailOutboxDao;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+
+@Service("mailOutboxService")
+@Transactional
+public class MailOutboxServiceImpl implements IMailOutboxService {
+
+    private IMailOutboxDao mailOutboxDao;
+
+    private int maxAttempts;
+
+    private Duration retryBackoff;
+
+    private Duration sendingLease;
+
+    public MailOutboxServiceImpl(IMailOutboxDao mailOutboxDao,
+                                 @Value("${library.mail.outbox.max-attempts:5}") int maxAttempts,
+                                 @Value("${library.mail.outbox.retry-backoff-ms:30000}") long retryBackoffMs,
+                                 @Value("${library.mail.outbox.sending-lease-ms:300000}") long sendingLeaseMs) {
+        this.mailOutboxDao = mailOutboxDao;
+        this.maxAttempts = maxAttempts;
+        this.retryBackoff = Duration.ofMillis(retryBackoffMs);
+        this.sendingLease = Duration.ofMillis(sendingLeaseMs);
+    }
+
+    /**
+     * Participe à la transaction de l'appelant : le mail n'existe que si celle-ci est validée.
+     */
+    @Override
+    public MailOutbox queueMail(String sender, String recipient, String subject, String content) {
+        LocalDateTime now = LocalDateTime.now();
+        MailOutbox mail = new MailOutbox();
+        mail.setSender(sender);
+        mail.setRecipient(recipient);
+        mail.setSubject(subject);
+        mail.setContent(content);
+        mail.setStatus(MailStatus.PENDING);
+        mail.setCreatedAt(now);
+        mail.setNextAttemptAt(now);
+        return mailOutboxDao.save(mail);
+    }
+
+    /**
+     * Réserve un lot de mails à envoyer. Ils passent en SENDING avec un bail : si l'instance tombe
+     * pendant l'envoi, ils seront repris à l'expiration du bail.
+     */
+    @Override
+    public List<MailOutbox> claimDueMails(int batchSize) {
+        LocalDateTime now = LocalDateTime.now();
+        List<MailOutbox> mails = mailOutboxDao.findDueMailsForUpdate(now, batchSize);
+        for (MailOutbox mail : mails) {
+            mail.setStatus(MailStatus.SENDING);
+            mail.setAttempts(mail.getAttempts() + 1);
+            mail.setNextAttemptAt(now.plus(sendingLease));
+        }
+        return mails;
+    }
+
+    @Override
+    public void markSent(Collection<Long> mailIds) {
+        if (!mailIds.isEmpty()) {
+            mailOutboxDao.markSent(mailIds, MailStatus.SENT, LocalDateTime.now());
+        }
+    }
+
+    /**
+     * Replanifie l'envoi avec un délai qui double à chaque tentative, ou abandonne après maxAttempts.
+     */
+    @Override
+    public void markFailed(MailOutbox mail, String error) {
+        MailOutbox managedMail = mailOutboxDao.findById(mail.getId()).orElse(null);
+        if (managedMail == null) {
+            return;
+        }
+        int attempts = managedMail.getAttempts();
+        if (attempts >= maxAttempts) {
+            managedMail.setStatus(MailStatus.FAILED);
+        } else {
+            managedMail.setStatus(MailStatus.PENDING);
+            managedMail.setNextAttemptAt(LocalDateTime.now().plus(retryBackoff.multipliedBy(1L << Math.min(attempts - 1, 16))));
+        }
+        managedMail.setLastError(error == null || error.length() <= 1000 ? error : error.substring(0, 1000));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long countPendingMails() {
+        return mailOutboxDao.countByStatusIn(EnumSet.of(MailStatus.PENDING, MailStatus.SENDING));
+    }
+
+}
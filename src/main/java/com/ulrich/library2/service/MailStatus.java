@@ -0,0 +1,8 @@
+package com.ulrich.library2.service;
+
+
+
+public enum MailStatus {
+
+    PENDING, SENDING, SENT, FAILED
+}
@@ -0,0 +1,11 @@
+package com.ulrich.library2.service;
+
+import java.time.LocalDate;
+
+/**
+ * Prêt en retard, lu directement en projection (sans charger les entités Book et Customer).
+ */
+public record OverdueLoan(Integer bookId, String isbn, String title,
+                          Integer customerId, String firstName, String lastName, String email,
+                          LocalDate beginDate, LocalDate endDate) {
+}
@@ -0,0 +1,170 @@
+package com.ulrich.library2.service;
+
+import com.ulrich.library2.entity.job.JobWatermark;
+import com.ulrich.library2.repository.IJobWatermarkDao;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Détection planifiée des prêts en retard. Seuls les prêts OPEN arrivés à échéance depuis la dernière
+ * exécution (le watermark) sont lus, par tranches bornées, puis les relances sont mises en file
+ * d'envoi avec un mail par client et par tranche.
+ *
+ * Chaque tranche est traitée dans une transaction qui verrouille la ligne JOB_WATERMARK, y lit le point de
+ * reprise, met les relances en file et avance le point de reprise : une relance n'est mise en file qu'une fois,
+ * même après une exécution interrompue, et plusieurs instances se relaient tranche par tranche sans doublon.
+ */
+@Component
+public class OverdueLoanScanner {
+
+    public static final Logger LOGGER = LoggerFactory.getLogger(OverdueLoanScanner.class);
+
+    static final String JOB_NAME = "overdue-loan-scan";
+
+    private ILoanService loanService;
+
+    private IMailOutboxService mailOutboxService;
+
+    private IJobWatermarkDao jobWatermarkDao;
+
+    private TransactionTemplate transactionTemplate;
+
+    private int chunkSize;
+
+    private int initialLookbackDays;
+
+    private String reminderFrom;
+
+    private Timer scanDuration;
+
+    private Counter rowsScanned;
+
+    private Counter remindersQueued;
+
+    public OverdueLoanScanner(ILoanService loanService, IMailOutboxService mailOutboxService,
+                              IJobWatermarkDao jobWatermarkDao, PlatformTransactionManager transactionManager,
+                              MeterRegistry meterRegistry,
+                              @Value("${library.loan.overdue.chunk-size:500}") int chunkSize,
+                              @Value("${library.loan.overdue.initial-lookback-days:30}") int initialLookbackDays,
+                              @Value("${library.loan.overdue.reminder-from:noreply.library.test@gmail.com}") String reminderFrom) {
+        this.loanService = loanService;
+        this.mailOutboxService = mailOutboxService;
+        this.jobWatermarkDao = jobWatermarkDao;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+        this.initialLookbackDays = initialLookbackDays;
+        this.reminderFrom = reminderFrom;
+        this.scanDuration = Timer.builder("library.loan.overdue.scan.duration")
+                .description("Duration of an overdue loan scan")
+                .register(meterRegistry);
+        this.rowsScanned = Counter.builder("library.loan.overdue.scan.rows")
+                .description("Overdue loans read by the scanner")
+                .register(meterRegistry);
+        this.remindersQueued = Counter.builder("library.loan.overdue.reminders")
+                .description("Reminder mails queued by the scanner")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${library.loan.overdue.cron:0 0 2 * * *}")
+    public void scheduledScan() {
+        try {
+            scan(LocalDate.now());
+        } catch (RuntimeException e) {
+            LOGGER.error("Overdue loan scan failed, it will resume after the last committed chunk", e);
+        }
+    }
+
+    /**
+     * Traite les prêts échus avant today et non encore vus. Le watermark passe à today avec la dernière
+     * tranche ; d'ici là, seul le point de reprise avance.
+     *
+     * @return le nombre de prêts en retard trouvés par cette exécution
+     */
+    public long scan(LocalDate today) {
+        return scanDuration.record(() -> {
+            transactionTemplate.executeWithoutResult(status -> jobWatermarkDao.insertIfAbsent(JOB_NAME,
+                    today.minusDays(initialLookbackDays), LocalDateTime.now()));
+            long total = 0;
+            Integer scanned;
+            while ((scanned = transactionTemplate.execute(status -> scanChunk(today))) != null) {
+                total += scanned;
+            }
+            LOGGER.info("Overdue loan scan up to {}: {} loans", today, total);
+            return total;
+        });
+    }
+
+    /**
+     * Traite la tranche qui suit le point de reprise, sous le verrou du watermark.
+     *
+     * @return le nombre de prêts de la tranche, ou null si le watermark a déjà atteint today
+     */
+    private Integer scanChunk(LocalDate today) {
+        JobWatermark watermark = jobWatermarkDao.findForUpdate(JOB_NAME).orElseThrow();
+        if (!watermark.getWatermark().isBefore(today)) {
+            return null;
+        }
+        List<OverdueLoan> chunk = loanService.findOverdueLoansChunk(watermark.getWatermark(), today,
+                resumeAfter(watermark), chunkSize);
+        sendReminders(chunk);
+        if (chunk.size() < chunkSize) {
+            watermark.setWatermark(today);
+            watermark.setLastEndDate(null);
+            watermark.setLastBookId(null);
+            watermark.setLastCustomerId(null);
+        } else {
+            OverdueLoan last = chunk.get(chunk.size() - 1);
+            watermark.setLastEndDate(last.endDate());
+            watermark.setLastBookId(last.bookId());
+            watermark.setLastCustomerId(last.customerId());
+        }
+        watermark.setUpdatedAt(LocalDateTime.now());
+        rowsScanned.increment(chunk.size());
+        return chunk.size();
+    }
+
+    /**
+     * Dernière ligne traitée par une tranche précédente, réduite à sa clé de tri, ou null en début de plage.
+     */
+    private static OverdueLoan resumeAfter(JobWatermark watermark) {
+        if (watermark.getLastEndDate() == null) {
+            return null;
+        }
+        return new OverdueLoan(watermark.getLastBookId(), null, null, watermark.getLastCustomerId(), null, null, null,
+                null, watermark.getLastEndDate());
+    }
+
+    private void sendReminders(List<OverdueLoan> chunk) {
+        Map<Integer, List<OverdueLoan>> loansByCustomer = new LinkedHashMap<>();
+        for (OverdueLoan loan : chunk) {
+            loansByCustomer.computeIfAbsent(loan.customerId(), key -> new ArrayList<>()).add(loan);
+        }
+        for (List<OverdueLoan> loans : loansByCustomer.values()) {
+            OverdueLoan first = loans.get(0);
+            StringBuilder content = new StringBuilder()
+                    .append("Bonjour ").append(first.firstName()).append(' ').append(first.lastName()).append(",\n\n")
+                    .append("Les prêts suivants ont dépassé leur date de retour :\n");
+            for (OverdueLoan loan : loans) {
+                content.append(" - ").append(loan.title()).append(" (ISBN ").append(loan.isbn())
+                        .append("), à rendre le ").append(loan.endDate()).append('\n');
+            }
+            mailOutboxService.queueMail(reminderFrom, first.email(), "Rappel : prêts en retard", content.toString());
+            remindersQueued.increment();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+-- Schéma de départ, antérieur à Flyway : catégories, livres, clients et prêts.
+-- Une base existante, créée avant Flyway, est enregistrée directement en version 1 (baseline-on-migrate) :
+-- tout ce qui a été ajouté depuis doit donc venir des migrations suivantes, jamais de celle-ci.
+
+CREATE TABLE category (
+  code VARCHAR(255) NOT NULL,
+  label VARCHAR(255) NOT NULL,
+  PRIMARY KEY (code)
+);
+
+CREATE TABLE book (
+  book_id INTEGER GENERATED BY DEFAULT AS IDENTITY,
+  title VARCHAR(255) NOT NULL,
+  isbn VARCHAR(255) NOT NULL UNIQUE,
+  release_date DATE NOT NULL,
+  register_date DATE NOT NULL,
+  total_examplaries INTEGER,
+  author VARCHAR(255),
+  cat_code VARCHAR(255) NOT NULL REFERENCES category (code),
+  PRIMARY KEY (book_id)
+);
+
+CREATE TABLE customer (
+  customer_id INTEGER GENERATED BY DEFAULT AS IDENTITY,
+  first_name VARCHAR(255) NOT NULL,
+  last_name VARCHAR(255) NOT NULL,
+  job VARCHAR(255),
+  address VARCHAR(255),
+  email VARCHAR(255) NOT NULL UNIQUE,
+  creation_date TIMESTAMP(6) NOT NULL,
+  PRIMARY KEY (customer_id)
+);
+
+CREATE TABLE loan (
+  book_id INTEGER NOT NULL REFERENCES book (book_id),
+  customer_id INTEGER NOT NULL REFERENCES customer (customer_id),
+  creation_date_time TIMESTAMP(6) NOT NULL,
+  begin_date DATE NOT NULL,
+  end_date DATE NOT NULL,
+  status VARCHAR(255) CHECK (status IN ('OPEN', 'CLOSE')),
+  PRIMARY KEY (book_id, customer_id, creation_date_time)
+);
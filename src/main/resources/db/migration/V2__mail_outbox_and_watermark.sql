@@ -0,0 +1,27 @@
+-- Boîte d'envoi des mails (MailOutboxDispatcher) et watermarks des tâches planifiées (OverdueLoanScanner).
+-- IF NOT EXISTS : une base antérieure à Flyway a pu recevoir ces tables à la main.
+
+CREATE TABLE IF NOT EXISTS mail_outbox (
+  mail_id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+  sender VARCHAR(255) NOT NULL,
+  recipient VARCHAR(255) NOT NULL,
+  subject VARCHAR(255),
+  content TEXT,
+  status VARCHAR(255) NOT NULL CHECK (status IN ('PENDING', 'SENDING', 'SENT', 'FAILED')),
+  attempts INTEGER NOT NULL,
+  created_at TIMESTAMP(6) NOT NULL,
+  next_attempt_at TIMESTAMP(6) NOT NULL,
+  sent_at TIMESTAMP(6),
+  last_error VARCHAR(1000),
+  PRIMARY KEY (mail_id)
+);
+
+CREATE TABLE IF NOT EXISTS job_watermark (
+  job_name VARCHAR(255) NOT NULL,
+  watermark DATE NOT NULL,
+  last_end_date DATE,
+  last_book_id INTEGER,
+  last_customer_id INTEGER,
+  updated_at TIMESTAMP(6) NOT NULL,
+  PRIMARY KEY (job_name)
+);
@@ -0,0 +1,23 @@
+-- Vue matérialisée des prêts (LoanViewProjector), alimentée au démarrage si elle est vide (rebuildIfEmpty).
+-- IF NOT EXISTS : une base antérieure à Flyway a pu recevoir cette table à la main.
+
+CREATE TABLE IF NOT EXISTS loan_view (
+  book_id INTEGER NOT NULL,
+  customer_id INTEGER NOT NULL,
+  creation_date_time TIMESTAMP(6) NOT NULL,
+  book_title VARCHAR(255) NOT NULL,
+  book_isbn VARCHAR(255) NOT NULL,
+  customer_first_name VARCHAR(255),
+  customer_last_name VARCHAR(255),
+  customer_email VARCHAR(255),
+  email_key VARCHAR(255),
+  begin_date DATE NOT NULL,
+  end_date DATE NOT NULL,
+  status VARCHAR(255) CHECK (status IN ('OPEN', 'CLOSE')),
+  PRIMARY KEY (book_id, customer_id, creation_date_time)
+);
+CREATE INDEX IF NOT EXISTS idx_loan_view_email_status ON loan_view (email_key, status);
+CREATE INDEX IF NOT EXISTS idx_loan_view_end_date ON loan_view (end_date);
+CREATE INDEX IF NOT EXISTS idx_loan_view_customer ON loan_view (customer_id, begin_date);
+CREATE INDEX IF NOT EXISTS idx_loan_view_begin_date ON loan_view (begin_date, book_id, customer_id, creation_date_time);
+CREATE INDEX IF NOT EXISTS idx_loan_view_status_begin_date ON loan_view (status, begin_date, book_id, customer_id, creation_date_time);
@@ -0,0 +1,43 @@
+-- Passage de LOAN en table partitionnée (PostgreSQL 11 ou plus). Sans effet sur une base dont LOAN est déjà
+-- partitionnée (migrée à la main avant Flyway).
+--
+-- LOAN est partitionnée par liste sur ARCHIVED :
+--   loan_active  : prêts OPEN et prêts CLOSE récents, la seule partition lue par les requêtes courantes ;
+--   loan_archive : prêts CLOSE déplacés par le LoanArchiver, partitionnée par année de BEGIN_DATE
+--                  (les partitions loan_archive_<année> sont créées par le LoanArchiver au besoin).
+-- La clé primaire doit contenir les clés de partition : ARCHIVED et BEGIN_DATE y sont ajoutées.
+
+DO $$
+BEGIN
+  IF EXISTS (SELECT 1 FROM pg_partitioned_table p JOIN pg_class c ON c.oid = p.partrelid
+             WHERE c.relname = 'loan' AND c.relnamespace = current_schema()::regnamespace) THEN
+    RETURN;
+  END IF;
+
+  ALTER TABLE loan RENAME TO loan_unpartitioned;
+  ALTER TABLE loan_unpartitioned RENAME CONSTRAINT loan_pkey TO loan_unpartitioned_pkey;
+
+  CREATE TABLE loan (
+    book_id INTEGER NOT NULL REFERENCES book (book_id),
+    customer_id INTEGER NOT NULL REFERENCES customer (customer_id),
+    creation_date_time TIMESTAMP(6) NOT NULL,
+    begin_date DATE NOT NULL,
+    end_date DATE NOT NULL,
+    status VARCHAR(255) CHECK (status IN ('OPEN', 'CLOSE')),
+    archived BOOLEAN NOT NULL DEFAULT FALSE,
+    PRIMARY KEY (book_id, customer_id, creation_date_time, archived, begin_date)
+  ) PARTITION BY LIST (archived);
+
+  CREATE TABLE loan_active PARTITION OF loan FOR VALUES IN (FALSE);
+  CREATE TABLE loan_archive PARTITION OF loan FOR VALUES IN (TRUE) PARTITION BY RANGE (begin_date);
+
+  -- tout repart dans la partition active, le premier passage du LoanArchiver fera le tri
+  INSERT INTO loan (book_id, customer_id, creation_date_time, begin_date, end_date, status, archived)
+  SELECT book_id, customer_id, creation_date_time, begin_date, end_date, status, FALSE
+  FROM loan_unpartitioned;
+
+  DROP TABLE loan_unpartitioned;
+
+  ANALYZE loan;
+END
+$$;
@@ -0,0 +1,22 @@
+-- Index des requêtes des repositories (vérifiés par RepositoryQueryPlanTests : aucune ne doit lire une table
+-- en entier). Les recherches insensibles à la casse comparent LOWER(colonne) à LOWER(paramètre), d'où les
+-- index sur expression.
+
+-- pg_trgm est une extension "trusted" : le propriétaire de la base peut l'installer
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX IF NOT EXISTS idx_customer_email_lower ON customer (LOWER(email));
+CREATE INDEX IF NOT EXISTS idx_customer_last_name_lower ON customer (LOWER(last_name));
+
+CREATE INDEX IF NOT EXISTS idx_book_isbn_lower ON book (LOWER(isbn));
+CREATE INDEX IF NOT EXISTS idx_book_cat_code ON book (cat_code);
+-- LIKE '%...%' sur le titre : un B-tree ne sert pas avec un joker en tête, un index trigramme si
+CREATE INDEX IF NOT EXISTS idx_book_title_trgm ON book USING GIN (LOWER(title) gin_trgm_ops);
+
+-- échéancier des prêts ouverts (scan des retards), créé sur chaque partition de LOAN
+CREATE INDEX IF NOT EXISTS idx_loan_open_end_date ON loan (end_date, book_id, customer_id) WHERE status = 'OPEN';
+-- prêts d'un client, et contrôle de la clé étrangère à la suppression d'un client
+CREATE INDEX IF NOT EXISTS idx_loan_customer_status ON loan (customer_id, status);
+
+CREATE INDEX IF NOT EXISTS idx_mail_outbox_due ON mail_outbox (next_attempt_at) WHERE status IN ('PENDING', 'SENDING');
+CREATE INDEX IF NOT EXISTS idx_mail_outbox_status ON mail_outbox (status);
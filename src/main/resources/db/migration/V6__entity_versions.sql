@@ -0,0 +1,5 @@
+-- Versions optimistes (@Version) de BOOK, CUSTOMER et CATEGORY, sources des ETag des lectures.
+-- Une valeur par défaut constante n'oblige pas PostgreSQL à réécrire la table.
+ALTER TABLE book ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE customer ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE category ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,9 @@
+-- Email et ISBN sont des clés insensibles à la casse : les recherches comparent déjà LOWER(colonne), l'import
+-- en masse fusionne sur ON CONFLICT ((LOWER(colonne))). Les index sur expression de V5 deviennent uniques.
+-- Si des doublons à la casse près existent déjà, la migration échoue : ils sont à fusionner à la main avant.
+
+DROP INDEX IF EXISTS idx_customer_email_lower;
+CREATE UNIQUE INDEX IF NOT EXISTS ux_customer_email_lower ON customer (LOWER(email));
+
+DROP INDEX IF EXISTS idx_book_isbn_lower;
+CREATE UNIQUE INDEX IF NOT EXISTS ux_book_isbn_lower ON book (LOWER(isbn));
@@ -0,0 +1,21 @@
+package com.ulrich.library2;
+
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+/**
+ * Pour les tests qui tournent sur une base jetable : le schéma est vidé puis recréé par les migrations Flyway
+ * au démarrage du contexte, comme le faisait ddl-auto=create. Demande spring.flyway.clean-disabled=false.
+ */
+@TestConfiguration(proxyBeanMethods = false)
+public class CleanSchemaMigration {
+
+	@Bean
+	FlywayMigrationStrategy cleanMigrateStrategy() {
+		return flyway -> {
+			flyway.clean();
+			flyway.migrate();
+		};
+	}
+}
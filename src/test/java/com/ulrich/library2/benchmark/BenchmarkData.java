@@ -0,0 +1,86 @@
+package com.ulrich.library2.benchmark;
+
+import com.ulrich.library2.entity.book.Book;
+import com.ulrich.library2.entity.category.Category;
+import com.ulrich.library2.entity.customer.Customer;
+import com.ulrich.library2.entity.loan.Loan;
+import com.ulrich.library2.service.LoanId;
+import com.ulrich.library2.service.LoanStatus;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Entités remplies de façon déterministe (graine fixe) pour que deux exécutions mesurent les mêmes données.
+ */
+final class BenchmarkData {
+
+    private static final String[] CATEGORIES = {"ROMAN", "SCIENCE", "HISTOIRE", "JEUNESSE", "POLICIER"};
+
+    private static final String[] WORDS = {"le", "petit", "prince", "dune", "fondation", "nuit", "voyage", "mer",
+            "étranger", "guerre", "paix", "peste", "rouge", "noir", "misérables", "comte", "château", "montagne"};
+
+    private static final String[] LAST_NAMES = {"Martin", "Bernard", "Dubois", "Thomas", "Robert", "Richard",
+            "Petit", "Durand", "Leroy", "Moreau", "Simon", "Laurent", "Lefebvre", "Michel", "Garcia", "Élie"};
+
+    private final Random random;
+
+    BenchmarkData(long seed) {
+        this.random = new Random(seed);
+    }
+
+    List<Book> books(int count) {
+        List<Book> books = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Book book = new Book();
+            book.setId(i + 1);
+            book.setTitle(word() + " " + word() + " " + word());
+            book.setIsbn(String.format("978%010d", random.nextInt(1_000_000_000)));
+            book.setReleaseDate(LocalDate.of(1900 + random.nextInt(125), 1 + random.nextInt(12), 1 + random.nextInt(28)));
+            book.setRegisterDate(LocalDate.of(2020, 1, 1).plusDays(random.nextInt(2000)));
+            book.setTotalExamplaries(1 + random.nextInt(5));
+            book.setAuthor(LAST_NAMES[random.nextInt(LAST_NAMES.length)]);
+            String code = CATEGORIES[random.nextInt(CATEGORIES.length)];
+            book.setCategory(new Category(code, code.charAt(0) + code.substring(1).toLowerCase()));
+            books.add(book);
+        }
+        return books;
+    }
+
+    List<Customer> customers(int count) {
+        List<Customer> customers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Customer customer = new Customer();
+            customer.setId(i + 1);
+            customer.setFirstName(LAST_NAMES[random.nextInt(LAST_NAMES.length)]);
+            customer.setLastName(LAST_NAMES[random.nextInt(LAST_NAMES.length)] + i);
+            customer.setJob("Job " + random.nextInt(50));
+            customer.setAddress(random.nextInt(200) + " rue " + word());
+            customer.setEmail("customer" + i + "@library.test");
+            customer.setCreationDate(LocalDateTime.now());
+            customers.add(customer);
+        }
+        return customers;
+    }
+
+    List<Loan> loans(List<Book> books, List<Customer> customers, int count) {
+        List<Loan> loans = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Loan loan = new Loan();
+            loan.setPk(new LoanId(books.get(random.nextInt(books.size())), customers.get(random.nextInt(customers.size()))));
+            LocalDate beginDate = LocalDate.of(2024, 1, 1).plusDays(random.nextInt(700));
+            loan.setBeginDate(beginDate);
+            loan.setEndDate(beginDate.plusDays(21));
+            loan.setStatus(random.nextInt(4) == 0 ? LoanStatus.OPEN : LoanStatus.CLOSE);
+            loans.add(loan);
+        }
+        return loans;
+    }
+
+    private String word() {
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+}
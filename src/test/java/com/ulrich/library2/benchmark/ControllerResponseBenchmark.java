@@ -0,0 +1,126 @@
+package com.ulrich.library2.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.ulrich.library2.controller.BookDTO;
+import com.ulrich.library2.controller.CustomerDTO;
+import com.ulrich.library2.controller.LoanDTO;
+import com.ulrich.library2.entity.book.Book;
+import com.ulrich.library2.entity.customer.Customer;
+import com.ulrich.library2.entity.loan.Loan;
+import com.ulrich.library2.mapper.BookMapper;
+import com.ulrich.library2.mapper.CategoryMapper;
+import com.ulrich.library2.mapper.CustomerMapper;
+import com.ulrich.library2.mapper.LoanMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Travail CPU d'une réponse REST hors base de données : mapping entités -> DTO tel que fait dans les
+ * controllers, puis sérialisation Jackson de la liste avec la configuration de Spring Boot.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ControllerResponseBenchmark {
+
+    @Param({"10", "1000"})
+    private int size;
+
+    private List<Book> books;
+
+    private List<Customer> customers;
+
+    private List<Loan> loans;
+
+    private List<BookDTO> bookDTOs;
+
+    private List<CustomerDTO> customerDTOs;
+
+    private List<LoanDTO> loanDTOs;
+
+    private BookMapper bookMapper;
+
+    private CustomerMapper customerMapper;
+
+    private LoanMapper loanMapper;
+
+    private ObjectMapper objectMapper;
+
+    @Setup
+    public void setUp() {
+        BenchmarkData data = new BenchmarkData(42);
+        books = data.books(size);
+        customers = data.customers(size);
+        loans = data.loans(books, customers, size);
+        bookMapper = new BookMapper(new CategoryMapper());
+        customerMapper = new CustomerMapper();
+        loanMapper = new LoanMapper();
+        bookDTOs = books.stream().map(bookMapper::toBookDTO).collect(Collectors.toList());
+        customerDTOs = customers.stream().map(customerMapper::toCustomerDTO).collect(Collectors.toList());
+        loanDTOs = loans.stream().map(loanMapper::toLoanDTO).collect(Collectors.toList());
+        // mêmes réglages que l'ObjectMapper de Spring Boot (JavaTimeModule, dates ISO)
+        objectMapper = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+    }
+
+    @Benchmark
+    public List<BookDTO> mapBooks() {
+        return books.stream().map(bookMapper::toBookDTO).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<CustomerDTO> mapCustomers() {
+        return customers.stream().map(customerMapper::toCustomerDTO).collect(Collectors.toList());
+    }
+
+    /**
+     * Chemin de LoanRestController.mapLoanDtosFromLoans : mapping puis tri.
+     */
+    @Benchmark
+    public List<LoanDTO> mapAndSortLoans() {
+        return loans.stream().map(loanMapper::toLoanDTO).sorted().collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public byte[] serializeBookDtos() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(bookDTOs);
+    }
+
+    @Benchmark
+    public byte[] serializeCustomerDtos() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(customerDTOs);
+    }
+
+    @Benchmark
+    public byte[] serializeLoanDtos() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(loanDTOs);
+    }
+
+    /**
+     * Réponse complète de /searchByTitle une fois les livres trouvés.
+     */
+    @Benchmark
+    public byte[] searchByTitleResponse() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(books.stream().map(bookMapper::toBookDTO).collect(Collectors.toList()));
+    }
+}
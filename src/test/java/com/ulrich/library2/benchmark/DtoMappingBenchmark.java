@@ -0,0 +1,151 @@
+package com.ulrich.library2.benchmark;
+
+import com.ulrich.library2.controller.BookDTO;
+import com.ulrich.library2.controller.CategoryDTO;
+import com.ulrich.library2.controller.CustomerDTO;
+import com.ulrich.library2.entity.book.Book;
+import com.ulrich.library2.entity.category.Category;
+import com.ulrich.library2.entity.customer.Customer;
+import com.ulrich.library2.mapper.BookMapper;
+import com.ulrich.library2.mapper.CategoryMapper;
+import com.ulrich.library2.mapper.CustomerMapper;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare le mapping par ModelMapper créé à chaque appel (ancien chemin des controllers)
+ * avec les mappers écrits à la main. Lancer main() pour obtenir aussi l'allocation par opération (gc.alloc.rate.norm).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DtoMappingBenchmark {
+
+    private Book book;
+
+    private BookDTO bookDTO;
+
+    private Customer customer;
+
+    private Category category;
+
+    private BookMapper bookMapper;
+
+    private CustomerMapper customerMapper;
+
+    private CategoryMapper categoryMapper;
+
+    @Setup
+    public void setUp() {
+        category = new Category("ROMAN", "Roman");
+        book = new Book();
+        book.setId(1);
+        book.setTitle("Le Petit Prince");
+        book.setIsbn("9782070612758");
+        book.setReleaseDate(LocalDate.of(1943, 4, 6));
+        book.setRegisterDate(LocalDate.now());
+        book.setTotalExamplaries(3);
+        book.setAuthor("Antoine de Saint-Exupéry");
+        book.setCategory(category);
+
+        bookDTO = new BookDTO();
+        bookDTO.setId(1);
+        bookDTO.setTitle(book.getTitle());
+        bookDTO.setIsbn(book.getIsbn());
+        bookDTO.setReleaseDate(book.getReleaseDate());
+        bookDTO.setTotalExamplaries(3);
+        bookDTO.setAuthor(book.getAuthor());
+        bookDTO.setCategory(new CategoryDTO("ROMAN", "Roman"));
+
+        customer = new Customer();
+        customer.setId(1);
+        customer.setFirstName("Test");
+        customer.setLastName("User");
+        customer.setJob("Dev");
+        customer.setAddress("Rue Test");
+        customer.setEmail("test@test.com");
+        customer.setCreationDate(LocalDateTime.now());
+
+        categoryMapper = new CategoryMapper();
+        bookMapper = new BookMapper(categoryMapper);
+        customerMapper = new CustomerMapper();
+    }
+
+    @Benchmark
+    public BookDTO bookToDtoModelMapper() {
+        ModelMapper mapper = new ModelMapper();
+        BookDTO dto = mapper.map(book, BookDTO.class);
+        dto.setCategory(new CategoryDTO(book.getCategory().getCode(), book.getCategory().getLabel()));
+        return dto;
+    }
+
+    @Benchmark
+    public BookDTO bookToDtoPrecompiled() {
+        return bookMapper.toBookDTO(book);
+    }
+
+    @Benchmark
+    public Book dtoToBookModelMapper() {
+        ModelMapper mapper = new ModelMapper();
+        Book result = mapper.map(bookDTO, Book.class);
+        result.setCategory(new Category(bookDTO.getCategory().getCode(), bookDTO.getCategory().getLabel()));
+        result.setRegisterDate(LocalDate.now());
+        return result;
+    }
+
+    @Benchmark
+    public Book dtoToBookPrecompiled() {
+        return bookMapper.toBook(bookDTO);
+    }
+
+    @Benchmark
+    public CustomerDTO customerToDtoModelMapper() {
+        ModelMapper mapper = new ModelMapper();
+        return mapper.map(customer, CustomerDTO.class);
+    }
+
+    @Benchmark
+    public CustomerDTO customerToDtoPrecompiled() {
+        return customerMapper.toCustomerDTO(customer);
+    }
+
+    @Benchmark
+    public CategoryDTO categoryToDtoModelMapper() {
+        ModelMapper mapper = new ModelMapper();
+        return mapper.map(category, CategoryDTO.class);
+    }
+
+    @Benchmark
+    public CategoryDTO categoryToDtoPrecompiled() {
+        return categoryMapper.toCategoryDTO(category);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(DtoMappingBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,76 @@
+package com.ulrich.library2.benchmark;
+
+import com.ulrich.library2.controller.BookDTO;
+import com.ulrich.library2.controller.CustomerDTO;
+import com.ulrich.library2.controller.LoanDTO;
+import com.ulrich.library2.entity.book.Book;
+import com.ulrich.library2.entity.customer.Customer;
+import com.ulrich.library2.mapper.BookMapper;
+import com.ulrich.library2.mapper.CategoryMapper;
+import com.ulrich.library2.mapper.CustomerMapper;
+import com.ulrich.library2.mapper.LoanMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Tri des DTO par leur compareTo (titre, nom et date de début, insensibles à la casse pour les deux premiers),
+ * comme dans les controllers. Les listes sources ne sont jamais triées : chaque appel trie le même désordre.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DtoSortingBenchmark {
+
+    @Param({"100", "10000"})
+    private int size;
+
+    private List<BookDTO> bookDTOs;
+
+    private List<CustomerDTO> customerDTOs;
+
+    private List<LoanDTO> loanDTOs;
+
+    @Setup
+    public void setUp() {
+        BenchmarkData data = new BenchmarkData(42);
+        List<Book> books = data.books(size);
+        List<Customer> customers = data.customers(size);
+        BookMapper bookMapper = new BookMapper(new CategoryMapper());
+        CustomerMapper customerMapper = new CustomerMapper();
+        LoanMapper loanMapper = new LoanMapper();
+        bookDTOs = books.stream().map(bookMapper::toBookDTO).collect(Collectors.toList());
+        customerDTOs = customers.stream().map(customerMapper::toCustomerDTO).collect(Collectors.toList());
+        loanDTOs = data.loans(books, customers, size).stream().map(loanMapper::toLoanDTO).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<BookDTO> sortBookDtos() {
+        return bookDTOs.stream().sorted().collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<CustomerDTO> sortCustomerDtos() {
+        return customerDTOs.stream().sorted().collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<LoanDTO> sortLoanDtos() {
+        return loanDTOs.stream().sorted().collect(Collectors.toList());
+    }
+}
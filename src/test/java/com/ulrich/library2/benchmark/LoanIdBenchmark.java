@@ -0,0 +1,93 @@
+package com.ulrich.library2.benchmark;
+
+import com.ulrich.library2.entity.book.Book;
+import com.ulrich.library2.entity.customer.Customer;
+import com.ulrich.library2.service.LoanId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * hashCode/equals de la clé composite LoanId sur des entités Book et Customer entièrement renseignées :
+ * c'est le coût payé par Hibernate à chaque recherche dans le contexte de persistance.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoanIdBenchmark {
+
+    private static final int SET_SIZE = 10_000;
+
+    private LoanId loanId;
+
+    private LoanId sameLoanId;
+
+    private LoanId otherLoanId;
+
+    private Set<LoanId> loanIds;
+
+    private LoanId[] lookups;
+
+    private int next;
+
+    @Setup
+    public void setUp() {
+        BenchmarkData data = new BenchmarkData(42);
+        List<Book> books = data.books(1000);
+        List<Customer> customers = data.customers(1000);
+        loanId = new LoanId(books.get(0), customers.get(0));
+        // mêmes valeurs, instances distinctes : equals doit descendre dans Book et Customer
+        Book bookCopy = data.books(1).get(0);
+        bookCopy.setId(books.get(0).getId());
+        bookCopy.setIsbn(books.get(0).getIsbn());
+        Customer customerCopy = data.customers(1).get(0);
+        customerCopy.setId(customers.get(0).getId());
+        customerCopy.setEmail(customers.get(0).getEmail());
+        sameLoanId = new LoanId(bookCopy, customerCopy);
+        otherLoanId = new LoanId(books.get(0), customers.get(1));
+
+        loanIds = new HashSet<>();
+        lookups = new LoanId[SET_SIZE];
+        for (int i = 0; i < SET_SIZE; i++) {
+            LoanId id = new LoanId(books.get(i % books.size()), customers.get((i * 7) % customers.size()));
+            loanIds.add(id);
+            lookups[i] = id;
+        }
+    }
+
+    @Benchmark
+    public int hashCodePopulated() {
+        return loanId.hashCode();
+    }
+
+    @Benchmark
+    public boolean equalsSameValues() {
+        return loanId.equals(sameLoanId);
+    }
+
+    @Benchmark
+    public boolean equalsOtherCustomer() {
+        return loanId.equals(otherLoanId);
+    }
+
+    @Benchmark
+    public boolean hashSetLookup() {
+        next = (next + 1) % SET_SIZE;
+        return loanIds.contains(lookups[next]);
+    }
+}
@@ -0,0 +1,52 @@
+package com.ulrich.library2.config;
+
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BoundedWaitDataSourceTests {
+
+	/**
+	 * Deux threads bloqués dans le pool épuisent la file : le troisième est refusé sans attendre, et la place se
+	 * libère dès qu'un des deux obtient sa connexion.
+	 */
+	@Test
+	void rejectsRequestsBeyondTheWaitingLimit() throws Exception {
+		Connection connection = mock(Connection.class);
+		CountDownLatch poolExhausted = new CountDownLatch(1);
+		CountDownLatch waiting = new CountDownLatch(2);
+		DataSource pool = mock(DataSource.class);
+		when(pool.getConnection()).thenAnswer(invocation -> {
+			waiting.countDown();
+			poolExhausted.await();
+			return connection;
+		});
+		BoundedWaitDataSource dataSource = new BoundedWaitDataSource(pool, 2);
+
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			Future<Connection> first = executor.submit(() -> dataSource.getConnection());
+			Future<Connection> second = executor.submit(() -> dataSource.getConnection());
+			assertTrue(waiting.await(5, TimeUnit.SECONDS));
+
+			assertThrows(SQLTransientConnectionException.class, dataSource::getConnection);
+
+			poolExhausted.countDown();
+			assertSame(connection, first.get(5, TimeUnit.SECONDS));
+			assertSame(connection, second.get(5, TimeUnit.SECONDS));
+		}
+		assertSame(connection, dataSource.getConnection());
+	}
+}
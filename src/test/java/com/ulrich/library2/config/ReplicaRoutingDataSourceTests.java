@@ -0,0 +1,94 @@
+package com.ulrich.library2.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Deux PostgreSQL embarqués, l'un primaire, l'un réplica : le port du serveur qui répond indique où la requête est partie.
+ */
+class ReplicaRoutingDataSourceTests {
+
+	private static final String SERVER_PORT = "SELECT inet_server_port()";
+
+	private EmbeddedPostgres primary;
+
+	private EmbeddedPostgres replica;
+
+	private ReplicaRoutingDataSource dataSource;
+
+	@BeforeEach
+	void startDatabases() throws IOException {
+		primary = EmbeddedPostgres.builder().start();
+		replica = EmbeddedPostgres.builder().start();
+	}
+
+	@AfterEach
+	void stopDatabases() throws IOException {
+		dataSource.close();
+		primary.close();
+		replica.close();
+	}
+
+	@Test
+	void routesReadOnlyTransactionsToTheReplica() {
+		dataSource = routingDataSource(1000);
+		dataSource.checkReplicationLag();
+
+		assertEquals(replica.getPort(), serverPort(true));
+		assertEquals(primary.getPort(), serverPort(false));
+		// hors transaction : primaire
+		assertEquals(primary.getPort(), new JdbcTemplate(dataSource).queryForObject(SERVER_PORT, Integer.class));
+	}
+
+	@Test
+	void fallsBackToThePrimaryWhenTheReplicaIsDown() throws IOException {
+		dataSource = routingDataSource(1000);
+		dataSource.checkReplicationLag();
+		assertEquals(1, dataSource.getAvailableReplicas());
+
+		replica.close();
+		dataSource.checkReplicationLag();
+
+		assertEquals(0, dataSource.getAvailableReplicas());
+		assertEquals(primary.getPort(), serverPort(true));
+	}
+
+	@Test
+	void skipsAReplicaThatLagsBehind() {
+		// aucun retard n'est acceptable : même à jour, le réplica est écarté
+		dataSource = routingDataSource(-1);
+		dataSource.checkReplicationLag();
+
+		assertEquals(0, dataSource.getAvailableReplicas());
+		assertEquals(primary.getPort(), serverPort(true));
+	}
+
+	private int serverPort(boolean readOnly) {
+		TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+		transactionTemplate.setReadOnly(readOnly);
+		return transactionTemplate.execute(status -> new JdbcTemplate(dataSource).queryForObject(SERVER_PORT, Integer.class));
+	}
+
+	private ReplicaRoutingDataSource routingDataSource(long maxLagMs) {
+		return new ReplicaRoutingDataSource(pool(primary), Map.of("replica", pool(replica)), maxLagMs, 3_600_000);
+	}
+
+	private static HikariDataSource pool(EmbeddedPostgres postgres) {
+		HikariDataSource pool = new HikariDataSource();
+		pool.setJdbcUrl(postgres.getJdbcUrl("postgres", "postgres"));
+		pool.setConnectionTimeout(1000);
+		pool.setInitializationFailTimeout(-1);
+		return pool;
+	}
+}
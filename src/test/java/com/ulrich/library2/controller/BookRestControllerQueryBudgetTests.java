@@ -0,0 +1,123 @@
+package com.ulrich.library2.controller;
+
+import com.ulrich.library2.mapper.BookMapper;
+import com.ulrich.library2.service.BookServiceImpl;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+
+import java.time.LocalDate;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class BookRestControllerQueryBudgetTests extends QueryBudgetTestSupport {
+
+	@Autowired
+	private BookServiceImpl bookService;
+
+	@Autowired
+	private BookMapper bookMapper;
+
+	/**
+	 * Servie par l'index des titres en mémoire.
+	 */
+	@Test
+	void searchByTitle() throws Exception {
+		assertQueryBudget(0, getJson("/rest/book/api/searchByTitle").param("title", "saga"), status().isOk());
+	}
+
+	@Test
+	void searchByIsbn() throws Exception {
+		assertQueryBudget(2, getJson("/rest/book/api/searchByIsbn").param("isbn", isbn(1)), status().isOk());
+	}
+
+	@Test
+	void searchByIsbnNotModified() throws Exception {
+		String etag = etag(getJson("/rest/book/api/searchByIsbn").param("isbn", isbn(1)));
+		assertQueryBudget(2, getJson("/rest/book/api/searchByIsbn").param("isbn", isbn(1)).header(HttpHeaders.IF_NONE_MATCH, etag),
+				status().isNotModified());
+	}
+
+	@Test
+	void addBookWithKnownIsbn() throws Exception {
+		assertQueryBudget(2, postJson("/rest/book/api/addBook", bookJson(null, isbn(2), "Saga tome 2")), status().isConflict());
+	}
+
+	/**
+	 * La catégorie vient du registre : ni lecture ni écriture de CATEGORY.
+	 */
+	@Test
+	void addBook() throws Exception {
+		assertQueryBudget(3, postJson("/rest/book/api/addBook", bookJson(null, "QB-NEW", "Saga hors série")), status().isCreated());
+	}
+
+	/**
+	 * Existence, lecture du livre, UPDATE de BOOK et report dans la vue des prêts : aucune requête sur CATEGORY.
+	 */
+	@Test
+	void updateBook() throws Exception {
+		assertQueryBudget(4, putJson("/rest/book/api/updateBook", bookJson(bookId(3), isbn(3), "Saga tome 3")), status().isOk());
+	}
+
+	/**
+	 * Lecture du livre, UPDATE du seul titre, report du titre dans la vue des prêts.
+	 */
+	@Test
+	void addBookWithUnknownCategory() throws Exception {
+		mockMvc.perform(postJson("/rest/book/api/addBook", bookJson(null, "QB-NOCAT", "Saga perdue").replace("ROMAN", "INCONNUE")))
+				.andExpect(status().isBadRequest());
+	}
+
+	@Test
+	void patchBook() throws Exception {
+		assertQueryBudget(3, patchJson("/rest/book/api/patchBook/{bookId}", "{\"title\":\"Saga tome 5 revu\"}", bookId(5)),
+				status().isOk());
+	}
+
+	/**
+	 * L'ETag lu avant la première modification ne correspond plus à la seconde : refus sans écriture.
+	 */
+	@Test
+	void patchBookWithStaleIfMatch() throws Exception {
+		String etag = etag(getJson("/rest/book/api/searchByIsbn").param("isbn", isbn(6)));
+		mockMvc.perform(patchJson("/rest/book/api/patchBook/{bookId}", "{\"author\":\"Auteur revu\"}", bookId(6))
+				.header(HttpHeaders.IF_MATCH, etag)).andExpect(status().isOk());
+		assertQueryBudget(1, patchJson("/rest/book/api/patchBook/{bookId}", "{\"author\":\"Autre auteur\"}", bookId(6))
+				.header(HttpHeaders.IF_MATCH, etag), status().isPreconditionFailed());
+	}
+
+	@Test
+	void deleteBook() throws Exception {
+		jdbcTemplate.update("INSERT INTO book (title, isbn, release_date, register_date, total_examplaries, author, cat_code) "
+				+ "VALUES ('Pilon', 'QB-DELETE', CURRENT_DATE, CURRENT_DATE, 1, 'Auteur', 'ROMAN')");
+		Integer bookId = jdbcTemplate.queryForObject("SELECT book_id FROM book WHERE isbn = 'QB-DELETE'", Integer.class);
+		assertQueryBudget(4, delete("/rest/book/api/deleteBook/{bookId}", bookId), status().isNoContent());
+	}
+
+	@Test
+	void importBooks() throws Exception {
+		String csv = "title,isbn,releaseDate,totalExamplaries,author,categoryCode\n"
+				+ "Import 1,QB-IMPORT-1,2020-01-01,2,Auteur,ROMAN\n"
+				+ "Import 2,QB-IMPORT-2,2020-01-01,2,Auteur,SCIENCE\n";
+		assertQueryBudget(7, post("/rest/book/api/importBooks").contentType("text/csv").content(csv), status().isOk());
+	}
+
+	@Test
+	void booksByCategory() throws Exception {
+		assertQueryBudget(1, "getBooksByCategory",
+				() -> bookService.getBooksByCategory("ROMAN").stream().map(bookMapper::toBookDTO).toList());
+	}
+
+	@Test
+	void exportBooks() throws Exception {
+		assertQueryBudget(1, "forEachBook", () -> bookService.forEachBook(bookMapper::toBookDTO));
+	}
+
+	private static String bookJson(Integer id, String isbn, String title) {
+		return "{" + (id == null ? "" : "\"id\":" + id + ",") + "\"title\":\"" + title + "\",\"isbn\":\"" + isbn
+				+ "\",\"releaseDate\":\"2001-01-01\",\"registerDate\":\"" + LocalDate.now() + "\",\"totalExamplaries\":3,"
+				+ "\"author\":\"Auteur\",\"category\":{\"code\":\"ROMAN\",\"label\":\"Roman\"}}";
+	}
+}
@@ -0,0 +1,24 @@
+package com.ulrich.library2.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class CategoryRestControllerQueryBudgetTests extends QueryBudgetTestSupport {
+
+	@Test
+	void allCategories() throws Exception {
+		assertQueryBudget(1, getJson("/rest/category/api/allCategories"), status().isOk());
+	}
+
+	@Test
+	void allCategoriesNotModified() throws Exception {
+		String etag = etag(getJson("/rest/category/api/allCategories"));
+		assertQueryBudget(1, getJson("/rest/category/api/allCategories").header(HttpHeaders.IF_NONE_MATCH, etag),
+				status().isNotModified());
+		mockMvc.perform(getJson("/rest/category/api/allCategories").header(HttpHeaders.IF_NONE_MATCH, etag))
+				.andExpect(content().string(""));
+	}
+}
@@ -0,0 +1,41 @@
+package com.ulrich.library2.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Le frontend est servi depuis une autre origine : ETag n'est lisible par le navigateur (pour le renvoyer dans
+ * If-Match) que s'il figure dans Access-Control-Expose-Headers.
+ */
+class CrossOriginEtagTests extends QueryBudgetTestSupport {
+
+	private static final String FRONTEND_ORIGIN = "http://localhost:5173";
+
+	@Test
+	void bookEtagIsExposed() throws Exception {
+		assertEtagExposed(getJson("/rest/book/api/searchByIsbn").param("isbn", isbn(1)));
+	}
+
+	@Test
+	void customerEtagIsExposed() throws Exception {
+		assertEtagExposed(getJson("/rest/customer/api/searchByEmail").param("email", email(1)));
+	}
+
+	@Test
+	void categoriesEtagIsExposed() throws Exception {
+		assertEtagExposed(getJson("/rest/category/api/allCategories"));
+	}
+
+	private void assertEtagExposed(MockHttpServletRequestBuilder request) throws Exception {
+		mockMvc.perform(request.header(HttpHeaders.ORIGIN, FRONTEND_ORIGIN))
+				.andExpect(status().isOk())
+				.andExpect(header().exists(HttpHeaders.ETAG))
+				.andExpect(header().string(HttpHeaders.ACCESS_CONTROL_ALLOW_ORIGIN, FRONTEND_ORIGIN))
+				.andExpect(header().string(HttpHeaders.ACCESS_CONTROL_EXPOSE_HEADERS, containsString(HttpHeaders.ETAG)));
+	}
+}
@@ -0,0 +1,126 @@
+package com.ulrich.library2.controller;
+
+import com.ulrich.library2.mapper.CustomerMapper;
+import com.ulrich.library2.service.CustomerServiceImpl;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+
+import static org.hamcrest.Matchers.not;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class CustomerRestControllerQueryBudgetTests extends QueryBudgetTestSupport {
+
+	@Autowired
+	private CustomerServiceImpl customerService;
+
+	@Autowired
+	private CustomerMapper customerMapper;
+
+	@Test
+	void addCustomer() throws Exception {
+		assertQueryBudget(2, postJson("/rest/customer/api/addCustomer", customerJson(null, "new@budget.test")), status().isCreated());
+	}
+
+	@Test
+	void updateCustomer() throws Exception {
+		assertQueryBudget(5, putJson("/rest/customer/api/updateCustomer", customerJson(customerId(3), email(3))), status().isOk());
+	}
+
+	@Test
+	void patchCustomer() throws Exception {
+		assertQueryBudget(2, patchJson("/rest/customer/api/patchCustomer/{customerId}", "{\"job\":\"Enseignant\"}", customerId(5)),
+				status().isOk());
+	}
+
+	@Test
+	void deleteCustomer() throws Exception {
+		jdbcTemplate.update("INSERT INTO customer (first_name, last_name, job, address, email, creation_date) "
+				+ "VALUES ('Partant', 'Budget', 'Lecteur', 'Ailleurs', 'delete@budget.test', LOCALTIMESTAMP)");
+		Integer customerId = jdbcTemplate.queryForObject("SELECT customer_id FROM customer WHERE email = 'delete@budget.test'", Integer.class);
+		assertQueryBudget(4, delete("/rest/customer/api/deleteCustomer/{customerId}", customerId), status().isNoContent());
+	}
+
+	@Test
+	void paginatedSearch() throws Exception {
+		assertQueryBudget(2, getJson("/rest/customer/api/paginatedSearch").param("beginPage", "0").param("endPage", "5"), status().isOk());
+	}
+
+	@Test
+	void cursorSearch() throws Exception {
+		assertQueryBudget(2, getJson("/rest/customer/api/paginatedSearch").param("size", "5").param("withTotal", "true"), status().isOk());
+	}
+
+	@Test
+	void searchByEmail() throws Exception {
+		assertQueryBudget(1, getJson("/rest/customer/api/searchByEmail").param("email", email(1)), status().isOk());
+	}
+
+	@Test
+	void searchByEmailNotModified() throws Exception {
+		String etag = etag(getJson("/rest/customer/api/searchByEmail").param("email", email(1)));
+		assertQueryBudget(1, getJson("/rest/customer/api/searchByEmail").param("email", email(1)).header(HttpHeaders.IF_NONE_MATCH, etag),
+				status().isNotModified());
+	}
+
+	/**
+	 * La mise à jour incrémente la version : l'ancien ETag ne correspond plus.
+	 */
+	@Test
+	void searchByEmailAfterUpdate() throws Exception {
+		String etag = etag(getJson("/rest/customer/api/searchByEmail").param("email", email(4)));
+		mockMvc.perform(putJson("/rest/customer/api/updateCustomer", customerJson(customerId(4), email(4)))).andExpect(status().isOk());
+		mockMvc.perform(getJson("/rest/customer/api/searchByEmail").param("email", email(4)).header(HttpHeaders.IF_NONE_MATCH, etag))
+				.andExpect(status().isOk())
+				.andExpect(header().string(HttpHeaders.ETAG, not(etag)));
+	}
+
+	@Test
+	void searchByLastName() throws Exception {
+		assertQueryBudget(1, getJson("/rest/customer/api/searchByLastName").param("lastName", LAST_NAME), status().isOk());
+	}
+
+	@Test
+	void sendEmailToCustomer() throws Exception {
+		assertQueryBudget(2, putJson("/rest/customer/api/sendEmailToCustomer", "{\"customerId\":" + customerId(1)
+				+ ",\"emailSubject\":\"Rappel\",\"emailContent\":\"Bonjour\"}"), status().isOk());
+	}
+
+	@Test
+	void importCustomers() throws Exception {
+		String csv = "firstName,lastName,job,address,email\n"
+				+ "Import,Budget,Lecteur,Ici,import1@budget.test\n"
+				+ "Import,Budget,Lecteur,Ici,import2@budget.test\n";
+		assertQueryBudget(4, post("/rest/customer/api/importCustomers").contentType("text/csv").content(csv), status().isOk());
+	}
+
+	@Test
+	void importCustomersRejectsEmailsDifferingOnlyByCase() throws Exception {
+		String csv = "firstName,lastName,job,address,email\n"
+				+ "Import,Casse,Lecteur,Ici,Casse@budget.test\n"
+				+ "Import,Casse,Lecteur,Ici,casse@budget.test\n"
+				+ "Import,Casse,Lecteur,Ici," + email(3).toUpperCase() + "\n"
+				+ "Import,Casse,Lecteur,Ici,casse2@budget.test\n";
+		mockMvc.perform(post("/rest/customer/api/importCustomers").contentType("text/csv").content(csv))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.rowsInserted").value(1))
+				.andExpect(jsonPath("$.rowsRejected").value(3))
+				.andExpect(jsonPath("$.errors[0].row").value(1))
+				.andExpect(jsonPath("$.errors[2].row").value(3));
+	}
+
+	@Test
+	void exportCustomers() throws Exception {
+		assertQueryBudget(1, "forEachCustomer", () -> customerService.forEachCustomer(customerMapper::toCustomerDTO));
+	}
+
+	private static String customerJson(Integer id, String email) {
+		return "{" + (id == null ? "" : "\"id\":" + id + ",") + "\"firstName\":\"Client\",\"lastName\":\"" + LAST_NAME
+				+ "\",\"job\":\"Lecteur\",\"address\":\"1 rue des Tests\",\"email\":\"" + email
+				+ "\",\"creationDate\":\"2024-01-01T10:00:00\"}";
+	}
+}
@@ -0,0 +1,151 @@
+package com.ulrich.library2.controller;
+
+import com.jayway.jsonpath.JsonPath;
+import com.ulrich.library2.mapper.LoanMapper;
+import com.ulrich.library2.service.LoanServiceImpl;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class LoanRestControllerQueryBudgetTests extends QueryBudgetTestSupport {
+
+	@Autowired
+	private LoanServiceImpl loanService;
+
+	@Autowired
+	private LoanMapper loanMapper;
+
+	/**
+	 * Titres et clients sont recopiés dans LOAN_VIEW : une seule requête, sans jointure, quel que soit le nombre de prêts.
+	 */
+	@Test
+	void maxEndDate() throws Exception {
+		assertQueryBudget(1, getJson("/rest/loan/api/maxEndDate").param("date", LocalDate.now().plusMonths(2).toString()), status().isOk());
+	}
+
+	@Test
+	void customerLoans() throws Exception {
+		assertQueryBudget(1, getJson("/rest/loan/api/customerLoans").param("email", email(1)), status().isOk());
+	}
+
+	/**
+	 * Une requête par page quelle que soit sa profondeur, et les pages s'enchaînent sans doublon ni trou.
+	 */
+	@Test
+	void searchLoans() throws Exception {
+		List<Integer> bookIds = new ArrayList<>();
+		MvcResult[] page = new MvcResult[1];
+		String cursor = null;
+		do {
+			MockHttpServletRequestBuilder request = getJson("/rest/loan/api/searchLoans")
+					.param("email", email(1)).param("status", "OPEN").param("size", "3");
+			if (cursor != null) {
+				request.param("cursor", cursor);
+			}
+			assertQueryBudget(1, "searchLoans", () -> page[0] = mockMvc.perform(request).andExpect(status().isOk()).andReturn());
+			String body = page[0].getResponse().getContentAsString();
+			bookIds.addAll(JsonPath.read(body, "$.content[*].bookDTO.id"));
+			cursor = JsonPath.read(body, "$.nextCursor");
+		} while (cursor != null);
+		assertEquals(ROWS_PER_RESULT, bookIds.size());
+		assertEquals(ROWS_PER_RESULT, new HashSet<>(bookIds).size());
+	}
+
+	@Test
+	void availability() throws Exception {
+		assertQueryBudget(2, getJson("/rest/loan/api/availability").param("bookId", bookId(1).toString()), status().isOk());
+	}
+
+	/**
+	 * Chaque écriture sur un prêt reporte aussi son état dans LOAN_VIEW : une requête de plus.
+	 */
+	@Test
+	void addAndCloseLoan() throws Exception {
+		String loan = loanJson(bookId(ROWS_PER_RESULT), customerId(2));
+		assertQueryBudget(8, postJson("/rest/loan/api/addLoan", loan), status().isCreated());
+		assertQueryBudget(7, postJson("/rest/loan/api/closeLoan", loan), status().isOk());
+	}
+
+	@Test
+	void addLoanForUnknownCustomer() throws Exception {
+		assertQueryBudget(3, postJson("/rest/loan/api/addLoan", loanJson(bookId(1), -1)), status().isNotFound());
+	}
+
+	/**
+	 * Quatre lectures ensemblistes puis un batch par type d'écriture, quel que soit le nombre d'opérations.
+	 * Le lot est joué dans l'ordre : le retour du livre 1 libère l'exemplaire emprunté ensuite.
+	 */
+	@Test
+	void circulation() throws Exception {
+		jdbcTemplate.update("UPDATE book SET total_examplaries = 2 WHERE book_id = ?", bookId(1));
+		StringBuilder batch = new StringBuilder("[");
+		for (int i = 2; i <= 6; i++) {
+			batch.append(operationJson("CHECKOUT", bookId(i), customerId(3))).append(',');
+		}
+		batch.append(operationJson("CHECKOUT", bookId(1), customerId(3))).append(',')
+				.append(operationJson("CHECKOUT", bookId(1), customerId(4))).append(',')
+				.append(operationJson("RETURN", bookId(1), customerId(1))).append(',')
+				.append(operationJson("CHECKOUT", bookId(1), customerId(4))).append(',')
+				.append(operationJson("RENEW", bookId(2), customerId(1))).append(',')
+				.append(operationJson("CHECKOUT", bookId(2), customerId(3))).append(',')
+				.append(operationJson("RETURN", bookId(7), customerId(5)))
+				.append(']');
+		try {
+			assertQueryBudget(7, post("/rest/loan/api/circulation").contentType(MediaType.APPLICATION_JSON).content(batch.toString()),
+					result -> {
+						status().isOk().match(result);
+						jsonPath("$[0].result").value("CREATED").match(result);
+						jsonPath("$[5].result").value("CREATED").match(result);
+						jsonPath("$[6].result").value("NO_COPY_AVAILABLE").match(result);
+						jsonPath("$[7].result").value("CLOSED").match(result);
+						jsonPath("$[8].result").value("CREATED").match(result);
+						jsonPath("$[9].result").value("RENEWED").match(result);
+						jsonPath("$[10].result").value("ALREADY_LOANED").match(result);
+						jsonPath("$[11].result").value("NO_OPEN_LOAN").match(result);
+					});
+			assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM loan WHERE book_id = ? AND status = 'OPEN'",
+					Integer.class, bookId(1)));
+			assertEquals(LocalDate.now().plusDays(42), jdbcTemplate.queryForObject("SELECT end_date FROM loan_view "
+					+ "WHERE book_id = ? AND customer_id = ? AND status = 'OPEN'", LocalDate.class, bookId(2), customerId(1)));
+		} finally {
+			// remet les prêts partagés par les autres tests dans leur état initial
+			jdbcTemplate.update("DELETE FROM loan WHERE customer_id IN (?, ?) AND status = 'OPEN'", customerId(3), customerId(4));
+			jdbcTemplate.update("DELETE FROM loan_view WHERE customer_id IN (?, ?) AND status = 'OPEN'", customerId(3), customerId(4));
+			// seul le prêt ouvert le jour même a été rendu : le prêt CLOSE du jeu de données reste fermé
+			jdbcTemplate.update("UPDATE loan SET status = 'OPEN', end_date = CURRENT_DATE + 21 "
+					+ "WHERE book_id = ? AND customer_id = ? AND begin_date = CURRENT_DATE", bookId(1), customerId(1));
+			jdbcTemplate.update("UPDATE loan_view SET status = 'OPEN', end_date = CURRENT_DATE + 21 "
+					+ "WHERE book_id = ? AND customer_id = ? AND begin_date = CURRENT_DATE", bookId(1), customerId(1));
+			jdbcTemplate.update("UPDATE book SET total_examplaries = 3 WHERE book_id = ?", bookId(1));
+			jdbcTemplate.update("UPDATE loan SET end_date = CURRENT_DATE + 20 WHERE book_id = ? AND customer_id = ?", bookId(2), customerId(1));
+			jdbcTemplate.update("UPDATE loan_view SET end_date = CURRENT_DATE + 20 WHERE book_id = ? AND customer_id = ?", bookId(2), customerId(1));
+		}
+	}
+
+	@Test
+	void exportLoans() throws Exception {
+		assertQueryBudget(1, "forEachLoan", () -> loanService.forEachLoan(loanMapper::toLoanDTO));
+	}
+
+	private static String operationJson(String type, Integer bookId, Integer customerId) {
+		return "{\"type\":\"" + type + "\",\"bookId\":" + bookId + ",\"customerId\":" + customerId + ",\"beginDate\":\""
+				+ LocalDate.now() + "\",\"endDate\":\"" + LocalDate.now().plusDays("RENEW".equals(type) ? 42 : 21) + "\"}";
+	}
+
+	private static String loanJson(Integer bookId, Integer customerId) {
+		return "{\"bookId\":" + bookId + ",\"customerId\":" + customerId + ",\"beginDate\":\"" + LocalDate.now()
+				+ "\",\"endDate\":\"" + LocalDate.now().plusDays(21) + "\"}";
+	}
+}
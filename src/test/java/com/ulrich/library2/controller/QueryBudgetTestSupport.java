@@ -0,0 +1,219 @@
+package com.ulrich.library2.controller;
+
+import com.ulrich.library2.CleanSchemaMigration;
+import com.ulrich.library2.service.BookAvailabilityCounters;
+import com.ulrich.library2.service.BookServiceImpl;
+import com.ulrich.library2.service.CategoryServiceImpl;
+import com.ulrich.library2.service.LoanViewProjector;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultMatcher;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+
+/**
+ * Socle des tests de budget de requêtes : chaque appel d'un endpoint est exécuté avec le cache de second niveau
+ * vidé, et le nombre de requêtes SQL qu'il envoie ne doit pas dépasser le budget fixé par le test. Un N+1
+ * introduit dans un mapping ou une relation paresseuse fait donc échouer le build.
+ *
+ * Les tests tournent contre un PostgreSQL embarqué (ou la base jetable indiquée par -Dquerybudget.datasource.url)
+ * et partagent le même contexte Spring et le même jeu de données.
+ */
+@SpringBootTest(properties = {
+		"spring.flyway.clean-disabled=false",
+		"spring.jpa.show-sql=false",
+		"library.loan.overdue.cron=-",
+		"library.loan.archive.cron=-",
+		"library.mail.outbox.poll-delay-ms=3600000"
+})
+@AutoConfigureMockMvc
+@Import({QueryCounter.DataSourceProxyConfiguration.class, CleanSchemaMigration.class})
+abstract class QueryBudgetTestSupport {
+
+	static final String LAST_NAME = "Budget";
+
+	/**
+	 * Assez de lignes par résultat pour qu'une requête par ligne dépasse nettement tout budget.
+	 */
+	static final int ROWS_PER_RESULT = 8;
+
+	private static EmbeddedPostgres embeddedPostgres;
+
+	private static boolean seeded;
+
+	@Autowired
+	protected MockMvc mockMvc;
+
+	@Autowired
+	protected JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	@Autowired
+	private BookServiceImpl bookService;
+
+	@Autowired
+	private CategoryServiceImpl categoryService;
+
+	@Autowired
+	private BookAvailabilityCounters availabilityCounters;
+
+	@Autowired
+	private LoanViewProjector loanViewProjector;
+
+	@DynamicPropertySource
+	static void datasource(DynamicPropertyRegistry registry) {
+		String url = System.getProperty("querybudget.datasource.url");
+		if (url != null) {
+			// base existante : elle doit être jetable, le schéma y est vidé puis recréé par les migrations
+			registry.add("spring.datasource.url", () -> url);
+			registry.add("spring.datasource.username", () -> System.getProperty("querybudget.datasource.username", ""));
+			registry.add("spring.datasource.password", () -> System.getProperty("querybudget.datasource.password", ""));
+			return;
+		}
+		registry.add("spring.datasource.url", () -> embeddedPostgres().getJdbcUrl("postgres", "postgres"));
+		registry.add("spring.datasource.username", () -> "postgres");
+		registry.add("spring.datasource.password", () -> "");
+	}
+
+	/**
+	 * Une seule instance pour toute la JVM : le contexte Spring est mis en cache et partagé entre les classes de test.
+	 */
+	private static synchronized EmbeddedPostgres embeddedPostgres() {
+		if (embeddedPostgres == null) {
+			try {
+				embeddedPostgres = EmbeddedPostgres.builder().start();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+				try {
+					embeddedPostgres.close();
+				} catch (IOException e) {
+					// arrêt de la JVM : rien à faire
+				}
+			}));
+		}
+		return embeddedPostgres;
+	}
+
+	@BeforeEach
+	void prepare() {
+		synchronized (QueryBudgetTestSupport.class) {
+			if (!seeded) {
+				seed();
+				seeded = true;
+			}
+		}
+		entityManagerFactory.getCache().evictAll();
+		availabilityCounters.clear();
+	}
+
+	/**
+	 * Trois catégories, des livres "Saga", des clients "Budget" et, pour le premier client, un prêt ouvert
+	 * par livre ; les autres clients ont chacun un prêt rendu.
+	 */
+	private void seed() {
+		jdbcTemplate.update("INSERT INTO category (code, label) VALUES ('ROMAN', 'Roman'), ('POLICIER', 'Policier'), ('SCIENCE', 'Science-fiction')");
+		String[] categories = {"ROMAN", "POLICIER", "SCIENCE"};
+		LocalDate today = LocalDate.now();
+		for (int i = 1; i <= ROWS_PER_RESULT; i++) {
+			jdbcTemplate.update("INSERT INTO book (title, isbn, release_date, register_date, total_examplaries, author, cat_code) "
+							+ "VALUES (?, ?, ?, ?, 3, ?, ?)", "Saga tome " + i, isbn(i), Date.valueOf(today.minusYears(i)),
+					Date.valueOf(today), "Auteur " + i, categories[i % categories.length]);
+			jdbcTemplate.update("INSERT INTO customer (first_name, last_name, job, address, email, creation_date) "
+					+ "VALUES (?, ?, 'Lecteur', ?, ?, LOCALTIMESTAMP)", "Client" + i, LAST_NAME, i + " rue des Tests", email(i));
+		}
+		List<Integer> bookIds = jdbcTemplate.queryForList("SELECT book_id FROM book ORDER BY book_id", Integer.class);
+		List<Integer> customerIds = jdbcTemplate.queryForList("SELECT customer_id FROM customer ORDER BY customer_id", Integer.class);
+		for (int i = 0; i < ROWS_PER_RESULT; i++) {
+			insertLoan(bookIds.get(i), customerIds.get(0), today.minusDays(i), "OPEN");
+			insertLoan(bookIds.get(i), customerIds.get(i), today.minusDays(60 + i), "CLOSE");
+		}
+		bookService.buildTitleIndex();
+		categoryService.loadCategoryRegistry();
+		loanViewProjector.rebuild();
+	}
+
+	private void insertLoan(Integer bookId, Integer customerId, LocalDate beginDate, String status) {
+		jdbcTemplate.update("INSERT INTO loan (book_id, customer_id, creation_date_time, begin_date, end_date, status) "
+						+ "VALUES (?, ?, ?, ?, ?, ?)", bookId, customerId, java.sql.Timestamp.valueOf(beginDate.atTime(10, 0)),
+				Date.valueOf(beginDate), Date.valueOf(beginDate.plusDays(21)), status);
+	}
+
+	static String isbn(int index) {
+		return "QB-" + index;
+	}
+
+	static String email(int index) {
+		return "client" + index + "@budget.test";
+	}
+
+	Integer bookId(int index) {
+		return jdbcTemplate.queryForObject("SELECT book_id FROM book WHERE isbn = ?", Integer.class, isbn(index));
+	}
+
+	Integer customerId(int index) {
+		return jdbcTemplate.queryForObject("SELECT customer_id FROM customer WHERE email = ?", Integer.class, email(index));
+	}
+
+	/**
+	 * Exécute la requête HTTP, vérifie son statut puis son budget de requêtes SQL.
+	 */
+	void assertQueryBudget(int budget, MockHttpServletRequestBuilder request, ResultMatcher expectedStatus) throws Exception {
+		assertQueryBudget(budget, "The request", () -> mockMvc.perform(request).andExpect(expectedStatus));
+	}
+
+	void assertQueryBudget(int budget, String call, Callable<?> action) throws Exception {
+		List<String> statements = QueryCounter.record(action);
+		assertTrue(statements.size() <= budget, () -> call + " sent " + statements.size() + " SQL statements for a budget of "
+				+ budget + ":\n  " + String.join("\n  ", statements));
+	}
+
+	/**
+	 * ETag renvoyé par une première lecture, à rejouer dans If-None-Match.
+	 */
+	String etag(MockHttpServletRequestBuilder request) throws Exception {
+		return mockMvc.perform(request).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+	}
+
+	static MockHttpServletRequestBuilder getJson(String uri, Object... uriVariables) {
+		return get(uri, uriVariables).accept(MediaType.APPLICATION_JSON);
+	}
+
+	static MockHttpServletRequestBuilder postJson(String uri, String body) {
+		return post(uri).contentType(MediaType.APPLICATION_JSON).content(body);
+	}
+
+	static MockHttpServletRequestBuilder putJson(String uri, String body) {
+		return put(uri).contentType(MediaType.APPLICATION_JSON).content(body);
+	}
+
+	static MockHttpServletRequestBuilder patchJson(String uri, String body, Object... uriVariables) {
+		return patch(uri, uriVariables).contentType(MediaType.APPLICATION_JSON).content(body);
+	}
+}
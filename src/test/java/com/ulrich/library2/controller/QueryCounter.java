@@ -0,0 +1,101 @@
+package com.ulrich.library2.controller;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+import javax.sql.DataSource;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Compte les requêtes SQL envoyées par le thread courant pendant un appel (requête MockMvc ou appel de
+ * service). Seul le thread qui enregistre est compté : les tâches planifiées de l'application ne
+ * faussent pas les mesures.
+ */
+class QueryCounter implements QueryExecutionListener {
+
+	private static final ThreadLocal<List<RecordedStatement>> RECORDING = new ThreadLocal<>();
+
+	/**
+	 * Exécute l'action et retourne les requêtes qu'elle a envoyées, dans l'ordre. Un batch JDBC compte pour
+	 * un seul aller-retour.
+	 */
+	static List<String> record(Callable<?> action) throws Exception {
+		return recordStatements(action).stream().map(RecordedStatement::describe).toList();
+	}
+
+	/**
+	 * Comme record(), en gardant les paramètres liés à chaque requête (le premier jeu pour un batch).
+	 */
+	static List<RecordedStatement> recordStatements(Callable<?> action) throws Exception {
+		List<RecordedStatement> statements = new ArrayList<>();
+		RECORDING.set(statements);
+		try {
+			action.call();
+		} finally {
+			RECORDING.remove();
+		}
+		return statements;
+	}
+
+	@Override
+	public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+	}
+
+	@Override
+	public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+		List<RecordedStatement> statements = RECORDING.get();
+		if (statements != null) {
+			QueryInfo queryInfo = queryInfoList.isEmpty() ? null : queryInfoList.get(0);
+			List<ParameterSetOperation> parameters = queryInfo == null || queryInfo.getParametersList().isEmpty()
+					? List.of() : List.copyOf(queryInfo.getParametersList().get(0));
+			statements.add(new RecordedStatement(queryInfo == null ? "?" : queryInfo.getQuery(),
+					execInfo.isBatch() ? execInfo.getBatchSize() : 0, parameters));
+		}
+	}
+
+	/**
+	 * Requête envoyée, avec les appels setXxx() qui ont lié ses paramètres : elle peut être rejouée, sous EXPLAIN
+	 * par exemple.
+	 */
+	record RecordedStatement(String sql, int batchSize, List<ParameterSetOperation> parameters) {
+
+		String describe() {
+			return batchSize > 0 ? "[batch x" + batchSize + "] " + sql : sql;
+		}
+
+		void bind(PreparedStatement preparedStatement) throws Exception {
+			for (ParameterSetOperation parameter : parameters) {
+				parameter.getMethod().invoke(preparedStatement, parameter.getArgs());
+			}
+		}
+	}
+
+	/**
+	 * Enveloppe la DataSource de l'application dans le proxy qui alimente le compteur.
+	 */
+	@TestConfiguration(proxyBeanMethods = false)
+	static class DataSourceProxyConfiguration {
+
+		@Bean
+		static BeanPostProcessor queryCountingDataSourcePostProcessor() {
+			return new BeanPostProcessor() {
+				@Override
+				public Object postProcessAfterInitialization(Object bean, String beanName) {
+					if (bean instanceof DataSource dataSource) {
+						return ProxyDataSourceBuilder.create(dataSource).name(beanName).listener(new QueryCounter()).build();
+					}
+					return bean;
+				}
+			};
+		}
+	}
+}
@@ -0,0 +1,187 @@
+package com.ulrich.library2.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ulrich.library2.repository.IBookDao;
+import com.ulrich.library2.repository.IJobWatermarkDao;
+import com.ulrich.library2.repository.ICustomerDao;
+import com.ulrich.library2.repository.ILoanDao;
+import com.ulrich.library2.repository.ILoanViewDao;
+import com.ulrich.library2.repository.IMailOutboxDao;
+import com.ulrich.library2.service.LoanStatus;
+import com.ulrich.library2.service.MailStatus;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.repository.support.Repositories;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.reflect.Method;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Chaque requête déclarée dans un repository est rejouée sous EXPLAIN, parcours séquentiel désactivé : si
+ * PostgreSQL lit malgré tout une table en entier (Seq Scan), aucun index ne sert la requête et le test échoue.
+ * Une nouvelle méthode de repository doit être ajoutée ici, ou parmi les lectures complètes assumées.
+ *
+ * S'appuie sur le schéma migré par Flyway et le jeu de données des tests de budget de requêtes.
+ */
+class RepositoryQueryPlanTests extends QueryBudgetTestSupport {
+
+	/**
+	 * Lectures de toute la table par construction : chargement des caches, exports et recalculs.
+	 */
+	private static final Set<String> FULL_SCANS = Set.of(
+			"IBookDao.findAllViews",
+			"IBookDao.findAllTotalExamplaries",
+			"IBookDao.streamAllOrderById",
+			"ICategoryDao.findAllCached",
+			"ICustomerDao.streamAllOrderById",
+			"ILoanDao.countByStatusGroupByBook",
+			"ILoanDao.streamAllWithBookAndCustomer");
+
+	private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+	@Autowired
+	private ApplicationContext applicationContext;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Autowired
+	private IBookDao bookDao;
+
+	@Autowired
+	private ICustomerDao customerDao;
+
+	@Autowired
+	private ILoanDao loanDao;
+
+	@Autowired
+	private ILoanViewDao loanViewDao;
+
+	@Autowired
+	private IMailOutboxDao mailOutboxDao;
+
+	@Autowired
+	private IJobWatermarkDao jobWatermarkDao;
+
+	@Test
+	void repositoryQueriesUseAnIndex() throws Exception {
+		Map<String, Callable<?>> calls = repositoryCalls();
+
+		List<String> uncovered = new ArrayList<>();
+		Repositories repositories = new Repositories(applicationContext);
+		repositories.forEach(domainType -> {
+			Class<?> repository = repositories.getRequiredRepositoryInformation(domainType).getRepositoryInterface();
+			for (Method method : repository.getDeclaredMethods()) {
+				String name = repository.getSimpleName() + "." + method.getName();
+				if (!method.isSynthetic() && !calls.containsKey(name) && !FULL_SCANS.contains(name)) {
+					uncovered.add(name);
+				}
+			}
+		});
+		assertTrue(uncovered.isEmpty(), () -> "Repository queries without a plan check: " + uncovered);
+
+		TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+		List<String> seqScans = new ArrayList<>();
+		for (Map.Entry<String, Callable<?>> call : calls.entrySet()) {
+			// la transaction couvre les verrous demandés par certaines requêtes, et n'écrit rien
+			List<QueryCounter.RecordedStatement> statements = transactionTemplate.execute(status -> {
+				status.setRollbackOnly();
+				try {
+					return QueryCounter.recordStatements(call.getValue());
+				} catch (Exception e) {
+					throw new IllegalStateException(call.getKey() + " failed", e);
+				}
+			});
+			assertTrue(!statements.isEmpty(), () -> call.getKey() + " sent no SQL statement");
+			for (QueryCounter.RecordedStatement statement : statements) {
+				List<String> relations = seqScannedRelations(statement);
+				if (!relations.isEmpty()) {
+					seqScans.add(call.getKey() + " reads " + relations + " sequentially:\n    " + statement.sql());
+				}
+			}
+		}
+		assertTrue(seqScans.isEmpty(), () -> String.join("\n  ", seqScans));
+	}
+
+	private Map<String, Callable<?>> repositoryCalls() {
+		LocalDate today = LocalDate.now();
+		Integer bookId = bookId(1);
+		Integer customerId = customerId(1);
+		Map<String, Callable<?>> calls = new LinkedHashMap<>();
+		calls.put("IBookDao.findByIsbnIgnoreCase", () -> bookDao.findByIsbnIgnoreCase(isbn(1).toLowerCase()));
+		calls.put("IBookDao.findCachedByIsbnIgnoreCase", () -> bookDao.findCachedByIsbnIgnoreCase(isbn(2).toLowerCase()));
+		calls.put("IBookDao.findViewsByTitleLike", () -> bookDao.findViewsByTitleLike("%TOME 3%"));
+		calls.put("IBookDao.findViewsByCategory", () -> bookDao.findViewsByCategory("ROMAN"));
+		calls.put("IBookDao.findViewsByIdIn", () -> bookDao.findViewsByIdIn(List.of(bookId)));
+		calls.put("IBookDao.findByIdForUpdate", () -> bookDao.findByIdForUpdate(bookId));
+		calls.put("ICustomerDao.findCustomerByEmailIgnoreCase", () -> customerDao.findCustomerByEmailIgnoreCase(email(1).toUpperCase()));
+		calls.put("ICustomerDao.findCachedCustomerByEmailIgnoreCase", () -> customerDao.findCachedCustomerByEmailIgnoreCase(email(2).toUpperCase()));
+		calls.put("ICustomerDao.findViewsByLastName", () -> customerDao.findViewsByLastName(LAST_NAME.toUpperCase()));
+		calls.put("ICustomerDao.findViewByEmail", () -> customerDao.findViewByEmail(email(3)));
+		calls.put("ICustomerDao.findCachedViewByEmail", () -> customerDao.findCachedViewByEmail(email(4)));
+		calls.put("ICustomerDao.findByIdGreaterThanOrderByIdAsc", () -> customerDao.findByIdGreaterThanOrderByIdAsc(customerId, Limit.of(3)));
+		calls.put("ILoanDao.getLoanByCriteria", () -> loanDao.getLoanByCriteria(bookId, customerId, LoanStatus.OPEN));
+		calls.put("ILoanDao.countByBookAndStatus", () -> loanDao.countByBookAndStatus(bookId, LoanStatus.OPEN));
+		calls.put("ILoanDao.findOpenOverdueLoansAfter", () -> loanDao.findOpenOverdueLoansAfter(today.minusDays(30), today,
+				today.minusDays(31), 0, 0, Limit.of(100)));
+		calls.put("ILoanViewDao.findByEndDateBeforeOrderByBeginDateDesc", () -> loanViewDao.findByEndDateBeforeOrderByBeginDateDesc(today.minusDays(30)));
+		calls.put("ILoanViewDao.findByEmailAndStatus", () -> loanViewDao.findByEmailAndStatus(email(1), LoanStatus.OPEN));
+		calls.put("IMailOutboxDao.findDueMailsForUpdate", () -> mailOutboxDao.findDueMailsForUpdate(LocalDateTime.now(), 10));
+		calls.put("IMailOutboxDao.markSent", () -> mailOutboxDao.markSent(List.of(-1L), MailStatus.SENT, LocalDateTime.now()));
+		calls.put("IJobWatermarkDao.insertIfAbsent", () -> jobWatermarkDao.insertIfAbsent("plan-check", today, LocalDateTime.now()));
+		calls.put("IJobWatermarkDao.findForUpdate", () -> jobWatermarkDao.findForUpdate("plan-check"));
+		calls.put("IMailOutboxDao.countByStatusIn", () -> mailOutboxDao.countByStatusIn(EnumSet.of(MailStatus.PENDING, MailStatus.SENDING)));
+		return calls;
+	}
+
+	/**
+	 * Tables lues par un Seq Scan dans le plan de la requête, avec ses paramètres d'origine. SET LOCAL : le
+	 * réglage disparaît avec la transaction, la connexion revient intacte dans le pool.
+	 */
+	private List<String> seqScannedRelations(QueryCounter.RecordedStatement statement) {
+		return new TransactionTemplate(transactionManager).execute(status -> {
+			status.setRollbackOnly();
+			return jdbcTemplate.execute((ConnectionCallback<List<String>>) connection -> {
+				connection.createStatement().execute("SET LOCAL enable_seqscan = off");
+				try (PreparedStatement explain = connection.prepareStatement("EXPLAIN (FORMAT JSON) " + statement.sql())) {
+					statement.bind(explain);
+					try (ResultSet plan = explain.executeQuery()) {
+						plan.next();
+						List<String> relations = new ArrayList<>();
+						collectSeqScans(OBJECT_MAPPER.readTree(plan.getString(1)).get(0).get("Plan"), relations);
+						return relations;
+					}
+				} catch (Exception e) {
+					throw new IllegalStateException("EXPLAIN failed for " + statement.sql(), e);
+				}
+			});
+		});
+	}
+
+	private static void collectSeqScans(JsonNode node, List<String> relations) {
+		if ("Seq Scan".equals(node.path("Node Type").asText())) {
+			relations.add(node.path("Relation Name").asText());
+		}
+		for (JsonNode child : node.path("Plans")) {
+			collectSeqScans(child, relations);
+		}
+	}
+}
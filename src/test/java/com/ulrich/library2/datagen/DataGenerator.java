@@ -0,0 +1,209 @@
+package com.ulrich.library2.datagen;
+
+import com.ulrich.library2.service.LoanViewProjector;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remplit les tables CATEGORY, BOOK, CUSTOMER et LOAN d'une base vide avec un jeu de données synthétique
+ * reproductible, pour les mesures de performance et les essais d'index à grande échelle.
+ *
+ * Les lignes sont découpées en tranches chargées en parallèle par COPY, chacune sur sa propre connexion et
+ * dans sa propre transaction. Le schéma doit déjà exister (démarrage de l'application ou migrations).
+ *
+ * mvn -Pdatagen verify -Ddatagen.url=jdbc:postgresql://localhost:5432/library2_perf -Ddatagen.loans=10000000
+ */
+public final class DataGenerator {
+
+	private static final String BOOK_COPY = "COPY book (book_id, title, isbn, release_date, register_date, "
+			+ "total_examplaries, author, cat_code) FROM STDIN WITH (FORMAT csv)";
+
+	private static final String CUSTOMER_COPY = "COPY customer (customer_id, first_name, last_name, job, address, "
+			+ "email, creation_date) FROM STDIN WITH (FORMAT csv)";
+
+	private static final String LOAN_COPY = "COPY loan (book_id, customer_id, creation_date_time, begin_date, "
+			+ "end_date, status) FROM STDIN WITH (FORMAT csv)";
+
+	private static final int BUFFER_CHARS = 1 << 16;
+
+	private final String url;
+
+	private final String user;
+
+	private final String password;
+
+	private final int books;
+
+	private final int customers;
+
+	private final long loans;
+
+	private final int threads;
+
+	private final int chunkRows;
+
+	private final boolean truncate;
+
+	private final SyntheticRows rows;
+
+	private DataGenerator() {
+		this.url = setting("url", "jdbc:postgresql://localhost:5432/library2");
+		this.user = setting("username", "library2");
+		this.password = setting("password", "password123");
+		this.books = Integer.parseInt(setting("books", "100000"));
+		this.customers = Integer.parseInt(setting("customers", "50000"));
+		this.loans = Long.parseLong(setting("loans", "1000000"));
+		this.threads = Integer.parseInt(setting("threads", Integer.toString(Runtime.getRuntime().availableProcessors())));
+		this.chunkRows = Integer.parseInt(setting("chunk-rows", "250000"));
+		this.truncate = Boolean.parseBoolean(setting("truncate", "false"));
+		String today = setting("today", null);
+		this.rows = new SyntheticRows(Long.parseLong(setting("seed", "42")),
+				today == null ? LocalDate.now() : LocalDate.parse(today), books, customers);
+	}
+
+	public static void main(String[] args) throws Exception {
+		new DataGenerator().run();
+	}
+
+	private static String setting(String name, String defaultValue) {
+		return System.getProperty("datagen." + name, defaultValue);
+	}
+
+	private void run() throws SQLException, InterruptedException, ExecutionException {
+		long start = System.nanoTime();
+		try (Connection connection = connect(); Statement statement = connection.createStatement()) {
+			if (truncate) {
+				statement.execute("TRUNCATE loan_view, loan, book, customer, category RESTART IDENTITY CASCADE");
+			} else {
+				try (ResultSet result = statement.executeQuery("SELECT EXISTS (SELECT 1 FROM book) OR EXISTS "
+						+ "(SELECT 1 FROM customer) OR EXISTS (SELECT 1 FROM loan) OR EXISTS (SELECT 1 FROM category)")) {
+					result.next();
+					if (result.getBoolean(1)) {
+						throw new IllegalStateException("Target database is not empty, rerun with -Ddatagen.truncate=true to replace its data");
+					}
+				}
+			}
+			try (PreparedStatement insert = connection.prepareStatement("INSERT INTO category (code, label) VALUES (?, ?)")) {
+				for (String[] category : SyntheticRows.CATEGORIES) {
+					insert.setString(1, category[0]);
+					insert.setString(2, category[1]);
+					insert.addBatch();
+				}
+				insert.executeBatch();
+			}
+		}
+		System.out.printf("Generating %d books, %d customers and %d loans on %d threads into %s%n",
+				books, customers, loans, threads, url);
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			// les prêts référencent livres et clients : ils ne sont chargés qu'une fois ces deux tables complètes
+			List<Future<?>> tasks = new ArrayList<>();
+			AtomicLong bookRows = new AtomicLong();
+			AtomicLong customerRows = new AtomicLong();
+			submitChunks(executor, tasks, "book", BOOK_COPY, 1, books,
+					(row, id) -> rows.appendBook(row, (int) id), bookRows);
+			submitChunks(executor, tasks, "customer", CUSTOMER_COPY, 1, customers,
+					(row, id) -> rows.appendCustomer(row, (int) id), customerRows);
+			await(tasks);
+			report("books", bookRows.get(), start);
+			report("customers", customerRows.get(), start);
+
+			tasks.clear();
+			AtomicLong loanRows = new AtomicLong();
+			submitChunks(executor, tasks, "loan", LOAN_COPY, 0, loans - 1, rows::appendLoan, loanRows);
+			await(tasks);
+			report("loans", loanRows.get(), start);
+		} finally {
+			executor.shutdownNow();
+		}
+
+		try (Connection connection = connect(); Statement statement = connection.createStatement()) {
+			// les identifiants ont été fournis explicitement : les séquences doivent reprendre après
+			statement.execute("SELECT setval(pg_get_serial_sequence('book', 'book_id'), " + Math.max(books, 1) + ")");
+			statement.execute("SELECT setval(pg_get_serial_sequence('customer', 'customer_id'), " + Math.max(customers, 1) + ")");
+			// la vue des prêts est remplie en une passe, comme au démarrage de l'application
+			statement.execute("SET synchronous_commit = off");
+			statement.execute(LoanViewProjector.REBUILD);
+			statement.execute("ANALYZE category, book, customer, loan, loan_view");
+		}
+		System.out.printf("Dataset ready in %.1f s%n", (System.nanoTime() - start) / 1e9);
+	}
+
+	private interface RowWriter {
+		void append(StringBuilder row, long id);
+	}
+
+	private void submitChunks(ExecutorService executor, List<Future<?>> tasks, String table, String copySql,
+							  long first, long last, RowWriter writer, AtomicLong loaded) {
+		for (long from = first; from <= last; from += chunkRows) {
+			long chunkFirst = from;
+			long chunkLast = Math.min(from + chunkRows - 1, last);
+			tasks.add(executor.submit(() -> {
+				copy(table, copySql, chunkFirst, chunkLast, writer);
+				loaded.addAndGet(chunkLast - chunkFirst + 1);
+				return null;
+			}));
+		}
+	}
+
+	private void copy(String table, String copySql, long first, long last, RowWriter rowWriter)
+			throws SQLException, IOException {
+		try (Connection connection = connect()) {
+			connection.setAutoCommit(false);
+			try (Statement statement = connection.createStatement()) {
+				// le chargement n'a pas besoin d'attendre le flush du WAL à chaque tranche
+				statement.execute("SET LOCAL synchronous_commit = off");
+			}
+			StringBuilder buffer = new StringBuilder(BUFFER_CHARS + 1024);
+			PGCopyOutputStream copyStream = new PGCopyOutputStream(connection.unwrap(PGConnection.class), copySql);
+			try (Writer writer = new OutputStreamWriter(copyStream, StandardCharsets.UTF_8)) {
+				for (long id = first; id <= last; id++) {
+					rowWriter.append(buffer, id);
+					if (buffer.length() >= BUFFER_CHARS) {
+						writer.append(buffer);
+						buffer.setLength(0);
+					}
+				}
+				writer.append(buffer);
+			} catch (IOException | RuntimeException e) {
+				connection.rollback();
+				throw new IllegalStateException("COPY into " + table + " failed for rows " + first + " to " + last, e);
+			}
+			connection.commit();
+		}
+	}
+
+	private static void await(List<Future<?>> tasks) throws InterruptedException, ExecutionException {
+		for (Future<?> task : tasks) {
+			task.get();
+		}
+	}
+
+	private static void report(String table, long count, long start) {
+		System.out.printf("  %,d %s loaded after %.1f s%n", count, table, (System.nanoTime() - start) / 1e9);
+	}
+
+	private Connection connect() throws SQLException {
+		return DriverManager.getConnection(url, user, password);
+	}
+}
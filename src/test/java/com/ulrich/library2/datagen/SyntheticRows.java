@@ -0,0 +1,183 @@
+package com.ulrich.library2.datagen;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.SplittableRandom;
+
+/**
+ * Génère les lignes CSV (format COPY) des tables BOOK, CUSTOMER et LOAN. Chaque ligne dépend uniquement de la
+ * graine et de son identifiant : le même jeu de données est produit quel que soit le découpage en threads.
+ *
+ * Les distributions imitent un vrai fonds de bibliothèque : quelques catégories et auteurs très représentés,
+ * des parutions surtout récentes, des emprunts concentrés sur les livres populaires et les derniers mois.
+ */
+class SyntheticRows {
+
+	static final String[][] CATEGORIES = {
+			{"ROMAN", "Roman"}, {"POLICIER", "Policier"}, {"JEUNESSE", "Jeunesse"}, {"BD", "Bande dessinée"},
+			{"SCIENCE", "Science-fiction"}, {"FANTASY", "Fantasy"}, {"HISTOIRE", "Histoire"},
+			{"BIOGRAPHIE", "Biographie"}, {"CUISINE", "Cuisine"}, {"VOYAGE", "Voyage"},
+			{"PHILOSOPHIE", "Philosophie"}, {"POESIE", "Poésie"}};
+
+	private static final String[] TITLE_WORDS = {"nuit", "mer", "ombre", "jardin", "maison", "voyage", "secret",
+			"hiver", "été", "mémoire", "lumière", "silence", "rivière", "montagne", "ville", "guerre", "paix",
+			"amour", "enfance", "retour", "dernier", "premier", "nouveau", "rouge", "noir", "bleu", "vent", "feu",
+			"île", "forêt", "étoile", "chemin", "porte", "lettre", "roi", "reine", "prince", "fille", "fils",
+			"frère", "sœur", "monde", "temps", "histoire", "chronique", "mystère", "cœur", "ciel", "terre", "sable"};
+
+	private static final String[] TITLE_LINKS = {"de la", "du", "des", "sous la", "sur le", "et le", "après la",
+			"avant le", "dans la", "contre le"};
+
+	private static final String[] FIRST_NAMES = {"Marie", "Jean", "Pierre", "Camille", "Louis", "Léa", "Lucas",
+			"Emma", "Hugo", "Chloé", "Nathan", "Manon", "Paul", "Sarah", "Jules", "Inès", "Arthur", "Zoé",
+			"Thomas", "Alice", "Nicolas", "Julie", "Antoine", "Claire", "Mohamed", "Fatima", "Yanis", "Amina"};
+
+	private static final String[] LAST_NAMES = {"Martin", "Bernard", "Thomas", "Petit", "Robert", "Richard",
+			"Durand", "Dubois", "Moreau", "Laurent", "Simon", "Michel", "Lefebvre", "Leroy", "Roux", "David",
+			"Bertrand", "Morel", "Fournier", "Girard", "Bonnet", "Dupont", "Lambert", "Fontaine", "Rousseau",
+			"Vincent", "Muller", "Lefèvre", "Faure", "André", "Mercier", "Blanc", "Guérin", "Boyer", "Garnier"};
+
+	private static final String[] JOBS = {"Étudiant", "Enseignant", "Ingénieur", "Retraité", "Infirmier",
+			"Commerçant", "Artisan", "Employé", "Cadre", "Sans emploi", "Médecin", "Avocat", "Journaliste"};
+
+	private static final String[] STREETS = {"rue de la République", "avenue Victor Hugo", "rue Pasteur",
+			"boulevard Gambetta", "rue Jean Jaurès", "place de la Mairie", "rue des Écoles", "chemin du Moulin"};
+
+	static final int LOAN_DAYS = 21;
+
+	private final long seed;
+
+	private final LocalDate today;
+
+	private final int books;
+
+	private final int customers;
+
+	private final int authors;
+
+	SyntheticRows(long seed, LocalDate today, int books, int customers) {
+		this.seed = seed;
+		this.today = today;
+		this.books = books;
+		this.customers = customers;
+		this.authors = Math.max(books / 8, 1);
+	}
+
+	/**
+	 * BOOK_ID, TITLE, ISBN, RELEASE_DATE, REGISTER_DATE, TOTAL_EXAMPLARIES, AUTHOR, CAT_CODE
+	 */
+	void appendBook(StringBuilder row, int bookId) {
+		SplittableRandom random = random(1, bookId);
+		String title = capitalize(pick(random, TITLE_WORDS, 1.6));
+		if (random.nextInt(3) > 0) {
+			title += " " + TITLE_LINKS[random.nextInt(TITLE_LINKS.length)] + " " + pick(random, TITLE_WORDS, 1.6);
+		}
+		if (random.nextInt(10) == 0) {
+			title += ", tome " + (1 + random.nextInt(7));
+		}
+		// parutions concentrées sur les vingt dernières années, avec une longue traîne jusqu'en 1850
+		LocalDate releaseDate = today.minusDays(Math.min((long) exponential(random, 365 * 15), 365L * 175));
+		LocalDate registerDate = today.minusDays(random.nextInt(365 * 10));
+		if (registerDate.isBefore(releaseDate)) {
+			registerDate = releaseDate;
+		}
+		int author = skewed(random, authors, 2.0);
+		row.append(bookId).append(',');
+		quote(row, title).append(',');
+		row.append(isbn13(bookId)).append(',')
+				.append(releaseDate).append(',')
+				.append(registerDate).append(',')
+				.append(1 + skewed(random, 8, 2.5)).append(',');
+		quote(row, FIRST_NAMES[author % FIRST_NAMES.length] + " " + LAST_NAMES[(author / FIRST_NAMES.length) % LAST_NAMES.length]
+				+ (author >= FIRST_NAMES.length * LAST_NAMES.length ? " " + author : "")).append(',');
+		row.append(CATEGORIES[skewed(random, CATEGORIES.length, 1.8)][0]).append('\n');
+	}
+
+	/**
+	 * CUSTOMER_ID, FIRST_NAME, LAST_NAME, JOB, ADDRESS, EMAIL, CREATION_DATE
+	 */
+	void appendCustomer(StringBuilder row, int customerId) {
+		SplittableRandom random = random(2, customerId);
+		String firstName = pick(random, FIRST_NAMES, 1.3);
+		String lastName = pick(random, LAST_NAMES, 1.3);
+		row.append(customerId).append(',');
+		quote(row, firstName).append(',');
+		quote(row, lastName).append(',');
+		quote(row, JOBS[random.nextInt(JOBS.length)]).append(',');
+		quote(row, (1 + random.nextInt(150)) + " " + STREETS[random.nextInt(STREETS.length)]).append(',');
+		quote(row, ascii(firstName) + "." + ascii(lastName) + "." + customerId + "@example.org").append(',');
+		row.append(today.minusDays(random.nextInt(365 * 8)).atTime(8 + random.nextInt(12), random.nextInt(60))).append('\n');
+	}
+
+	/**
+	 * BOOK_ID, CUSTOMER_ID, CREATION_DATE_TIME, BEGIN_DATE, END_DATE, STATUS
+	 */
+	void appendLoan(StringBuilder row, long loanNumber) {
+		SplittableRandom random = random(3, loanNumber);
+		int bookId = 1 + skewed(random, books, 3.0);
+		int customerId = 1 + skewed(random, customers, 2.0);
+		// la circulation décroît exponentiellement avec l'ancienneté (moyenne 9 mois, 5 ans au plus)
+		LocalDate beginDate = today.minusDays(Math.min((long) exponential(random, 270), 365L * 5));
+		LocalDate endDate = beginDate.plusDays(LOAN_DAYS);
+		String status;
+		if (endDate.isAfter(today)) {
+			status = "OPEN";
+		} else {
+			// environ 3 % des prêts échus ne sont jamais rendus
+			status = random.nextInt(100) < 3 ? "OPEN" : "CLOSE";
+		}
+		// l'index du prêt dans les microsecondes garantit l'unicité de la clé (livre, client, date de création)
+		LocalDateTime creation = beginDate.atTime(9 + random.nextInt(10), random.nextInt(60), random.nextInt(60))
+				.plusNanos((loanNumber % 1_000_000) * 1_000);
+		row.append(bookId).append(',')
+				.append(customerId).append(',')
+				.append(creation).append(',')
+				.append(beginDate).append(',')
+				.append(endDate).append(',')
+				.append(status).append('\n');
+	}
+
+	private SplittableRandom random(int table, long id) {
+		return new SplittableRandom(seed * 1_000_003L + table * 0x9E3779B97F4A7C15L + id);
+	}
+
+	/**
+	 * Indice dans [0, size) biaisé vers 0 : plus exponent est grand, plus les premiers éléments dominent.
+	 */
+	private static int skewed(SplittableRandom random, int size, double exponent) {
+		return Math.min((int) (size * Math.pow(random.nextDouble(), exponent)), size - 1);
+	}
+
+	private static String pick(SplittableRandom random, String[] values, double exponent) {
+		return values[skewed(random, values.length, exponent)];
+	}
+
+	private static double exponential(SplittableRandom random, double mean) {
+		return -mean * Math.log(1 - random.nextDouble());
+	}
+
+	/**
+	 * ISBN-13 valide (préfixe 978) construit à partir de l'identifiant.
+	 */
+	static String isbn13(int bookId) {
+		String digits = "978" + String.format("%09d", bookId);
+		int sum = 0;
+		for (int i = 0; i < 12; i++) {
+			sum += (digits.charAt(i) - '0') * (i % 2 == 0 ? 1 : 3);
+		}
+		return digits + (10 - sum % 10) % 10;
+	}
+
+	private static StringBuilder quote(StringBuilder row, String value) {
+		return row.append('"').append(value.replace("\"", "\"\"")).append('"');
+	}
+
+	private static String capitalize(String value) {
+		return Character.toUpperCase(value.charAt(0)) + value.substring(1);
+	}
+
+	private static String ascii(String value) {
+		return java.text.Normalizer.normalize(value, java.text.Normalizer.Form.NFD)
+				.replaceAll("\\p{M}", "").toLowerCase();
+	}
+}
@@ -0,0 +1,98 @@
+package com.ulrich.library2.loadtest;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+
+/**
+ * Jeu de données du test de charge, généré depuis une graine fixe. Les tirages suivent une règle 80/20 :
+ * 80 % des requêtes portent sur 20 % des livres et des clients, comme une vraie circulation.
+ */
+class LoadDataset {
+
+	static final int PAGE_SIZE = 20;
+
+	private static final String[][] CATEGORIES = {{"ROMAN", "Roman"}, {"SCIENCE", "Science-fiction"},
+			{"HISTOIRE", "Histoire"}, {"JEUNESSE", "Jeunesse"}, {"POLICIER", "Policier"}};
+
+	private static final String[] WORDS = {"prince", "dune", "fondation", "nuit", "voyage", "mer", "etranger",
+			"guerre", "paix", "peste", "rouge", "noir", "miserables", "comte", "chateau", "montagne", "ile",
+			"tresor", "ombre", "lumiere", "jardin", "vent", "etoile", "memoire"};
+
+	private final List<Integer> bookIds;
+
+	private final List<String> isbns;
+
+	private final List<Integer> customerIds;
+
+	private LoadDataset(List<Integer> bookIds, List<String> isbns, List<Integer> customerIds) {
+		this.bookIds = bookIds;
+		this.isbns = isbns;
+		this.customerIds = customerIds;
+	}
+
+	static LoadDataset seed(JdbcTemplate jdbcTemplate, int books, int customers, long seed) {
+		Random random = new Random(seed);
+		jdbcTemplate.batchUpdate("INSERT INTO category (code, label) VALUES (?, ?) ON CONFLICT DO NOTHING",
+				List.of(CATEGORIES).stream().map(category -> new Object[] {category[0], category[1]}).toList());
+
+		List<Object[]> bookRows = new ArrayList<>(books);
+		for (int i = 0; i < books; i++) {
+			String title = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " " + i;
+			bookRows.add(new Object[] {title, String.format("LT-%010d", i),
+					Date.valueOf(LocalDate.of(1900 + random.nextInt(125), 1 + random.nextInt(12), 1)),
+					Date.valueOf(LocalDate.now()), 1 + random.nextInt(5), "Author " + random.nextInt(books / 10 + 1),
+					CATEGORIES[random.nextInt(CATEGORIES.length)][0]});
+		}
+		jdbcTemplate.batchUpdate("INSERT INTO book (title, isbn, release_date, register_date, total_examplaries, "
+				+ "author, cat_code) VALUES (?, ?, ?, ?, ?, ?, ?)", bookRows);
+
+		List<Object[]> customerRows = new ArrayList<>(customers);
+		for (int i = 0; i < customers; i++) {
+			customerRows.add(new Object[] {"First" + i, "Last" + random.nextInt(customers / 5 + 1), "Job",
+					i + " rue du test", "loadtest" + i + "@library.test", Timestamp.valueOf(LocalDateTime.now())});
+		}
+		jdbcTemplate.batchUpdate("INSERT INTO customer (first_name, last_name, job, address, email, creation_date) "
+				+ "VALUES (?, ?, ?, ?, ?, ?)", customerRows);
+
+		return new LoadDataset(
+				jdbcTemplate.queryForList("SELECT book_id FROM book ORDER BY book_id", Integer.class),
+				jdbcTemplate.queryForList("SELECT isbn FROM book ORDER BY book_id", String.class),
+				jdbcTemplate.queryForList("SELECT customer_id FROM customer ORDER BY customer_id", Integer.class));
+	}
+
+	int randomBookId(SplittableRandom random) {
+		return bookIds.get(skewedIndex(random, bookIds.size()));
+	}
+
+	String randomIsbn(SplittableRandom random) {
+		return isbns.get(skewedIndex(random, isbns.size()));
+	}
+
+	int randomCustomerId(SplittableRandom random) {
+		return customerIds.get(skewedIndex(random, customerIds.size()));
+	}
+
+	String randomTitleWord(SplittableRandom random) {
+		return WORDS[random.nextInt(WORDS.length)];
+	}
+
+	int customerPages() {
+		return Math.max(customerIds.size() / PAGE_SIZE, 1);
+	}
+
+	private static int skewedIndex(SplittableRandom random, int size) {
+		int hotSetSize = Math.max(size / 5, 1);
+		if (random.nextInt(10) < 8) {
+			return random.nextInt(hotSetSize);
+		}
+		return random.nextInt(size);
+	}
+}
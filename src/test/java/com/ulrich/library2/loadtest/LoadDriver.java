@@ -0,0 +1,265 @@
+package com.ulrich.library2.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Générateur de charge en boucle ouverte : les requêtes partent à intervalles fixes quel que soit le temps
+ * de réponse, et la latence est mesurée depuis l'instant de départ prévu. Un serveur qui ralentit ne
+ * ralentit donc pas la charge et ses retards apparaissent dans les percentiles (pas d'omission coordonnée).
+ * runClosedLoop() joue au contraire un nombre fixe de clients simultanés, pour mesurer un niveau de concurrence.
+ */
+class LoadDriver {
+
+	private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+	private final HttpClient httpClient = HttpClient.newBuilder()
+			.executor(Executors.newVirtualThreadPerTaskExecutor())
+			.version(HttpClient.Version.HTTP_1_1)
+			.connectTimeout(Duration.ofSeconds(5))
+			.build();
+
+	private final String baseUrl;
+
+	private final LoadDataset dataset;
+
+	private final ConcurrentLinkedQueue<int[]> openLoans = new ConcurrentLinkedQueue<>();
+
+	LoadDriver(String baseUrl, LoadDataset dataset) {
+		this.baseUrl = baseUrl;
+		this.dataset = dataset;
+	}
+
+	/**
+	 * Résultat d'une phase : un histogramme de latence (en nanosecondes) et des compteurs par opération.
+	 */
+	record OperationResult(Histogram latencies, long requests, long errors) {
+	}
+
+	record RunResult(Map<LoadOperation, OperationResult> operations, double targetRate, double achievedRate,
+					 long dropped) {
+
+		long totalRequests() {
+			return operations.values().stream().mapToLong(OperationResult::requests).sum();
+		}
+
+		long totalErrors() {
+			return operations.values().stream().mapToLong(OperationResult::errors).sum() + dropped;
+		}
+	}
+
+	RunResult run(Map<LoadOperation, Integer> mix, int ratePerSecond, int durationSeconds, int maxInFlight, long seed)
+			throws InterruptedException {
+		LoadOperation[] wheel = buildWheel(mix);
+		Measurements measurements = new Measurements(mix);
+		SplittableRandom random = new SplittableRandom(seed);
+		Semaphore inFlight = new Semaphore(maxInFlight);
+		long dropped = 0;
+		long intervalNanos = TimeUnit.SECONDS.toNanos(1) / ratePerSecond;
+		long totalRequests = (long) ratePerSecond * durationSeconds;
+		long start = System.nanoTime();
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			for (long i = 0; i < totalRequests; i++) {
+				long intendedStart = start + i * intervalNanos;
+				long wait;
+				while ((wait = intendedStart - System.nanoTime()) > 0) {
+					LockSupport.parkNanos(wait);
+				}
+				LoadOperation operation = wheel[random.nextInt(wheel.length)];
+				SplittableRandom requestRandom = random.split();
+				if (!inFlight.tryAcquire()) {
+					// le serveur ne suit plus : la requête est comptée comme perdue plutôt que d'accumuler des threads
+					dropped++;
+					continue;
+				}
+				executor.execute(() -> {
+					try {
+						measurements.execute(operation, requestRandom, intendedStart);
+					} finally {
+						inFlight.release();
+					}
+				});
+			}
+		}
+		return measurements.result(ratePerSecond, start, dropped);
+	}
+
+	/**
+	 * Boucle fermée : concurrency clients enchaînent chacun leurs requêtes, la suivante partant dès la réponse
+	 * reçue. Le débit obtenu est celui que le serveur soutient à ce niveau de concurrence.
+	 */
+	RunResult runClosedLoop(Map<LoadOperation, Integer> mix, int concurrency, int durationSeconds, long seed)
+			throws InterruptedException {
+		LoadOperation[] wheel = buildWheel(mix);
+		Measurements measurements = new Measurements(mix);
+		SplittableRandom random = new SplittableRandom(seed);
+		long start = System.nanoTime();
+		long end = start + TimeUnit.SECONDS.toNanos(durationSeconds);
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			for (int client = 0; client < concurrency; client++) {
+				SplittableRandom clientRandom = random.split();
+				executor.execute(() -> {
+					while (System.nanoTime() < end && !Thread.currentThread().isInterrupted()) {
+						measurements.execute(wheel[clientRandom.nextInt(wheel.length)], clientRandom, System.nanoTime());
+					}
+				});
+			}
+		}
+		return measurements.result(0, start, 0);
+	}
+
+	/**
+	 * Latences et compteurs par opération, alimentés par tous les threads clients.
+	 */
+	private class Measurements {
+
+		private final Map<LoadOperation, Recorder> recorders = new EnumMap<>(LoadOperation.class);
+
+		private final Map<LoadOperation, LongAdder> requests = new EnumMap<>(LoadOperation.class);
+
+		private final Map<LoadOperation, LongAdder> errors = new EnumMap<>(LoadOperation.class);
+
+		Measurements(Map<LoadOperation, Integer> mix) {
+			for (LoadOperation operation : mix.keySet()) {
+				recorders.put(operation, new Recorder(HIGHEST_TRACKABLE_NANOS, 3));
+				requests.put(operation, new LongAdder());
+				errors.put(operation, new LongAdder());
+			}
+		}
+
+		void execute(LoadOperation operation, SplittableRandom random, long intendedStart) {
+			try {
+				requests.get(operation).increment();
+				if (!LoadDriver.this.execute(operation, random)) {
+					errors.get(operation).increment();
+				}
+			} catch (IOException | RuntimeException e) {
+				errors.get(operation).increment();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				recorders.get(operation).recordValue(Math.min(System.nanoTime() - intendedStart, HIGHEST_TRACKABLE_NANOS));
+			}
+		}
+
+		RunResult result(double targetRate, long start, long dropped) {
+			double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+			Map<LoadOperation, OperationResult> results = new EnumMap<>(LoadOperation.class);
+			long completed = 0;
+			for (LoadOperation operation : recorders.keySet()) {
+				OperationResult result = new OperationResult(recorders.get(operation).getIntervalHistogram(),
+						requests.get(operation).sum(), errors.get(operation).sum());
+				results.put(operation, result);
+				completed += result.requests() - result.errors();
+			}
+			return new RunResult(results, targetRate, completed / elapsedSeconds, dropped);
+		}
+	}
+
+	/**
+	 * @return false si la réponse est une erreur serveur
+	 */
+	private boolean execute(LoadOperation operation, SplittableRandom random) throws IOException, InterruptedException {
+		HttpRequest request;
+		switch (operation) {
+			case SEARCH_BY_TITLE:
+				request = get("/rest/book/api/searchByTitle?title=" + encode(dataset.randomTitleWord(random)));
+				break;
+			case SEARCH_BY_ISBN:
+				request = get("/rest/book/api/searchByIsbn?isbn=" + encode(dataset.randomIsbn(random)));
+				break;
+			case ADD_LOAN: {
+				int bookId = dataset.randomBookId(random);
+				int customerId = dataset.randomCustomerId(random);
+				int status = send(post("/rest/loan/api/addLoan", loanJson(bookId, customerId)));
+				if (status == 201) {
+					openLoans.add(new int[] {bookId, customerId});
+				}
+				return status < 500;
+			}
+			case CLOSE_LOAN: {
+				int[] loan = openLoans.poll();
+				if (loan == null) {
+					loan = new int[] {dataset.randomBookId(random), dataset.randomCustomerId(random)};
+				}
+				request = post("/rest/loan/api/closeLoan", loanJson(loan[0], loan[1]));
+				break;
+			}
+			case PAGINATED_SEARCH:
+				request = get("/rest/customer/api/paginatedSearch?beginPage=" + random.nextInt(dataset.customerPages())
+						+ "&endPage=" + LoadDataset.PAGE_SIZE);
+				break;
+			case CURSOR_SEARCH:
+				request = get("/rest/customer/api/paginatedSearch?size=" + LoadDataset.PAGE_SIZE);
+				break;
+			case LOAN_SEARCH:
+				request = get("/rest/loan/api/searchLoans?customerId=" + dataset.randomCustomerId(random)
+						+ "&size=" + LoadDataset.PAGE_SIZE);
+				break;
+			default:
+				throw new IllegalStateException("Unsupported operation " + operation);
+		}
+		return send(request) < 500;
+	}
+
+	private int send(HttpRequest request) throws IOException, InterruptedException {
+		return httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+	}
+
+	private HttpRequest get(String path) {
+		return HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(Duration.ofSeconds(30)).GET().build();
+	}
+
+	private HttpRequest post(String path, String json) {
+		return HttpRequest.newBuilder(URI.create(baseUrl + path))
+				.timeout(Duration.ofSeconds(30))
+				.header("Content-Type", "application/json")
+				.POST(HttpRequest.BodyPublishers.ofString(json))
+				.build();
+	}
+
+	private static String loanJson(int bookId, int customerId) {
+		LocalDate today = LocalDate.now();
+		return "{\"bookId\":" + bookId + ",\"customerId\":" + customerId
+				+ ",\"beginDate\":\"" + today + "\",\"endDate\":\"" + today.plusDays(21) + "\"}";
+	}
+
+	private static String encode(String value) {
+		return URLEncoder.encode(value, StandardCharsets.UTF_8);
+	}
+
+	private static LoadOperation[] buildWheel(Map<LoadOperation, Integer> mix) {
+		List<LoadOperation> wheel = new ArrayList<>();
+		mix.forEach((operation, weight) -> {
+			for (int i = 0; i < weight; i++) {
+				wheel.add(operation);
+			}
+		});
+		if (wheel.isEmpty()) {
+			throw new IllegalArgumentException("The load test mix is empty");
+		}
+		return wheel.toArray(new LoadOperation[0]);
+	}
+}
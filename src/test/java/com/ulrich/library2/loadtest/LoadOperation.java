@@ -0,0 +1,35 @@
+package com.ulrich.library2.loadtest;
+
+/**
+ * Opérations REST jouées par le test de charge. Les statuts 4xx prévus par l'API (emprunt refusé, prêt
+ * déjà fermé, aucun résultat) ne sont pas des erreurs ; seuls les 5xx et les échecs réseau en sont.
+ */
+enum LoadOperation {
+
+	SEARCH_BY_TITLE("searchByTitle"),
+	SEARCH_BY_ISBN("searchByIsbn"),
+	ADD_LOAN("addLoan"),
+	CLOSE_LOAN("closeLoan"),
+	PAGINATED_SEARCH("paginatedSearch"),
+	CURSOR_SEARCH("cursorSearch"),
+	LOAN_SEARCH("loanSearch");
+
+	private final String key;
+
+	LoadOperation(String key) {
+		this.key = key;
+	}
+
+	String getKey() {
+		return key;
+	}
+
+	static LoadOperation fromKey(String key) {
+		for (LoadOperation operation : values()) {
+			if (operation.key.equals(key)) {
+				return operation;
+			}
+		}
+		throw new IllegalArgumentException("Unknown load test operation: " + key);
+	}
+}
@@ -0,0 +1,179 @@
+package com.ulrich.library2.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ulrich.library2.CleanSchemaMigration;
+import com.ulrich.library2.service.BookServiceImpl;
+import com.ulrich.library2.service.LoanViewProjector;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test de charge avec objectifs de latence (SLO). L'application démarre sur un port aléatoire contre un
+ * PostgreSQL embarqué (ou la base jetable indiquée par loadtest.datasource.url), le jeu de données est
+ * généré, puis le mélange de requêtes configuré est joué à débit fixe : une phase de chauffe, puis la
+ * phase mesurée. Les histogrammes HDR et le résumé sont écrits dans target/loadtest ; le build échoue
+ * si un percentile dépasse son SLO de plus de loadtest.slo.tolerance.
+ *
+ * Lancement : mvn -Ploadtest verify (paramètres dans src/test/resources/loadtest.properties).
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+		"spring.flyway.clean-disabled=false",
+		"spring.jpa.show-sql=false",
+		"library.loan.overdue.cron=-",
+		"library.loan.archive.cron=-"
+})
+@Import(CleanSchemaMigration.class)
+class LoadTestIT {
+
+	private static final LoadTestSettings SETTINGS = LoadTestSettings.load();
+
+	private static final Path REPORT_DIRECTORY = Path.of("target", "loadtest");
+
+	private static EmbeddedPostgres embeddedPostgres;
+
+	@LocalServerPort
+	private int port;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private BookServiceImpl bookService;
+
+	@Autowired
+	private LoanViewProjector loanViewProjector;
+
+	@DynamicPropertySource
+	static void datasource(DynamicPropertyRegistry registry) throws IOException {
+		String url = SETTINGS.get("datasource.url", null);
+		if (url != null) {
+			// base existante : elle doit être jetable, le schéma y est vidé puis recréé par les migrations
+			registry.add("spring.datasource.url", () -> url);
+			registry.add("spring.datasource.username", () -> SETTINGS.get("datasource.username", ""));
+			registry.add("spring.datasource.password", () -> SETTINGS.get("datasource.password", ""));
+			return;
+		}
+		embeddedPostgres = EmbeddedPostgres.builder().start();
+		registry.add("spring.datasource.url", () -> embeddedPostgres.getJdbcUrl("postgres", "postgres"));
+		registry.add("spring.datasource.username", () -> "postgres");
+		registry.add("spring.datasource.password", () -> "");
+	}
+
+	@AfterAll
+	static void stopDatabase() throws IOException {
+		if (embeddedPostgres != null) {
+			embeddedPostgres.close();
+		}
+	}
+
+	@Test
+	void latencyStaysWithinSlo() throws Exception {
+		long seed = SETTINGS.getInt("seed", 42);
+		LoadDataset dataset = LoadDataset.seed(jdbcTemplate, SETTINGS.getInt("books", 5000),
+				SETTINGS.getInt("customers", 2000), seed);
+		// les données ont été insérées en SQL : l'index des titres et la vue des prêts sont reconstruits
+		bookService.buildTitleIndex();
+		loanViewProjector.rebuild();
+
+		LoadDriver driver = new LoadDriver("http://localhost:" + port, dataset);
+		Map<LoadOperation, Integer> mix = SETTINGS.getMix();
+		int rate = SETTINGS.getInt("rate-per-second", 200);
+		int maxInFlight = SETTINGS.getInt("max-in-flight", 512);
+		driver.run(mix, rate, SETTINGS.getInt("warmup-seconds", 10), maxInFlight, seed);
+		LoadDriver.RunResult result = driver.run(mix, rate, SETTINGS.getInt("duration-seconds", 30), maxInFlight, seed + 1);
+
+		writeReport(result);
+		List<String> violations = checkSlo(result);
+		assertTrue(violations.isEmpty(), "SLO violations:\n" + String.join("\n", violations));
+	}
+
+	private List<String> checkSlo(LoadDriver.RunResult result) {
+		double tolerance = SETTINGS.getDouble("slo.tolerance", 0.10);
+		List<String> violations = new ArrayList<>();
+		result.operations().forEach((operation, operationResult) -> {
+			for (String percentile : new String[] {"p50", "p99"}) {
+				Double slo = SETTINGS.getSlo(operation, percentile);
+				if (slo == null) {
+					continue;
+				}
+				double measured = toMillis(operationResult.latencies(), percentile.equals("p50") ? 50 : 99);
+				if (measured > slo * (1 + tolerance)) {
+					violations.add(String.format("%s %s = %.2f ms, SLO %.2f ms (+%.0f%%)",
+							operation.getKey(), percentile, measured, slo, tolerance * 100));
+				}
+			}
+		});
+		long attempted = result.totalRequests() + result.dropped();
+		double errorRate = attempted == 0 ? 1 : (double) result.totalErrors() / attempted;
+		double maxErrorRate = SETTINGS.getDouble("slo.error-rate", 0.01);
+		if (errorRate > maxErrorRate) {
+			violations.add(String.format("error rate = %.4f, SLO %.4f", errorRate, maxErrorRate));
+		}
+		double minThroughputRatio = SETTINGS.getDouble("slo.min-throughput-ratio", 0.95);
+		if (result.achievedRate() < result.targetRate() * minThroughputRatio) {
+			violations.add(String.format("throughput = %.1f req/s, target %.1f req/s (min %.0f%%)",
+					result.achievedRate(), result.targetRate(), minThroughputRatio * 100));
+		}
+		return violations;
+	}
+
+	private void writeReport(LoadDriver.RunResult result) throws IOException {
+		Files.createDirectories(REPORT_DIRECTORY);
+		Map<String, Object> summary = new LinkedHashMap<>();
+		summary.put("targetRate", result.targetRate());
+		summary.put("achievedRate", result.achievedRate());
+		summary.put("dropped", result.dropped());
+		Map<String, Object> operations = new LinkedHashMap<>();
+		System.out.printf("%-16s %9s %7s %9s %9s %9s %9s %9s%n", "operation", "requests", "errors",
+				"p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+		result.operations().forEach((operation, operationResult) -> {
+			Histogram latencies = operationResult.latencies();
+			Map<String, Object> values = new LinkedHashMap<>();
+			values.put("requests", operationResult.requests());
+			values.put("errors", operationResult.errors());
+			values.put("p50Ms", toMillis(latencies, 50));
+			values.put("p90Ms", toMillis(latencies, 90));
+			values.put("p99Ms", toMillis(latencies, 99));
+			values.put("p999Ms", toMillis(latencies, 99.9));
+			values.put("maxMs", latencies.getMaxValue() / 1e6);
+			operations.put(operation.getKey(), values);
+			System.out.printf("%-16s %9d %7d %9.2f %9.2f %9.2f %9.2f %9.2f%n", operation.getKey(),
+					operationResult.requests(), operationResult.errors(), values.get("p50Ms"), values.get("p90Ms"),
+					values.get("p99Ms"), values.get("p999Ms"), values.get("maxMs"));
+			try (PrintStream output = new PrintStream(Files.newOutputStream(REPORT_DIRECTORY.resolve(operation.getKey() + ".hgrm")))) {
+				latencies.outputPercentileDistribution(output, 1e6);
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+		});
+		summary.put("operations", operations);
+		System.out.printf("throughput: %.1f req/s for a target of %.1f req/s, %d dropped%n",
+				result.achievedRate(), result.targetRate(), result.dropped());
+		new ObjectMapper().writerWithDefaultPrettyPrinter()
+				.writeValue(REPORT_DIRECTORY.resolve("summary.json").toFile(), summary);
+	}
+
+	private static double toMillis(Histogram histogram, double percentile) {
+		return histogram.getValueAtPercentile(percentile) / 1e6;
+	}
+}
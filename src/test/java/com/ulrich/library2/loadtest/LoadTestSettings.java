@@ -0,0 +1,69 @@
+package com.ulrich.library2.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Paramètres du test de charge : valeurs par défaut dans loadtest.properties, surchargées par les
+ * propriétés système (mvn -Ploadtest verify -Dloadtest.rate-per-second=500).
+ */
+class LoadTestSettings {
+
+	private final Properties properties = new Properties();
+
+	static LoadTestSettings load() {
+		LoadTestSettings settings = new LoadTestSettings();
+		try (InputStream input = LoadTestSettings.class.getResourceAsStream("/loadtest.properties")) {
+			if (input != null) {
+				settings.properties.load(input);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		System.getProperties().stringPropertyNames().stream()
+				.filter(name -> name.startsWith("loadtest."))
+				.forEach(name -> settings.properties.setProperty(name, System.getProperty(name)));
+		return settings;
+	}
+
+	String get(String name, String defaultValue) {
+		String value = properties.getProperty("loadtest." + name);
+		return value == null || value.isBlank() ? defaultValue : value.trim();
+	}
+
+	int getInt(String name, int defaultValue) {
+		return Integer.parseInt(get(name, Integer.toString(defaultValue)));
+	}
+
+	double getDouble(String name, double defaultValue) {
+		return Double.parseDouble(get(name, Double.toString(defaultValue)));
+	}
+
+	/**
+	 * SLO configuré en millisecondes (loadtest.slo.&lt;operation&gt;.&lt;percentile&gt;), ou null.
+	 */
+	Double getSlo(LoadOperation operation, String percentile) {
+		String value = get("slo." + operation.getKey() + "." + percentile, null);
+		return value == null ? null : Double.valueOf(value);
+	}
+
+	Map<LoadOperation, Integer> getMix() {
+		return getMix("mix");
+	}
+
+	/**
+	 * Poids de chaque opération, par exemple "searchByTitle:30,searchByIsbn:30,addLoan:10".
+	 */
+	Map<LoadOperation, Integer> getMix(String name) {
+		Map<LoadOperation, Integer> mix = new LinkedHashMap<>();
+		for (String entry : get(name, "searchByTitle:1").split(",")) {
+			String[] parts = entry.trim().split(":");
+			mix.put(LoadOperation.fromKey(parts[0].trim()), Integer.valueOf(parts[1].trim()));
+		}
+		return mix;
+	}
+}
@@ -0,0 +1,203 @@
+package com.ulrich.library2.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ulrich.library2.CleanSchemaMigration;
+import com.ulrich.library2.Library2Application;
+import com.ulrich.library2.service.BookServiceImpl;
+import com.ulrich.library2.service.LoanViewProjector;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.TypeExcludeFilter;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.type.classreading.MetadataReader;
+import org.springframework.core.type.classreading.MetadataReaderFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compare les threads de plateforme (pool Tomcat) et les threads virtuels (spring.threads.virtual.enabled)
+ * sur les endpoints de prêts et de recherche. L'application est démarrée une fois par mode, sur le même
+ * jeu de données, puis chaque niveau de concurrence est joué en boucle fermée. Une latence fixe peut être
+ * ajoutée à chaque requête SQL pour simuler une base distante : c'est l'attente d'E/S bloquantes que les
+ * threads virtuels doivent absorber. Pas de seuil : le tableau comparatif est écrit dans
+ * target/loadtest/thread-model.json.
+ *
+ * Lancement : mvn -Ploadtest verify -Dit.test=ThreadModelBenchmarkIT (paramètres loadtest.threads.* dans
+ * src/test/resources/loadtest.properties).
+ */
+class ThreadModelBenchmarkIT {
+
+	private static final LoadTestSettings SETTINGS = LoadTestSettings.load();
+
+	private static final Path REPORT_DIRECTORY = Path.of("target", "loadtest");
+
+	private static EmbeddedPostgres embeddedPostgres;
+
+	private static String url;
+
+	private static String username;
+
+	private static String password;
+
+	@BeforeAll
+	static void startDatabase() throws IOException {
+		url = SETTINGS.get("datasource.url", null);
+		if (url != null) {
+			// base existante : elle doit être jetable, le schéma y est vidé puis recréé par les migrations
+			username = SETTINGS.get("datasource.username", "");
+			password = SETTINGS.get("datasource.password", "");
+			return;
+		}
+		embeddedPostgres = EmbeddedPostgres.builder().start();
+		url = embeddedPostgres.getJdbcUrl("postgres", "postgres");
+		username = "postgres";
+		password = "";
+	}
+
+	@AfterAll
+	static void stopDatabase() throws IOException {
+		if (embeddedPostgres != null) {
+			embeddedPostgres.close();
+		}
+	}
+
+	@Test
+	void compareThreadModels() throws Exception {
+		Map<String, Object> report = new LinkedHashMap<>();
+		report.put("jdbcLatencyMs", SETTINGS.getInt("threads.jdbc-latency-ms", 2));
+		report.put("platform", runMode(false));
+		report.put("virtual", runMode(true));
+		Files.createDirectories(REPORT_DIRECTORY);
+		new ObjectMapper().writerWithDefaultPrettyPrinter()
+				.writeValue(REPORT_DIRECTORY.resolve("thread-model.json").toFile(), report);
+	}
+
+	private Map<String, Object> runMode(boolean virtualThreads) throws Exception {
+		String mode = virtualThreads ? "virtual" : "platform";
+		long seed = SETTINGS.getInt("seed", 42);
+		Map<String, Object> results = new LinkedHashMap<>();
+		try (ConfigurableApplicationContext context = startApplication(virtualThreads)) {
+			LoadDataset dataset = LoadDataset.seed(context.getBean(JdbcTemplate.class), SETTINGS.getInt("books", 5000),
+					SETTINGS.getInt("customers", 2000), seed);
+			// les données ont été insérées en SQL : l'index des titres et la vue des prêts sont reconstruits
+			context.getBean(BookServiceImpl.class).buildTitleIndex();
+			context.getBean(LoanViewProjector.class).rebuild();
+
+			LoadDriver driver = new LoadDriver("http://localhost:" + context.getEnvironment().getProperty("local.server.port"), dataset);
+			Map<LoadOperation, Integer> mix = SETTINGS.getMix("threads.mix");
+			int duration = SETTINGS.getInt("threads.duration-seconds", 20);
+			driver.runClosedLoop(mix, 50, SETTINGS.getInt("threads.warmup-seconds", 5), seed);
+
+			System.out.printf("%n%s threads%n%11s %10s %8s %9s %9s %9s%n", mode, "concurrency", "req/s", "errors",
+					"p50 ms", "p99 ms", "max ms");
+			for (String level : SETTINGS.get("threads.concurrency", "50,400,1600").split(",")) {
+				int concurrency = Integer.parseInt(level.trim());
+				LoadDriver.RunResult result = driver.runClosedLoop(mix, concurrency, duration, seed + concurrency);
+				Histogram latencies = new Histogram(3);
+				result.operations().values().forEach(operation -> latencies.add(operation.latencies()));
+				Map<String, Object> values = new LinkedHashMap<>();
+				values.put("throughput", result.achievedRate());
+				values.put("requests", result.totalRequests());
+				values.put("errors", result.totalErrors());
+				values.put("p50Ms", latencies.getValueAtPercentile(50) / 1e6);
+				values.put("p99Ms", latencies.getValueAtPercentile(99) / 1e6);
+				values.put("maxMs", latencies.getMaxValue() / 1e6);
+				Map<String, Object> operations = new LinkedHashMap<>();
+				result.operations().forEach((operation, operationResult) -> operations.put(operation.getKey(), Map.of(
+						"p50Ms", operationResult.latencies().getValueAtPercentile(50) / 1e6,
+						"p99Ms", operationResult.latencies().getValueAtPercentile(99) / 1e6,
+						"errors", operationResult.errors())));
+				values.put("operations", operations);
+				results.put(Integer.toString(concurrency), values);
+				System.out.printf("%11d %10.1f %8d %9.2f %9.2f %9.2f%n", concurrency, result.achievedRate(),
+						result.totalErrors(), values.get("p50Ms"), values.get("p99Ms"), values.get("maxMs"));
+				assertTrue(result.totalRequests() > 0, () -> mode + " threads: no request completed at concurrency " + concurrency);
+			}
+		}
+		return results;
+	}
+
+	private ConfigurableApplicationContext startApplication(boolean virtualThreads) {
+		int jdbcLatencyMs = SETTINGS.getInt("threads.jdbc-latency-ms", 2);
+		// arguments de ligne de commande : ils priment sur application.properties
+		List<String> arguments = List.of(
+				"--server.port=0",
+				"--spring.threads.virtual.enabled=" + virtualThreads,
+				"--spring.datasource.url=" + url,
+				"--spring.datasource.username=" + username,
+				"--spring.datasource.password=" + password,
+				"--spring.flyway.clean-disabled=false",
+				"--spring.jpa.show-sql=false",
+				"--library.loan.overdue.cron=-",
+				"--library.loan.archive.cron=-");
+		return new SpringApplicationBuilder(Library2Application.class, CleanSchemaMigration.class)
+				.initializers(context -> {
+					context.getBeanFactory().registerSingleton("testConfigurationExcludeFilter", new TestConfigurationExcludeFilter());
+					if (jdbcLatencyMs > 0) {
+						context.getBeanFactory().addBeanPostProcessor(jdbcLatency(jdbcLatencyMs));
+					}
+				})
+				.run(arguments.toArray(String[]::new));
+	}
+
+	/**
+	 * Ajoute la latence réseau d'une base distante devant chaque requête SQL, connexion tenue.
+	 */
+	private static BeanPostProcessor jdbcLatency(int latencyMs) {
+		return new BeanPostProcessor() {
+			@Override
+			public Object postProcessAfterInitialization(Object bean, String beanName) {
+				if (bean instanceof DataSource dataSource) {
+					return ProxyDataSourceBuilder.create(dataSource)
+							.beforeQuery((execution, queries) -> {
+								try {
+									Thread.sleep(latencyMs);
+								} catch (InterruptedException e) {
+									Thread.currentThread().interrupt();
+								}
+							})
+							.build();
+				}
+				return bean;
+			}
+		};
+	}
+
+	/**
+	 * Comme sous @SpringBootTest, le scan des composants ignore les @TestConfiguration du classpath de test
+	 * (compteur de requêtes des tests de budget).
+	 */
+	private static final class TestConfigurationExcludeFilter extends TypeExcludeFilter {
+
+		@Override
+		public boolean match(MetadataReader metadataReader, MetadataReaderFactory metadataReaderFactory) {
+			return metadataReader.getAnnotationMetadata().hasAnnotation(TestConfiguration.class.getName());
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			return other instanceof TestConfigurationExcludeFilter;
+		}
+
+		@Override
+		public int hashCode() {
+			return TestConfigurationExcludeFilter.class.hashCode();
+		}
+	}
+}
@@ -0,0 +1,39 @@
+package com.ulrich.library2.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class BookAvailabilityCountersTests {
+
+	@Test
+	void reconcileKeepsCountersPublishedAfterTheSnapshot() {
+		BookAvailabilityCounters counters = new BookAvailabilityCounters();
+		counters.set(1, 3);
+		counters.set(2, 3);
+		counters.set(3, 3);
+
+		long snapshot = counters.snapshot();
+		// emprunt du livre 1 commité pendant la lecture de la base
+		counters.set(1, 2);
+		counters.touch(1);
+		counters.reconcile(snapshot, Map.of(1, 3, 2, 1));
+
+		assertEquals(2, counters.get(1));
+		assertEquals(1, counters.get(2));
+		assertNull(counters.get(3));
+	}
+
+	@Test
+	void reconcileDoesNotLoadUnknownBooks() {
+		BookAvailabilityCounters counters = new BookAvailabilityCounters();
+
+		counters.reconcile(counters.snapshot(), Map.of(1, 3));
+
+		assertNull(counters.get(1));
+	}
+
+}
@@ -0,0 +1,70 @@
+package com.ulrich.library2.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BookTitleIndexTests {
+
+	private static BookView book(int id, String title) {
+		return new BookView(id, title, null, null, null, null, null, null, null);
+	}
+
+	@Test
+	void searchMatchesSubstringIgnoringCase() {
+		BookTitleIndex index = new BookTitleIndex();
+		index.rebuild(() -> List.of(book(1, "Le Petit Prince"), book(2, "Dune"), book(3, "Les Misérables")));
+
+		assertEquals(List.of(1), index.search("PETIT").stream().map(BookView::id).toList());
+		assertEquals(List.of(1, 3), index.search("le").stream().map(BookView::id).toList());
+		assertTrue(index.search("fondation").isEmpty());
+	}
+
+	@Test
+	void putAndRemoveKeepIndexUpToDate() {
+		BookTitleIndex index = new BookTitleIndex();
+		index.rebuild(() -> List.of(book(1, "Dune")));
+
+		index.put(book(1, "Fondation"));
+		assertTrue(index.search("dune").isEmpty());
+		assertEquals(1, index.search("fonda").size());
+
+		index.remove(1);
+		assertTrue(index.search("fonda").isEmpty());
+		assertEquals(0, index.size());
+	}
+
+	@Test
+	void putDuringRebuildIsAppliedAfterTheSnapshot() throws InterruptedException {
+		BookTitleIndex index = new BookTitleIndex();
+		Thread writer = new Thread(() -> index.put(book(2, "Dune")));
+		index.rebuild(() -> {
+			// le livre 2 est validé après la lecture de la photo, qui ne le contient pas
+			writer.start();
+			while (writer.getState() != Thread.State.BLOCKED) {
+				Thread.onSpinWait();
+			}
+			return List.of(book(1, "Fondation"));
+		});
+		writer.join();
+
+		assertEquals(List.of(2), index.search("dune").stream().map(BookView::id).toList());
+		assertEquals(2, index.size());
+	}
+
+	@Test
+	void refreshReplacesOnlyTheGivenBooks() {
+		BookTitleIndex index = new BookTitleIndex();
+		index.rebuild(() -> List.of(book(1, "Dune"), book(2, "Fondation"), book(3, "Hypérion")));
+
+		index.refresh(List.of(1, 2), ids -> List.of(book(1, "Les Enfants de Dune")));
+
+		assertEquals(List.of(1), index.search("enfants").stream().map(BookView::id).toList());
+		assertTrue(index.search("fondation").isEmpty());
+		assertEquals(List.of(3), index.search("hyp").stream().map(BookView::id).toList());
+	}
+
+}
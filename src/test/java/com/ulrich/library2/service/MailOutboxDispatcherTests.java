@@ -0,0 +1,131 @@
+package com.ulrich.library2.service;
+
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import com.ulrich.library2.entity.mail.MailOutbox;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MailOutboxDispatcherTests {
+
+	@RegisterExtension
+	static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP);
+
+	/**
+	 * File d'envoi en mémoire, à la place de la table MAIL_OUTBOX.
+	 */
+	static class InMemoryOutbox implements IMailOutboxService {
+
+		final List<MailOutbox> pending = new ArrayList<>();
+		final List<Long> sent = new ArrayList<>();
+		final List<Long> failed = new ArrayList<>();
+
+		@Override
+		public MailOutbox queueMail(String sender, String recipient, String subject, String content) {
+			MailOutbox mail = new MailOutbox();
+			mail.setId((long) pending.size() + 1);
+			mail.setSender(sender);
+			mail.setRecipient(recipient);
+			mail.setSubject(subject);
+			mail.setContent(content);
+			mail.setStatus(MailStatus.PENDING);
+			mail.setCreatedAt(LocalDateTime.now());
+			pending.add(mail);
+			return mail;
+		}
+
+		@Override
+		public synchronized List<MailOutbox> claimDueMails(int batchSize) {
+			List<MailOutbox> batch = new ArrayList<>(pending.subList(0, Math.min(batchSize, pending.size())));
+			pending.removeAll(batch);
+			return batch;
+		}
+
+		@Override
+		public synchronized void markSent(Collection<Long> mailIds) {
+			sent.addAll(mailIds);
+		}
+
+		@Override
+		public synchronized void markFailed(MailOutbox mail, String error) {
+			failed.add(mail.getId());
+		}
+
+		@Override
+		public long countPendingMails() {
+			return pending.size();
+		}
+	}
+
+	@Test
+	void dispatchSendsAllQueuedMailsThroughSmtp() {
+		JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+		mailSender.setHost("localhost");
+		mailSender.setPort(ServerSetupTest.SMTP.getPort());
+		InMemoryOutbox outbox = new InMemoryOutbox();
+		for (int i = 0; i < 7; i++) {
+			outbox.queueMail("library@test.com", "customer" + i + "@test.com", "Reminder " + i, "Please return your book");
+		}
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+		MailOutboxDispatcher dispatcher = new MailOutboxDispatcher(outbox, mailSender, meterRegistry, 5, 2);
+		dispatcher.dispatch();
+		dispatcher.shutdown();
+
+		assertEquals(7, greenMail.getReceivedMessages().length);
+		assertEquals(7, outbox.sent.size());
+		assertEquals(0, outbox.failed.size());
+		assertEquals(0, dispatcher.getQueueDepth());
+		assertEquals(7, meterRegistry.get("library.mail.outbox.delivery.latency").timer().count());
+	}
+
+	@Test
+	void dispatchMarksMailsFailedWhenSmtpIsUnreachable() {
+		JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+		mailSender.setHost("localhost");
+		mailSender.setPort(1);
+		InMemoryOutbox outbox = new InMemoryOutbox();
+		outbox.queueMail("library@test.com", "customer@test.com", "Reminder", "Please return your book");
+
+		MailOutboxDispatcher dispatcher = new MailOutboxDispatcher(outbox, mailSender, new SimpleMeterRegistry(), 5, 2);
+		dispatcher.dispatch();
+		dispatcher.shutdown();
+
+		assertEquals(List.of(1L), outbox.failed);
+		assertEquals(0, outbox.sent.size());
+	}
+
+	@Test
+	void dispatchCountsChunksFailingOutsideSmtp() {
+		JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+		mailSender.setHost("localhost");
+		mailSender.setPort(ServerSetupTest.SMTP.getPort());
+		InMemoryOutbox outbox = new InMemoryOutbox() {
+			@Override
+			public synchronized void markSent(Collection<Long> mailIds) {
+				throw new IllegalStateException("database unavailable");
+			}
+		};
+		for (int i = 0; i < 3; i++) {
+			outbox.queueMail("library@test.com", "customer" + i + "@test.com", "Reminder " + i, "Please return your book");
+		}
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+		MailOutboxDispatcher dispatcher = new MailOutboxDispatcher(outbox, mailSender, meterRegistry, 5, 2);
+		dispatcher.dispatch();
+		dispatcher.shutdown();
+
+		assertEquals(3, meterRegistry.get("library.mail.outbox.failures").counter().count());
+		assertEquals(0, meterRegistry.get("library.mail.outbox.sent").counter().count());
+	}
+
+}